@@ -0,0 +1,109 @@
+package com.template.ledger.contract;
+
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.transactions.LedgerTransaction;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.corda.core.contracts.ContractsDSL.requireSingleCommand;
+
+/**
+ * Governs {@link GoldBlockState}s. Goldblocks are grouped by issuer and each group is checked on its own:
+ * issuance needs the issuer's signature, a move must conserve the quantity and be signed by every input owner, and an
+ * exit retires goldblocks with the signatures of both their owners and their issuer. Issued states start at chain
+ * depth zero and each move adds one to the deepest input's depth.
+ * <p>
+ * Verification runs on every hop of a backchain, so it makes a single pass over the inputs and outputs, keeping a
+ * running balance per issuer in two small arrays rather than building a list of states per group.
+ */
+public class GoldBlockContract implements Contract {
+    // This is used to identify our contract when building a transaction.
+    public static final String GOLD_BLOCK_CONTRACT_ID = "com.template.ledger.contract.GoldBlockContract";
+
+    @Override
+    public void verify(LedgerTransaction tx) {
+        final CommandWithParties<Commands> command = requireSingleCommand(tx.getCommands(), Commands.class);
+        final List<PublicKey> signers = command.getSigners();
+        final boolean issue = command.getValue() instanceof Commands.Issue;
+        final boolean exit = command.getValue() instanceof Commands.Exit;
+        if (!issue && !exit && !(command.getValue() instanceof Commands.Move)) {
+            throw new IllegalArgumentException("Unrecognised command.");
+        }
+
+        // Inputs add to their issuer's balance and outputs take away from it.
+        final IssuerBalances balances = new IssuerBalances();
+        int deepestInput = -1;
+        for (StateAndRef<ContractState> input : tx.getInputs()) {
+            final ContractState data = input.getState().getData();
+            if (!(data instanceof GoldBlockState)) continue;
+            final GoldBlockState state = (GoldBlockState) data;
+            require(!issue, "An issuance consumes no goldblocks.");
+            require(signers.contains(state.getOwner().getOwningKey()), "Every input owner must sign.");
+            balances.add(state.getIssuer(), state.getQuantity());
+            deepestInput = Math.max(deepestInput, state.getChainDepth());
+        }
+        // An issuance starts a new chain and a move extends the deepest chain it consumes.
+        final int outputDepth = deepestInput + 1;
+        for (TransactionState<ContractState> output : tx.getOutputs()) {
+            final ContractState data = output.getData();
+            if (!(data instanceof GoldBlockState)) continue;
+            final GoldBlockState state = (GoldBlockState) data;
+            require(!exit, "An exit creates no goldblocks.");
+            require(state.getQuantity() > 0, "Output quantities must be positive.");
+            require(state.getChainDepth() == outputDepth, "Outputs must be one transaction deeper than the deepest input.");
+            balances.add(state.getIssuer(), -state.getQuantity());
+        }
+
+        require(balances.size > 0, "At least one goldblock state must be involved.");
+        for (int i = 0; i < balances.size; i++) {
+            if (issue) {
+                require(signers.contains(balances.issuers[i].getParty().getOwningKey()), "The issuer must sign an issuance.");
+            } else if (exit) {
+                require(signers.contains(balances.issuers[i].getParty().getOwningKey()), "The issuer must sign an exit.");
+            } else {
+                require(balances.balances[i] == 0, "A move conserves the quantity of each issuer's goldblocks.");
+            }
+        }
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException("Failed requirement: " + message);
+        }
+    }
+
+    /**
+     * Net quantity per issuer. Transactions rarely involve more than one or two issuers, so a linear scan, which
+     * finds interned issuers by identity, is cheaper than hashing.
+     */
+    private static final class IssuerBalances {
+        private GoldBlockIssuer[] issuers = new GoldBlockIssuer[2];
+        private long[] balances = new long[2];
+        private int size;
+
+        private void add(GoldBlockIssuer issuer, long quantity) {
+            int i = 0;
+            while (i < size && issuers[i] != issuer && !issuers[i].equals(issuer)) i++;
+            if (i == size) {
+                if (size == issuers.length) {
+                    issuers = Arrays.copyOf(issuers, size * 2);
+                    balances = Arrays.copyOf(balances, size * 2);
+                }
+                issuers[size++] = issuer;
+            }
+            balances[i] = Math.addExact(balances[i], quantity);
+        }
+    }
+
+    public interface Commands extends CommandData {
+        class Issue extends TypeOnlyCommandData implements Commands {}
+
+        class Move extends TypeOnlyCommandData implements Commands {}
+
+        class Exit extends TypeOnlyCommandData implements Commands {}
+    }
+}
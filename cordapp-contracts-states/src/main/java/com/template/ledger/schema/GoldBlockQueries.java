@@ -0,0 +1,77 @@
+package com.template.ledger.schema;
+
+import com.template.ledger.schema.GoldBlockSchemaV1.PersistentGoldBlock;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.CriteriaExpression;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.VaultCustomQueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+/**
+ * Query criteria over the indexed columns of {@link GoldBlockSchemaV1}. Criteria can be combined with
+ * {@link QueryCriteria#and(QueryCriteria)} and used from flows as well as over RPC.
+ */
+public class GoldBlockQueries {
+    private static final Field OWNER_NAME = field("ownerName");
+    private static final Field ISSUER_NAME = field("issuerName");
+    private static final Field QUANTITY = field("quantity");
+    private static final Field CHAIN_DEPTH = field("chainDepth");
+
+    private GoldBlockQueries() {
+    }
+
+    /** Goldblocks held by {@code owner}. */
+    public static QueryCriteria ownedBy(AbstractParty owner) {
+        return custom(Builder.equal(OWNER_NAME, nameOf(owner)), Vault.StateStatus.UNCONSUMED);
+    }
+
+    /** Goldblocks in the given status whose owner has the given legal name. */
+    public static QueryCriteria ownedBy(CordaX500Name owner, Vault.StateStatus status) {
+        return custom(Builder.equal(OWNER_NAME, owner.toString()), status);
+    }
+
+    /** Goldblocks issued by {@code issuer}. */
+    public static QueryCriteria issuedBy(AbstractParty issuer) {
+        return custom(Builder.equal(ISSUER_NAME, nameOf(issuer)), Vault.StateStatus.UNCONSUMED);
+    }
+
+    /** Goldblocks of at least {@code quantity}. */
+    public static QueryCriteria quantityAtLeast(long quantity) {
+        return custom(Builder.greaterThanOrEqual(QUANTITY, quantity), Vault.StateStatus.UNCONSUMED);
+    }
+
+    /** Goldblocks at least {@code chainDepth} transactions away from their issuance. */
+    public static QueryCriteria chainDepthAtLeast(int chainDepth) {
+        return custom(Builder.greaterThanOrEqual(CHAIN_DEPTH, chainDepth), Vault.StateStatus.UNCONSUMED);
+    }
+
+    /** Orders results by quantity. */
+    public static Sort sortByQuantity(Sort.Direction direction) {
+        return new Sort(Collections.singleton(new Sort.SortColumn(new SortAttribute.Custom(PersistentGoldBlock.class, "quantity"), direction)));
+    }
+
+    /** The value stored in the owner and issuer columns for {@code party}. */
+    public static String nameOf(AbstractParty party) {
+        return party.nameOrNull() != null ? party.nameOrNull().toString() : party.getOwningKey().toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryCriteria custom(CriteriaExpression expression, Vault.StateStatus status) {
+        return new VaultCustomQueryCriteria(expression, status);
+    }
+
+    private static Field field(String name) {
+        try {
+            return PersistentGoldBlock.class.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("GoldBlockSchemaV1 has no column " + name, e);
+        }
+    }
+}
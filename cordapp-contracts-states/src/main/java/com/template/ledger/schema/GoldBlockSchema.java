@@ -0,0 +1,7 @@
+package com.template.ledger.schema;
+
+/**
+ * The family of schemas for {@link com.template.ledger.state.GoldBlockState}.
+ */
+public class GoldBlockSchema {
+}
@@ -0,0 +1,68 @@
+package com.template.ledger.schema;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * First version of the goldblock schema. Holdings are looked up by owner and issuer and selected by quantity or, for
+ * re-issuance, by chain depth, so each of those columns is indexed. Every goldblock has the same commodity code, so
+ * queries do not filter on it.
+ */
+public class GoldBlockSchemaV1 extends MappedSchema {
+    public GoldBlockSchemaV1() {
+        super(GoldBlockSchema.class, 1, ImmutableList.of(PersistentGoldBlock.class));
+    }
+
+    @Entity
+    @Table(name = "gold_block_states", indexes = {
+            @Index(name = "gold_block_owner_qty_idx", columnList = "owner_name,quantity"),
+            @Index(name = "gold_block_issuer_idx", columnList = "issuer_name,issuer_ref"),
+            @Index(name = "gold_block_quantity_idx", columnList = "quantity"),
+            @Index(name = "gold_block_owner_issuer_depth_idx", columnList = "owner_name,issuer_name,chain_depth")
+    })
+    public static class PersistentGoldBlock extends PersistentState {
+        @Column(name = "owner_name") private final String ownerName;
+        @Column(name = "issuer_name") private final String issuerName;
+        @Column(name = "issuer_ref") private final byte[] issuerRef;
+        @Column(name = "commodity_code", length = 8) private final String commodityCode;
+        @Column(name = "quantity") private final long quantity;
+        @Column(name = "chain_depth") private final int chainDepth;
+
+        public PersistentGoldBlock(String ownerName, String issuerName, byte[] issuerRef, String commodityCode, long quantity, int chainDepth) {
+            this.ownerName = ownerName;
+            this.issuerName = issuerName;
+            this.issuerRef = issuerRef;
+            this.commodityCode = commodityCode;
+            this.quantity = quantity;
+            this.chainDepth = chainDepth;
+        }
+
+        // Default constructor required by hibernate.
+        public PersistentGoldBlock() {
+            this.ownerName = null;
+            this.issuerName = null;
+            this.issuerRef = null;
+            this.commodityCode = null;
+            this.quantity = 0;
+            this.chainDepth = 0;
+        }
+
+        public String getOwnerName() { return ownerName; }
+
+        public String getIssuerName() { return issuerName; }
+
+        public byte[] getIssuerRef() { return issuerRef; }
+
+        public String getCommodityCode() { return commodityCode; }
+
+        public long getQuantity() { return quantity; }
+
+        public int getChainDepth() { return chainDepth; }
+    }
+}
@@ -0,0 +1,59 @@
+package com.template.ledger.state;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import net.corda.core.contracts.PartyAndReference;
+import net.corda.core.identity.Party;
+import net.corda.core.serialization.CordaSerializable;
+import net.corda.core.utilities.OpaqueBytes;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The party that issued a goldblock and its reference for the issuance. A node sees the same few issuers on every
+ * state it loads, so instances are interned: equal issuers share one object, and comparing them in the contract is
+ * usually an identity check.
+ */
+@CordaSerializable
+public final class GoldBlockIssuer {
+    private static final Interner<GoldBlockIssuer> INTERNER = Interners.newWeakInterner();
+
+    private final Party party;
+    private final OpaqueBytes reference;
+    private final int hashCode;
+
+    public GoldBlockIssuer(@NotNull Party party, @NotNull OpaqueBytes reference) {
+        this.party = party;
+        this.reference = reference;
+        this.hashCode = 31 * party.hashCode() + reference.hashCode();
+    }
+
+    /** The canonical instance for {@code party} and {@code reference}. */
+    public static GoldBlockIssuer of(Party party, OpaqueBytes reference) {
+        return INTERNER.intern(new GoldBlockIssuer(party, reference));
+    }
+
+    /** The canonical instance equal to this one. */
+    public GoldBlockIssuer intern() { return INTERNER.intern(this); }
+
+    @NotNull
+    public Party getParty() { return party; }
+
+    @NotNull
+    public OpaqueBytes getReference() { return reference; }
+
+    public PartyAndReference toPartyAndReference() { return new PartyAndReference(party, reference); }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GoldBlockIssuer that = (GoldBlockIssuer) o;
+        return hashCode == that.hashCode && party.equals(that.party) && reference.equals(that.reference);
+    }
+
+    @Override
+    public int hashCode() { return hashCode; }
+
+    @Override
+    public String toString() { return party + reference.toString(); }
+}
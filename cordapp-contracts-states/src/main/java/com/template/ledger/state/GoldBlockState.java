@@ -0,0 +1,117 @@
+package com.template.ledger.state;
+
+import com.google.common.collect.ImmutableList;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.schema.GoldBlockQueries;
+import com.template.ledger.schema.GoldBlockSchemaV1;
+import net.corda.core.contracts.CommandAndState;
+import net.corda.core.contracts.OwnableState;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+import net.corda.core.schemas.QueryableState;
+import net.corda.core.serialization.ConstructorForDeserialization;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A quantity of goldblocks issued by a party and held by an owner. The state is mapped to
+ * {@link GoldBlockSchemaV1} so that balance and selection queries hit indexed columns.
+ * <p>
+ * The state carries only what the contract needs: a fixed-point quantity in hundredths of a goldblock, the interned
+ * issuer and the owner. The commodity code and fraction digits that an {@code Issued<Commodity>} token would repeat on
+ * every state are constants of this class instead.
+ * <p>
+ * {@code chainDepth} counts the transactions between the state and its issuance: an issuance creates states at depth
+ * zero and a move creates them one deeper than its deepest input. The contract enforces it, so it can be trusted as a
+ * measure of how long a backchain a recipient has to resolve.
+ */
+public class GoldBlockState implements OwnableState, QueryableState {
+    // Commodity code of every goldblock, stored in the schema's commodity_code column. The one definition of it.
+    public static final String COMMODITY_CODE = "GB";
+
+    // Quantities are fixed-point with this many decimal places, so a quantity of 150 is 1.50 goldblocks.
+    public static final int FRACTION_DIGITS = 2;
+
+    private final long quantity;
+    private final GoldBlockIssuer issuer;
+    private final AbstractParty owner;
+    private final int chainDepth;
+
+    /** Newly issued goldblocks. */
+    public GoldBlockState(long quantity, @NotNull GoldBlockIssuer issuer, @NotNull AbstractParty owner) {
+        this(quantity, issuer, owner, 0);
+    }
+
+    @ConstructorForDeserialization
+    public GoldBlockState(long quantity, @NotNull GoldBlockIssuer issuer, @NotNull AbstractParty owner, int chainDepth) {
+        this.quantity = quantity;
+        this.issuer = issuer.intern();
+        this.owner = owner;
+        this.chainDepth = chainDepth;
+    }
+
+    /** The quantity in hundredths of a goldblock. */
+    public long getQuantity() { return quantity; }
+
+    @NotNull
+    public GoldBlockIssuer getIssuer() { return issuer; }
+
+    @NotNull
+    @Override
+    public AbstractParty getOwner() { return owner; }
+
+    /** The number of transactions between this state and the issuance of its goldblocks. */
+    public int getChainDepth() { return chainDepth; }
+
+    /** The public keys of the involved parties. */
+    @NotNull
+    @Override
+    public List<AbstractParty> getParticipants() { return ImmutableList.of(owner); }
+
+    @NotNull
+    @Override
+    public CommandAndState withNewOwner(@NotNull AbstractParty newOwner) {
+        return new CommandAndState(new GoldBlockContract.Commands.Move(), new GoldBlockState(quantity, issuer, newOwner, chainDepth + 1));
+    }
+
+    @NotNull
+    @Override
+    public Iterable<MappedSchema> supportedSchemas() { return ImmutableList.of(new GoldBlockSchemaV1()); }
+
+    @NotNull
+    @Override
+    public PersistentState generateMappedObject(@NotNull MappedSchema schema) {
+        if (schema instanceof GoldBlockSchemaV1) {
+            return new GoldBlockSchemaV1.PersistentGoldBlock(
+                    GoldBlockQueries.nameOf(owner),
+                    GoldBlockQueries.nameOf(issuer.getParty()),
+                    issuer.getReference().getBytes(),
+                    COMMODITY_CODE,
+                    quantity,
+                    chainDepth);
+        } else {
+            throw new IllegalArgumentException("Unrecognised schema " + schema);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GoldBlockState that = (GoldBlockState) o;
+        return quantity == that.quantity && chainDepth == that.chainDepth && issuer.equals(that.issuer) && owner.equals(that.owner);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash(quantity, issuer, owner, chainDepth); }
+
+    @Override
+    public String toString() {
+        return "GoldBlockState(quantity=" + BigDecimal.valueOf(quantity, FRACTION_DIGITS) + " " + COMMODITY_CODE
+                + ", issuer=" + issuer + ", owner=" + owner + ", chainDepth=" + chainDepth + ")";
+    }
+}
@@ -0,0 +1,61 @@
+package com.template.load;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Collects flow latencies in nanoseconds and reports percentiles over everything recorded. Samples are kept raw, so
+ * percentiles are exact; a run of a few million flows costs a few tens of megabytes.
+ */
+class LatencyRecorder {
+    private long[] samples = new long[1 << 16];
+    private int count;
+    private long failures;
+
+    synchronized void record(long latencyNanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = latencyNanos;
+    }
+
+    synchronized void recordFailure() {
+        failures++;
+    }
+
+    synchronized long count() { return count; }
+
+    synchronized long failures() { return failures; }
+
+    /**
+     * Returns mean, max and p50/p95/p99/p999 latencies in milliseconds.
+     */
+    synchronized Map<String, Double> percentilesMillis() {
+        final long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (long sample : sorted) {
+            sum += sample;
+        }
+        return ImmutableMap.<String, Double>builder()
+                .put("mean", count == 0 ? 0 : millis(sum / count))
+                .put("p50", millis(percentile(sorted, 0.50)))
+                .put("p95", millis(percentile(sorted, 0.95)))
+                .put("p99", millis(percentile(sorted, 0.99)))
+                .put("p999", millis(percentile(sorted, 0.999)))
+                .put("max", count == 0 ? 0 : millis(sorted[count - 1]))
+                .build();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        final int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
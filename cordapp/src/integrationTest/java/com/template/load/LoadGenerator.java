@@ -0,0 +1,278 @@
+package com.template.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.template.ledger.flow.BatchIssueFlow;
+import com.template.ledger.flow.BlockIssueFlow;
+import com.template.ledger.flow.IssueLot;
+import com.template.ledger.flow.SellerFlow;
+import net.corda.client.rpc.CordaRPCClient;
+import net.corda.client.rpc.CordaRPCConnection;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.utilities.NetworkHostAndPort;
+import net.corda.node.services.config.VerifierType;
+import net.corda.testing.driver.DriverParameters;
+import net.corda.testing.driver.NodeHandle;
+import net.corda.testing.driver.NodeParameters;
+import net.corda.testing.node.NotarySpec;
+import net.corda.testing.node.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.corda.testing.driver.Driver.driver;
+
+/**
+ * Load generator for the GoldBlock CorDapp. Starts a notary and a configurable number of parties on localhost with the
+ * driver DSL, drives {@link BlockIssueFlow} or {@link SellerFlow} over RPC and writes throughput and latency
+ * percentiles to a JSON file.
+ * <p>
+ * Two modes are supported. In closed-loop mode ({@code concurrency=C}) C workers each start a flow and wait for it to
+ * finish before starting the next. In open-loop mode ({@code rate=R}) flows are started R times a second regardless
+ * of how many are outstanding, up to {@code maxInFlight}; starts beyond that are reported as dropped. Latency is
+ * measured from the start request to the flow's return value, and only flows started after the warm-up count; flows
+ * still running at the end are waited for, so slow tails are reported. Throughput only counts flows that complete
+ * inside the measurement window, whenever they started.
+ * <p>
+ * Run with {@code ./gradlew loadTest -Pload.args="workload=move parties=4 rate=50 duration=120"}.
+ * <p>
+ * The driver always starts the stock validating notary. To measure another notary, such as the experimental
+ * {@code BatchingNotaryService} on a node that runs flows on several threads, deploy the nodes with {@code ./gradlew deployNodes -Pnotary=batching}, start them,
+ * and point the generator at their RPC addresses with
+ * {@code -Pload.args="nodes=localhost:10006,localhost:10009 label=batching"}; repeating the run after a plain
+ * {@code deployNodes} gives the stock notary's figures for the same workload.
+ */
+public class LoadGenerator {
+
+    static private final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final CordaX500Name NOTARY_NAME = new CordaX500Name("Notary", "London", "GB");
+    private static final User LOAD_USER = new User("loadgen", "test", ImmutableSet.of("ALL"));
+
+    private final LoadOptions options;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong completedInWindow = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private List<CordaRPCOps> proxies;
+    private List<Party> identities;
+    private volatile long measureFromNanos;
+    private volatile long measureUntilNanos;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final LoadOptions options = LoadOptions.parse(args);
+        writeReport(options.isAgainstRunningNodes() ? runAgainstRunningNodes(options) : runWithDriver(options), options.output);
+    }
+
+    /**
+     * Starts a notary, validating or not as the options say, and the parties with the driver, runs the load and
+     * returns its report.
+     */
+    static Map<String, Object> runWithDriver(LoadOptions options) {
+        final DriverParameters parameters = new DriverParameters()
+                .withStartNodesInProcess(options.inProcess)
+                .withExtraCordappPackagesToScan(ImmutableList.of("com.template"))
+                .withNotarySpecs(ImmutableList.of(new NotarySpec(NOTARY_NAME, options.validatingNotary, ImmutableList.of(), VerifierType.InMemory, null)));
+        return driver(parameters, dsl -> {
+            final List<CordaFuture<NodeHandle>> handleFutures = new ArrayList<>(options.parties);
+            for (int i = 1; i <= options.parties; i++) {
+                handleFutures.add(dsl.startNode(new NodeParameters()
+                        .withProvidedName(new CordaX500Name("Party" + i, "London", "GB"))
+                        .withRpcUsers(ImmutableList.of(LOAD_USER))));
+            }
+            try {
+                final List<CordaRPCOps> nodes = new ArrayList<>(options.parties);
+                for (CordaFuture<NodeHandle> handleFuture : handleFutures) {
+                    nodes.add(handleFuture.get().getRpc());
+                }
+                return new LoadGenerator(options).run(nodes);
+            } catch (Exception e) {
+                throw new RuntimeException("Load run failed", e);
+            }
+        });
+    }
+
+    private static Map<String, Object> runAgainstRunningNodes(LoadOptions options) throws Exception {
+        final List<CordaRPCConnection> connections = new ArrayList<>(options.nodes.size());
+        try {
+            final List<CordaRPCOps> nodes = new ArrayList<>(options.nodes.size());
+            for (String address : options.nodes) {
+                final CordaRPCConnection connection = new CordaRPCClient(NetworkHostAndPort.parse(address.trim()))
+                        .start(options.rpcUser, options.rpcPassword);
+                connections.add(connection);
+                nodes.add(connection.getProxy());
+            }
+            return new LoadGenerator(options).run(nodes);
+        } finally {
+            connections.forEach(CordaRPCConnection::notifyServerAndClose);
+        }
+    }
+
+    private Map<String, Object> run(List<CordaRPCOps> nodes) throws Exception {
+        proxies = nodes;
+        identities = new ArrayList<>(nodes.size());
+        for (CordaRPCOps node : nodes) {
+            identities.add(node.nodeInfo().getLegalIdentities().get(0));
+        }
+        if (options.workload == LoadOptions.Workload.MOVE) {
+            fund();
+        }
+
+        final long startNanos = System.nanoTime();
+        measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        final long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        measureUntilNanos = endNanos;
+        logger.info("Driving {} flows on {} parties for {}s after a {}s warm-up", options.workload, nodes.size(),
+                options.durationSeconds, options.warmupSeconds);
+        if (options.isOpenLoop()) {
+            runOpenLoop(endNanos);
+        } else {
+            runClosedLoop(endNanos);
+        }
+        return report();
+    }
+
+    /**
+     * Gives every party enough goldblocks, in many small states, for coin selection to keep up with the run.
+     */
+    private void fund() throws Exception {
+        final List<CompletableFuture<?>> fundings = new ArrayList<>();
+        for (int i = 0; i < proxies.size(); i++) {
+            final List<IssueLot> lots = Collections.nCopies(options.fundingLots, new IssueLot(identities.get(i), options.fundingLotSize));
+            fundings.add(proxies.get(i).startFlowDynamic(BatchIssueFlow.class, lots).getReturnValue().toCompletableFuture());
+        }
+        CompletableFuture.allOf(fundings.toArray(new CompletableFuture<?>[0])).get();
+        logger.info("Funded {} parties with {} lots of {} goldblocks", proxies.size(), options.fundingLots, options.fundingLotSize);
+    }
+
+    private void runClosedLoop(long endNanos) throws InterruptedException {
+        final ExecutorService workers = Executors.newFixedThreadPool(options.concurrency);
+        for (int i = 0; i < options.concurrency; i++) {
+            workers.submit(() -> {
+                while (System.nanoTime() < endNanos) {
+                    final long startedAt = System.nanoTime();
+                    try {
+                        startFlow().get();
+                        record(startedAt, null);
+                    } catch (Exception e) {
+                        record(startedAt, e);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(endNanos - System.nanoTime() + TimeUnit.MINUTES.toNanos(5), TimeUnit.NANOSECONDS);
+    }
+
+    private void runOpenLoop(long endNanos) throws InterruptedException {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        final long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+        scheduler.scheduleAtFixedRate(() -> {
+            if (inFlight.get() >= options.maxInFlight) {
+                if (System.nanoTime() >= measureFromNanos) dropped.incrementAndGet();
+                return;
+            }
+            final long startedAt = System.nanoTime();
+            inFlight.incrementAndGet();
+            try {
+                startFlow().whenComplete((result, error) -> {
+                    inFlight.decrementAndGet();
+                    record(startedAt, error);
+                });
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                record(startedAt, e);
+            }
+        }, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, endNanos - System.nanoTime()));
+        scheduler.shutdown();
+        // Let the flows still in flight finish so that slow tails are reported rather than cut off.
+        final long drainUntil = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    /**
+     * Starts the next flow on the next party, round robin. Moves go to the following party.
+     */
+    private CompletableFuture<?> startFlow() {
+        final int node = (int) (sequence.getAndIncrement() % proxies.size());
+        final CordaRPCOps proxy = proxies.get(node);
+        if (options.workload == LoadOptions.Workload.ISSUE) {
+            return proxy.startFlowDynamic(BlockIssueFlow.class, options.quantity).getReturnValue().toCompletableFuture();
+        }
+        final Party buyer = identities.get((node + 1) % identities.size());
+        return proxy.startFlowDynamic(SellerFlow.class, buyer, (long) options.quantity).getReturnValue().toCompletableFuture();
+    }
+
+    private void record(long startedAt, Throwable error) {
+        final long now = System.nanoTime();
+        if (error == null && now >= measureFromNanos && now <= measureUntilNanos) {
+            completedInWindow.incrementAndGet();
+        }
+        if (startedAt < measureFromNanos) {
+            return;
+        }
+        if (error == null) {
+            recorder.record(now - startedAt);
+        } else {
+            logger.debug("Flow failed", error);
+            recorder.recordFailure();
+        }
+    }
+
+    private Map<String, Object> report() {
+        final Map<String, Object> report = new LinkedHashMap<>();
+        if (!options.label.isEmpty()) {
+            report.put("label", options.label);
+        }
+        report.put("nodes", options.isAgainstRunningNodes() ? String.join(",", options.nodes) : "driver");
+        if (!options.isAgainstRunningNodes()) {
+            report.put("notary", options.validatingNotary ? "validating" : "non-validating");
+        }
+        report.put("workload", options.workload.name());
+        report.put("parties", options.parties);
+        report.put("mode", options.isOpenLoop() ? "open-loop" : "closed-loop");
+        report.put(options.isOpenLoop() ? "targetRatePerSecond" : "concurrency", options.isOpenLoop() ? options.rate : options.concurrency);
+        report.put("warmupSeconds", options.warmupSeconds);
+        report.put("durationSeconds", options.durationSeconds);
+        report.put("completed", recorder.count());
+        report.put("completedInWindow", completedInWindow.get());
+        report.put("failed", recorder.failures());
+        report.put("dropped", dropped.get());
+        // Flows that finish while the run drains are in the latencies but not in the rate.
+        report.put("flowsPerSecond", (double) completedInWindow.get() / options.durationSeconds);
+        report.put("latencyMillis", recorder.percentilesMillis());
+        return report;
+    }
+
+    static void writeReport(Map<String, Object> report, String path) throws Exception {
+        final File output = new File(path);
+        if (output.getAbsoluteFile().getParentFile() != null) {
+            output.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output, report);
+        logger.info("Load results written to {}: {}", output.getAbsolutePath(), ImmutableMap.copyOf(report));
+    }
+}
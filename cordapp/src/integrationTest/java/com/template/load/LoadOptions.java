@@ -0,0 +1,104 @@
+package com.template.load;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options of {@link LoadGenerator}, given as {@code key=value} arguments.
+ */
+class LoadOptions {
+    enum Workload { ISSUE, MOVE }
+
+    // RPC addresses, as host:port,host:port, of running party nodes to drive instead of starting nodes with the driver.
+    final List<String> nodes;
+    // RPC user the generator logs in to running nodes as.
+    final String rpcUser;
+    final String rpcPassword;
+    // Number of party nodes started next to the notary, or the number of running nodes given.
+    final int parties;
+    // Flow driven by the generator: BlockIssueFlow or SellerFlow.
+    final Workload workload;
+    // Closed-loop mode: number of flows kept in flight; ignored when a rate is given.
+    final int concurrency;
+    // Open-loop mode: flows started per second across all parties; 0 selects closed-loop mode.
+    final double rate;
+    // Upper bound on flows in flight in open-loop mode; starts beyond it are counted as dropped.
+    final int maxInFlight;
+    // Length of the measured part of the run, preceded by an unmeasured warm-up.
+    final int durationSeconds;
+    final int warmupSeconds;
+    // Goldblocks per issuance, and per move.
+    final int quantity;
+    // Goldblocks each party is funded with before a move run, as lots of fundingLotSize.
+    final int fundingLots;
+    final int fundingLotSize;
+    // Whether the notary started by the driver validates the transactions it notarises, resolving their backchains.
+    final boolean validatingNotary;
+    // Whether nodes run inside this JVM rather than as separate processes.
+    final boolean inProcess;
+    // File the JSON report is written to.
+    final String output;
+    // Free-form label copied into the report, such as the notary the run was made against.
+    final String label;
+
+    private final Map<String, String> args;
+
+    private LoadOptions(Map<String, String> args) {
+        this.args = args;
+        nodes = args.containsKey("nodes") ? Arrays.asList(args.get("nodes").split(",")) : Collections.emptyList();
+        rpcUser = args.getOrDefault("rpcUser", "user1");
+        rpcPassword = args.getOrDefault("rpcPassword", "test");
+        parties = nodes.isEmpty() ? Integer.parseInt(args.getOrDefault("parties", "2")) : nodes.size();
+        workload = Workload.valueOf(args.getOrDefault("workload", "issue").toUpperCase());
+        concurrency = Integer.parseInt(args.getOrDefault("concurrency", "8"));
+        rate = Double.parseDouble(args.getOrDefault("rate", "0"));
+        maxInFlight = Integer.parseInt(args.getOrDefault("maxInFlight", "256"));
+        durationSeconds = Integer.parseInt(args.getOrDefault("duration", "60"));
+        warmupSeconds = Integer.parseInt(args.getOrDefault("warmup", "15"));
+        quantity = Integer.parseInt(args.getOrDefault("quantity", "10"));
+        fundingLots = Integer.parseInt(args.getOrDefault("fundingLots", "2000"));
+        fundingLotSize = Integer.parseInt(args.getOrDefault("fundingLotSize", "100"));
+        validatingNotary = Boolean.parseBoolean(args.getOrDefault("validatingNotary", "true"));
+        inProcess = Boolean.parseBoolean(args.getOrDefault("inProcess", "false"));
+        output = args.getOrDefault("output", "build/reports/load/results.json");
+        label = args.getOrDefault("label", "");
+
+        if (parties < (workload == Workload.MOVE ? 2 : 1)) {
+            throw new IllegalArgumentException("A " + workload + " run needs at least " + (workload == Workload.MOVE ? 2 : 1) + " parties.");
+        }
+        if (concurrency <= 0 || rate < 0 || maxInFlight <= 0 || durationSeconds <= 0 || warmupSeconds < 0 || quantity <= 0) {
+            throw new IllegalArgumentException("Concurrency, maxInFlight, duration and quantity must be positive; rate and warmup non-negative.");
+        }
+    }
+
+    static LoadOptions parse(String[] args) {
+        final Map<String, String> parsed = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got '" + arg + "'.");
+            }
+            parsed.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return new LoadOptions(parsed);
+    }
+
+    /**
+     * These options with {@code key} set to {@code value}, for runs that vary one option of the same workload.
+     */
+    LoadOptions with(String key, String value) {
+        final Map<String, String> changed = new HashMap<>(args);
+        changed.put(key, value);
+        return new LoadOptions(changed);
+    }
+
+    // Whether the option was given rather than defaulted.
+    boolean isSet(String key) { return args.containsKey(key); }
+
+    boolean isOpenLoop() { return rate > 0; }
+
+    boolean isAgainstRunningNodes() { return !nodes.isEmpty(); }
+}
@@ -0,0 +1,55 @@
+package com.template.load;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the same move workload against a validating and then a non-validating notary started by the driver, and
+ * writes notarisations per second and latency percentiles for both to one JSON report.
+ * <p>
+ * Every {@code SellerFlow} notarises exactly one transaction. The {@code BatchIssueFlow} issuances that fund the
+ * parties are notarised too, because they carry a time window, but they finish before the measurement starts, so the
+ * rate of moves completed inside the measurement window is the notarisation rate. Latency is that of the whole move,
+ * of which notarisation is the part that differs between the two runs. All other options are those of
+ * {@link LoadGenerator}.
+ * <p>
+ * Run with {@code ./gradlew notaryBenchmark -Pload.args="parties=4 concurrency=16 duration=120"}. Unless an
+ * {@code output} is given the report goes to {@code build/reports/load/notary-modes.json}, away from the
+ * {@link LoadGenerator}'s own reports. It records the JVM, processor count and heap it was measured with, since the two
+ * modes are only comparable within one report and reports from different machines are not.
+ */
+public class NotaryModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args)
+                .with("workload", "move");
+        if (!options.isSet("output")) {
+            options = options.with("output", "build/reports/load/notary-modes.json");
+        }
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("environment", ImmutableMap.of(
+                "java", System.getProperty("java.vendor") + " " + System.getProperty("java.version"),
+                "os", System.getProperty("os.name") + " " + System.getProperty("os.arch"),
+                "processors", Runtime.getRuntime().availableProcessors(),
+                "maxHeapBytes", Runtime.getRuntime().maxMemory()));
+        report.put("workload", options.workload.name());
+        report.put("parties", options.parties);
+        report.put("mode", options.isOpenLoop() ? "open-loop" : "closed-loop");
+        report.put(options.isOpenLoop() ? "targetRatePerSecond" : "concurrency", options.isOpenLoop() ? options.rate : options.concurrency);
+        report.put("durationSeconds", options.durationSeconds);
+        report.put("validating", summary(LoadGenerator.runWithDriver(options.with("validatingNotary", "true"))));
+        report.put("nonValidating", summary(LoadGenerator.runWithDriver(options.with("validatingNotary", "false"))));
+        LoadGenerator.writeReport(report, options.output);
+    }
+
+    private static Map<String, Object> summary(Map<String, Object> run) {
+        return ImmutableMap.of(
+                "notarisations", run.get("completedInWindow"),
+                "failed", run.get("failed"),
+                "dropped", run.get("dropped"),
+                "notarisationsPerSecond", run.get("flowsPerSecond"),
+                "latencyMillis", run.get("latencyMillis"));
+    }
+}
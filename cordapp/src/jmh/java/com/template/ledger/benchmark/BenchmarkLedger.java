@@ -0,0 +1,85 @@
+package com.template.ledger.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.OpaqueBytes;
+import net.corda.testing.core.TestIdentity;
+import net.corda.testing.node.MockServices;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared fixture for the benchmarks: mock services for an issuer, a holder and a notary, plus helpers that build
+ * goldblock transactions the same way {@code BlockIssueFlow} and {@code SellerFlow} do.
+ */
+class BenchmarkLedger {
+    final TestIdentity issuer = new TestIdentity(new CordaX500Name("PartyA", "London", "GB"));
+    final TestIdentity holder = new TestIdentity(new CordaX500Name("PartyB", "New York", "US"));
+    final TestIdentity notaryIdentity = new TestIdentity(new CordaX500Name("Notary", "London", "GB"));
+    final Party notary = notaryIdentity.getParty();
+    final MockServices services = new MockServices(ImmutableList.of("com.template.ledger", "com.template"), issuer);
+    final MockServices holderServices = new MockServices(ImmutableList.of("com.template.ledger", "com.template"), holder);
+    final MockServices notaryServices = new MockServices(ImmutableList.of("com.template.ledger", "com.template"), notaryIdentity);
+    final GoldBlockIssuer goldblocks = GoldBlockIssuer.of(issuer.getParty(), OpaqueBytes.of((byte) 0x01));
+
+    GoldBlockState goldBlocks(long quantity, Party owner) {
+        return new GoldBlockState(quantity, goldblocks, owner);
+    }
+
+    /**
+     * Builds an issuance of {@code outputs} states of {@code quantity} each to the issuer.
+     */
+    TransactionBuilder issue(int outputs, long quantity) {
+        final TransactionBuilder txBuilder = new TransactionBuilder(notary);
+        for (int i = 0; i < outputs; i++) {
+            txBuilder.addOutputState(goldBlocks(quantity, issuer.getParty()), GoldBlockContract.GOLD_BLOCK_CONTRACT_ID);
+        }
+        txBuilder.addCommand(new GoldBlockContract.Commands.Issue(), issuer.getPublicKey());
+        txBuilder.setTimeWindow(TimeWindow.fromStartAndDuration(Instant.now(), Duration.ofSeconds(30)));
+        return txBuilder;
+    }
+
+    /**
+     * Builds a move of all of {@code inputs} split evenly across {@code outputs} states owned by the holder.
+     */
+    TransactionBuilder move(List<StateAndRef<GoldBlockState>> inputs, int outputs) {
+        long total = 0;
+        int chainDepth = 0;
+        final TransactionBuilder txBuilder = new TransactionBuilder(notary);
+        for (StateAndRef<GoldBlockState> input : inputs) {
+            txBuilder.addInputState(input);
+            total += input.getState().getData().getQuantity();
+            chainDepth = Math.max(chainDepth, input.getState().getData().getChainDepth() + 1);
+        }
+        for (int i = 0; i < outputs; i++) {
+            txBuilder.addOutputState(new GoldBlockState(total / outputs, goldblocks, holder.getParty(), chainDepth), GoldBlockContract.GOLD_BLOCK_CONTRACT_ID);
+        }
+        txBuilder.addCommand(new GoldBlockContract.Commands.Move(), issuer.getPublicKey(), holder.getPublicKey());
+        txBuilder.setTimeWindow(TimeWindow.fromStartAndDuration(Instant.now(), Duration.ofSeconds(30)));
+        return txBuilder;
+    }
+
+    /**
+     * Issues and records {@code count} states whose quantities split evenly into {@code outputs} move outputs, and
+     * returns them ready to be spent.
+     */
+    List<StateAndRef<GoldBlockState>> recordedStates(int count, int outputs) {
+        final SignedTransaction issuance = services.signInitialTransaction(issue(count, 10L * outputs));
+        services.recordTransactions(ImmutableList.of(issuance));
+        final List<StateAndRef<GoldBlockState>> states = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            states.add(issuance.getTx().outRef(i));
+        }
+        return states;
+    }
+}
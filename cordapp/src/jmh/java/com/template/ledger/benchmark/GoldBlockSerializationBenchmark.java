@@ -0,0 +1,84 @@
+package com.template.ledger.benchmark;
+
+import com.template.TemplateSerializationWhitelist.TemplateData;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.serialization.SerializationContext;
+import net.corda.core.serialization.SerializationDefaults;
+import net.corda.core.serialization.SerializationFactory;
+import net.corda.core.serialization.SerializedBytes;
+import net.corda.testing.core.GlobalSerializationEnvironment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static net.corda.testing.core.SerializationTestHelpersKt.setGlobalSerialization;
+
+/**
+ * Measures AMQP serialization, as used for peer-to-peer messages and transaction components, of goldblock states and
+ * of the whitelisted {@link TemplateData}, for lists of increasing length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GoldBlockSerializationBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int count;
+
+    private GlobalSerializationEnvironment serializationEnv;
+    private SerializationFactory factory;
+    private SerializationContext context;
+    private ArrayList<GoldBlockState> states;
+    private ArrayList<TemplateData> templateData;
+    private SerializedBytes<ArrayList<GoldBlockState>> serializedStates;
+    private SerializedBytes<ArrayList<TemplateData>> serializedTemplateData;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializationEnv = setGlobalSerialization(true);
+        factory = SerializationFactory.Companion.getDefaultFactory();
+        context = SerializationDefaults.INSTANCE.getP2P_CONTEXT();
+
+        final BenchmarkLedger ledger = new BenchmarkLedger();
+        states = new ArrayList<>(count);
+        templateData = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            states.add(ledger.goldBlocks(i + 1, ledger.holder.getParty()));
+            templateData.add(new TemplateData("payload-" + i));
+        }
+        serializedStates = factory.serialize(states, context);
+        serializedTemplateData = factory.serialize(templateData, context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serializationEnv.unset();
+    }
+
+    @Benchmark
+    public SerializedBytes<ArrayList<GoldBlockState>> serializeGoldBlockStates() {
+        return factory.serialize(states, context);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<GoldBlockState> deserializeGoldBlockStates() {
+        return factory.deserialize(serializedStates, ArrayList.class, context);
+    }
+
+    @Benchmark
+    public SerializedBytes<ArrayList<TemplateData>> serializeTemplateData() {
+        return factory.serialize(templateData, context);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<TemplateData> deserializeTemplateData() {
+        return factory.deserialize(serializedTemplateData, ArrayList.class, context);
+    }
+}
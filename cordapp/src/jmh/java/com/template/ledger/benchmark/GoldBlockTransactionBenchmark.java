@@ -0,0 +1,93 @@
+package com.template.ledger.benchmark;
+
+import com.template.TemplateContract;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.transactions.LedgerTransaction;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.WireTransaction;
+import net.corda.testing.core.GlobalSerializationEnvironment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static net.corda.testing.core.SerializationTestHelpersKt.setGlobalSerialization;
+
+/**
+ * Measures the node-side cost of a goldblock trade outside of any flow: building the transaction, signing it, full
+ * {@link SignedTransaction#verify} against the recorded inputs, and the contract checks alone. The template contract
+ * is measured alongside as the floor for contract dispatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GoldBlockTransactionBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int inputs;
+
+    @Param({"1", "10", "100"})
+    public int outputs;
+
+    private GlobalSerializationEnvironment serializationEnv;
+    private BenchmarkLedger ledger;
+    private List<StateAndRef<GoldBlockState>> inputStates;
+    private SignedTransaction moveTx;
+    private LedgerTransaction moveLedgerTx;
+    private final GoldBlockContract goldBlockContract = new GoldBlockContract();
+    private final TemplateContract templateContract = new TemplateContract();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        serializationEnv = setGlobalSerialization(true);
+        ledger = new BenchmarkLedger();
+        inputStates = ledger.recordedStates(inputs, outputs);
+        // Signed by the seller, the buyer and the notary, as it would be once finalised.
+        final SignedTransaction sellerSigned = ledger.services.signInitialTransaction(ledger.move(inputStates, outputs));
+        moveTx = ledger.notaryServices.addSignature(ledger.holderServices.addSignature(sellerSigned));
+        moveLedgerTx = moveTx.toLedgerTransaction(ledger.services, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serializationEnv.unset();
+    }
+
+    @Benchmark
+    public WireTransaction buildIssue() {
+        return ledger.issue(outputs, 10L).toWireTransaction(ledger.services);
+    }
+
+    @Benchmark
+    public WireTransaction buildMove() {
+        return ledger.move(inputStates, outputs).toWireTransaction(ledger.services);
+    }
+
+    @Benchmark
+    public SignedTransaction signMove() {
+        return ledger.services.signInitialTransaction(ledger.move(inputStates, outputs));
+    }
+
+    @Benchmark
+    public SignedTransaction verifyMove() throws Exception {
+        moveTx.verify(ledger.services);
+        return moveTx;
+    }
+
+    @Benchmark
+    public LedgerTransaction goldBlockContractVerify() {
+        goldBlockContract.verify(moveLedgerTx);
+        return moveLedgerTx;
+    }
+
+    @Benchmark
+    public LedgerTransaction templateContractVerify() {
+        templateContract.verify(moveLedgerTx);
+        return moveLedgerTx;
+    }
+}
@@ -1,5 +1,6 @@
 package com.template;
 
+import com.template.ledger.api.RpcConnectionPool;
 import net.corda.core.messaging.CordaRPCOps;
 
 import javax.ws.rs.GET;
@@ -14,7 +15,7 @@ public class TemplateApi {
     private final CordaRPCOps rpcOps;
 
     public TemplateApi(CordaRPCOps services) {
-        this.rpcOps = services;
+        this.rpcOps = RpcConnectionPool.pooled(services);
     }
 
     /**
@@ -12,11 +12,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException;
 
 /**
  * Demonstration of how to use the CordaRPCClient to connect to a Corda Node and
  * stream the contents of the node's vault.
+ * <p>
+ * With {@code --stream <checkpoint file>} the vault is streamed by {@link TemplateStreamingClient} instead, which
+ * pages the snapshot, bounds its memory use and resumes from the checkpoint after a reconnect.
  */
 public class TemplateClient {
     private static final Logger logger = LoggerFactory.getLogger(TemplateClient.class);
@@ -25,12 +30,16 @@ public class TemplateClient {
         logger.info("{}", state.getState().getData());
     }
 
-    public static void main(String[] args) throws ActiveMQException, InterruptedException, ExecutionException {
-        if (args.length != 1) {
-            throw new IllegalArgumentException("Usage: TemplateClient <node address>");
+    public static void main(String[] args) throws ActiveMQException, InterruptedException, ExecutionException, IOException {
+        if (args.length != 1 && !(args.length == 3 && args[1].equals("--stream"))) {
+            throw new IllegalArgumentException("Usage: TemplateClient <node address> [--stream <checkpoint file>]");
         }
 
         final NetworkHostAndPort nodeAddress = NetworkHostAndPort.parse(args[0]);
+        if (args.length == 3) {
+            new TemplateStreamingClient(nodeAddress, Paths.get(args[2])).run();
+            return;
+        }
         final CordaRPCClient client = new CordaRPCClient(nodeAddress, CordaRPCClientConfiguration.DEFAULT);
 
         // Can be amended in the Main file.
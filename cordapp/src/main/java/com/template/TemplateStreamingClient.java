@@ -0,0 +1,228 @@
+package com.template;
+
+import net.corda.client.rpc.CordaRPCClient;
+import net.corda.client.rpc.CordaRPCClientConfiguration;
+import net.corda.client.rpc.CordaRPCConnection;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.*;
+import net.corda.core.utilities.NetworkHostAndPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Streams a node's TemplateStates with bounded memory, as an alternative to {@link TemplateClient}'s single
+ * {@code vaultTrack} call.
+ * <p>
+ * The snapshot is read a page at a time in recorded-time order. Updates pass to the logging thread through a bounded
+ * queue and are logged in batches. RPC observations are pushed by the node and cannot be slowed down, so when the
+ * queue stays full the client drops the feed and catches up by paging the vault from its checkpoint instead of
+ * buffering without limit.
+ * <p>
+ * After every page and batch, the recorded time reached is written to a checkpoint file. A restarted client, or one
+ * reconnecting after the node went away, resumes from there. Delivery is at least once: states recorded around a
+ * checkpoint or a resubscription may be logged twice.
+ */
+public class TemplateStreamingClient {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateStreamingClient.class);
+
+    // Number of snapshot states fetched per vault query.
+    private static final int PAGE_SIZE = 500;
+
+    // Number of updates buffered for the logging thread before the feed is considered to be overflowing.
+    private static final int QUEUE_CAPACITY = 1_000;
+
+    // Number of updates logged together.
+    private static final int BATCH_SIZE = 100;
+
+    // How long the RPC thread waits for room in a full queue before the feed is dropped.
+    private static final Duration OVERFLOW_WAIT = Duration.ofSeconds(1);
+
+    // How far before an update's arrival a resume starts, to cover states recorded just before it arrived.
+    private static final Duration RESUME_MARGIN = Duration.ofSeconds(5);
+
+    // Upper bound on the back-off between reconnection attempts.
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(60);
+
+    // Recorded-time order, with the state reference breaking ties, so that pages do not shift as the vault grows.
+    private static final Sort BY_RECORDED_TIME = new Sort(Arrays.asList(
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC),
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+
+    private final CordaRPCClient client;
+    private final Path checkpointFile;
+    private Instant checkpoint;
+    private long backoffSeconds = 1;
+
+    public TemplateStreamingClient(NetworkHostAndPort nodeAddress, Path checkpointFile) {
+        this.client = new CordaRPCClient(nodeAddress, CordaRPCClientConfiguration.DEFAULT);
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Streams until interrupted, reconnecting whenever the connection to the node fails.
+     */
+    public void run() throws IOException, InterruptedException {
+        checkpoint = readCheckpoint();
+        logger.info("Streaming TemplateStates {}", checkpoint == null ? "from the start of the vault" : "recorded since " + checkpoint);
+        while (!Thread.currentThread().isInterrupted()) {
+            CordaRPCConnection connection = null;
+            try {
+                // Can be amended in the Main file.
+                connection = client.start("user1", "test");
+                while (stream(connection.getProxy())) {
+                    logger.info("Update queue overflowed, catching up from checkpoint {}", checkpoint);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Vault stream failed, reconnecting in {}s from checkpoint {}", backoffSeconds, checkpoint, e);
+            } finally {
+                if (connection != null) {
+                    try {
+                        connection.forceClose();
+                    } catch (RuntimeException e) {
+                        logger.debug("Error closing RPC connection", e);
+                    }
+                }
+            }
+            TimeUnit.SECONDS.sleep(backoffSeconds);
+            backoffSeconds = Math.min(MAX_BACKOFF.getSeconds(), backoffSeconds * 2);
+        }
+    }
+
+    /**
+     * Pages through the vault from the checkpoint and then logs updates until the feed fails or overflows. Returns
+     * true on overflow, so that the caller resubscribes on the same connection.
+     */
+    private boolean stream(CordaRPCOps proxy) throws IOException, InterruptedException {
+        final QueryCriteria criteria = criteriaSince(checkpoint);
+        final Duration clockOffset = Duration.between(Instant.now(), proxy.currentNodeTime());
+        final BlockingQueue<Received> updates = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final AtomicBoolean overflowed = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Subscribe before paging, so that nothing recorded while the snapshot is read is missed.
+        final DataFeed<Vault.Page<TemplateState>, Vault.Update<TemplateState>> feed = proxy.vaultTrackBy(
+                criteria, new PageSpecification(DEFAULT_PAGE_NUM, PAGE_SIZE), BY_RECORDED_TIME, TemplateState.class);
+        final Subscription subscription = feed.getUpdates().subscribe(update -> {
+            if (overflowed.get()) return;
+            final Received received = new Received(update, Instant.now().plus(clockOffset));
+            try {
+                if (!updates.offer(received, OVERFLOW_WAIT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    overflowed.set(true);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                overflowed.set(true);
+            }
+        }, failure::set);
+
+        try {
+            Vault.Page<TemplateState> page = feed.getSnapshot();
+            int pageNumber = DEFAULT_PAGE_NUM;
+            while (true) {
+                logPage(page);
+                if (page.getStates().size() < PAGE_SIZE) break;
+                page = proxy.vaultQueryBy(criteria, new PageSpecification(++pageNumber, PAGE_SIZE), BY_RECORDED_TIME, TemplateState.class);
+            }
+            backoffSeconds = 1;
+
+            final List<Received> batch = new ArrayList<>(BATCH_SIZE);
+            while (true) {
+                final Received first = updates.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    updates.drainTo(batch, BATCH_SIZE - 1);
+                    logBatch(batch);
+                    batch.clear();
+                } else if (overflowed.get()) {
+                    // Everything queued before the overflow has been logged; the rest is paged from the checkpoint.
+                    return true;
+                } else if (failure.get() != null) {
+                    throw new IllegalStateException("Vault update feed failed", failure.get());
+                }
+            }
+        } finally {
+            subscription.unsubscribe();
+        }
+    }
+
+    private void logPage(Vault.Page<TemplateState> page) throws IOException {
+        final List<StateAndRef<TemplateState>> states = page.getStates();
+        if (states.isEmpty()) return;
+        for (int i = 0; i < states.size(); i++) {
+            if (page.getStatesMetadata().get(i).getStatus() == Vault.StateStatus.UNCONSUMED) {
+                logger.info("{}", states.get(i).getState().getData());
+            }
+        }
+        advanceCheckpoint(page.getStatesMetadata().get(states.size() - 1).getRecordedTime());
+    }
+
+    private void logBatch(List<Received> batch) throws IOException {
+        int produced = 0;
+        for (Received received : batch) {
+            for (StateAndRef<TemplateState> state : received.update.getProduced()) {
+                logger.info("{}", state.getState().getData());
+                produced++;
+            }
+        }
+        logger.debug("Logged {} produced states from {} updates", produced, batch.size());
+        advanceCheckpoint(batch.get(batch.size() - 1).arrivedAt.minus(RESUME_MARGIN));
+    }
+
+    private void advanceCheckpoint(Instant recordedTime) throws IOException {
+        if (checkpoint != null && !recordedTime.isAfter(checkpoint)) return;
+        checkpoint = recordedTime;
+        // Write then rename, so that a crash never leaves a truncated checkpoint behind.
+        final Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(temporary, checkpoint.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Instant readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) return null;
+        final String recorded = new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim();
+        return recorded.isEmpty() ? null : Instant.parse(recorded);
+    }
+
+    /**
+     * States of every status, so that states consumed while the snapshot is paged do not shift later pages.
+     */
+    private static QueryCriteria criteriaSince(Instant checkpoint) {
+        final QueryCriteria.TimeCondition since = checkpoint == null ? null : new QueryCriteria.TimeCondition(
+                QueryCriteria.TimeInstantType.RECORDED,
+                new ColumnPredicate.BinaryComparison<>(BinaryComparisonOperator.GREATER_THAN_OR_EQUAL, checkpoint));
+        return new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL, null, null, null, null, since);
+    }
+
+    private static final class Received {
+        private final Vault.Update<TemplateState> update;
+        private final Instant arrivedAt;
+
+        private Received(Vault.Update<TemplateState> update, Instant arrivedAt) {
+            this.update = update;
+            this.arrivedAt = arrivedAt;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.template.ledger.api;
+
+import com.template.ledger.common.constants.GoldBlockConstants;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.messaging.FlowHandle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caps the flows that {@link GoldBlockAPI} has in flight, per endpoint and per counterparty, so that a burst of
+ * requests is turned away at the webserver instead of swamping the node's state machine and checkpoint store.
+ * <p>
+ * A request that finds no free slot joins a bounded queue and waits up to the queue timeout for one. Once the queue
+ * is full, or the wait times out, the request is shed with a {@link RejectedException} carrying a retry hint derived
+ * from how long the endpoint's flows have recently been taking. A slot is held from the flow's start until its return
+ * value completes, so asynchronous requests count against the limits for as long as their flows run.
+ */
+public class AdmissionControl implements GoldBlockConstants {
+
+    private final int maxPerEndpoint;
+    private final int maxPerParty;
+    private final int queueSize;
+    private final long queueTimeoutMillis;
+    private final Map<String, Limiter> endpoints = new ConcurrentHashMap<>();
+    private final Map<CordaX500Name, Limiter> parties = new ConcurrentHashMap<>();
+
+    public AdmissionControl(int maxPerEndpoint, int maxPerParty, int queueSize, long queueTimeoutMillis) {
+        if (maxPerEndpoint <= 0 || maxPerParty <= 0 || queueSize < 0 || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Admission limits must be positive and the queue must not be negative.");
+        }
+        this.maxPerEndpoint = maxPerEndpoint;
+        this.maxPerParty = maxPerParty;
+        this.queueSize = queueSize;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    /**
+     * Admission limits from the webserver's system properties, falling back to the defaults in
+     * {@link GoldBlockConstants}.
+     */
+    public static AdmissionControl fromSystemProperties() {
+        return new AdmissionControl(
+                Integer.getInteger(GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT_PROPERTY, GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT),
+                Integer.getInteger(GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT_PER_PARTY_PROPERTY, GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT_PER_PARTY),
+                Integer.getInteger(GOLD_BLOCK_ADMISSION_QUEUE_SIZE_PROPERTY, GOLD_BLOCK_ADMISSION_QUEUE_SIZE),
+                Long.getLong(GOLD_BLOCK_ADMISSION_QUEUE_TIMEOUT_MILLIS_PROPERTY, GOLD_BLOCK_ADMISSION_QUEUE_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Starts a flow with {@code start} once {@code endpoint} and {@code party} both have a free slot, and frees the
+     * slots when the flow returns. Throws {@link RejectedException} if the request is shed.
+     */
+    public <H extends FlowHandle<?>> H start(String endpoint, CordaX500Name party, Supplier<H> start) {
+        return start(endpoint, Collections.singleton(party), start);
+    }
+
+    /**
+     * Starts a flow with {@code start} once {@code endpoint} and each of the flow's counterparties in {@code parties}
+     * have a free slot, and frees the slots when the flow returns. A flow with no counterparty passes no parties and
+     * is only capped by its endpoint. Throws {@link RejectedException} if the request is shed.
+     * <p>
+     * The party slots are taken first, in name order so that two batches cannot each hold a slot the other waits for.
+     * A request waiting for a busy counterparty therefore holds no endpoint slot, and cannot keep requests for other
+     * counterparties off the endpoint.
+     */
+    public <H extends FlowHandle<?>> H start(String endpoint, Collection<CordaX500Name> parties, Supplier<H> start) {
+        final Limiter endpointLimiter = endpoints.computeIfAbsent(endpoint, name -> new Limiter(maxPerEndpoint));
+        final TreeSet<CordaX500Name> ordered = new TreeSet<>(Comparator.comparing(CordaX500Name::toString));
+        ordered.addAll(parties);
+        final List<Limiter> partyLimiters = new ArrayList<>();
+        ordered.forEach(party -> partyLimiters.add(this.parties.computeIfAbsent(party, name -> new Limiter(maxPerParty))));
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+
+        final List<Limiter> held = new ArrayList<>();
+        final H flowHandle;
+        try {
+            for (Limiter partyLimiter : partyLimiters) {
+                partyLimiter.acquire(deadline, endpointLimiter);
+                held.add(partyLimiter);
+            }
+            endpointLimiter.acquire(deadline, endpointLimiter);
+            held.add(endpointLimiter);
+            flowHandle = start.get();
+        } catch (RuntimeException e) {
+            held.forEach(limiter -> limiter.permits.release());
+            throw e;
+        }
+        endpointLimiter.admitted.incrementAndGet();
+
+        final long startedAt = System.nanoTime();
+        flowHandle.getReturnValue().toCompletableFuture().whenComplete((result, error) -> {
+            endpointLimiter.recordDuration(System.nanoTime() - startedAt);
+            held.forEach(limiter -> limiter.permits.release());
+        });
+        return flowHandle;
+    }
+
+    /**
+     * Per-endpoint admission counters and gauges in the Prometheus text format.
+     */
+    public String getPrometheusText() {
+        final StringBuilder text = new StringBuilder();
+        text.append("# HELP goldblock_api_admitted_total Flow starts admitted by the GoldBlock API.\n")
+                .append("# TYPE goldblock_api_admitted_total counter\n");
+        endpoints.forEach((name, limiter) -> sample(text, "goldblock_api_admitted_total", name, "", limiter.admitted.get()));
+        text.append("# HELP goldblock_api_shed_total Requests shed by the GoldBlock API's admission control.\n")
+                .append("# TYPE goldblock_api_shed_total counter\n");
+        endpoints.forEach((name, limiter) -> {
+            sample(text, "goldblock_api_shed_total", name, ",reason=\"queue_full\"", limiter.shedQueueFull.get());
+            sample(text, "goldblock_api_shed_total", name, ",reason=\"timeout\"", limiter.shedTimeout.get());
+        });
+        text.append("# HELP goldblock_api_in_flight Flows started by the GoldBlock API that have not returned.\n")
+                .append("# TYPE goldblock_api_in_flight gauge\n");
+        endpoints.forEach((name, limiter) -> sample(text, "goldblock_api_in_flight", name, "", limiter.limit - limiter.permits.availablePermits()));
+        text.append("# HELP goldblock_api_queued Requests waiting for a flow slot.\n")
+                .append("# TYPE goldblock_api_queued gauge\n");
+        endpoints.forEach((name, limiter) -> sample(text, "goldblock_api_queued", name, "", limiter.waiting.get()));
+        return text.toString();
+    }
+
+    private static void sample(StringBuilder text, String metric, String endpoint, String labels, long value) {
+        text.append(metric).append("{endpoint=\"").append(endpoint).append('"').append(labels).append("} ")
+                .append(value).append('\n');
+    }
+
+    /**
+     * Slots for one endpoint or party. Shedding is counted against the endpoint, whichever limiter turned the request
+     * away.
+     */
+    private final class Limiter {
+        private final int limit;
+        private final Semaphore permits;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong shedQueueFull = new AtomicLong();
+        private final AtomicLong shedTimeout = new AtomicLong();
+        // Exponentially weighted mean flow duration in nanoseconds, used for the retry hint.
+        private volatile long meanDurationNanos;
+
+        private Limiter(int limit) {
+            this.limit = limit;
+            this.permits = new Semaphore(limit);
+        }
+
+        private void acquire(long deadline, Limiter endpoint) {
+            if (permits.tryAcquire()) return;
+            if (waiting.incrementAndGet() > queueSize) {
+                waiting.decrementAndGet();
+                endpoint.shedQueueFull.incrementAndGet();
+                throw new RejectedException("Too many requests are waiting to start a flow.", endpoint.retryAfterSeconds());
+            }
+            try {
+                if (!permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    endpoint.shedTimeout.incrementAndGet();
+                    throw new RejectedException("Timed out waiting to start a flow.", endpoint.retryAfterSeconds());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedException("Interrupted while waiting to start a flow.", endpoint.retryAfterSeconds());
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        private void recordDuration(long nanos) {
+            final long mean = meanDurationNanos;
+            meanDurationNanos = mean == 0 ? nanos : mean + (nanos - mean) / 8;
+        }
+
+        private long retryAfterSeconds() {
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(meanDurationNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        }
+    }
+
+    /**
+     * Thrown when a request is shed. The API answers it with 429 Too Many Requests and a {@code Retry-After} header.
+     */
+    public static class RejectedException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        private RejectedException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+}
@@ -0,0 +1,154 @@
+package com.template.ledger.api;
+
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.messaging.CordaRPCOps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Uploads attachments such as assay and vault certificates to the node for {@link GoldBlockAPI}, without uploading
+ * content the node already stores.
+ * <p>
+ * The request body is copied to a temporary file while its SHA-256 is computed. Corda identifies an attachment by the
+ * SHA-256 of its bytes, so if the node already has an attachment with that hash the file is discarded; otherwise it is
+ * passed to {@link CordaRPCOps#uploadAttachmentWithMetadata}. Corda 3.1's RPC client does not stream: it reads the
+ * whole {@link InputStream} into a single RPC message, so an upload is held on the webserver's heap, and sent to the
+ * node, in one piece. The size limit has to stay below the RPC message limit for that reason.
+ * <p>
+ * Corda only stores ZIP or JAR archives, so a body that is not one already is wrapped in a ZIP with a single entry,
+ * {@code <sha256 of the body>/<filename>}. Corda refuses a transaction whose attachments contain the same path, so
+ * the body's hash keeps two different files uploaded under one name apart; the same file under the same name always
+ * gets the same path. The entry has a fixed timestamp, so the same file always becomes the same archive and
+ * deduplicates. Uploaded archives are stored as they are, and must not share paths with each other.
+ */
+public class AttachmentUploader {
+
+    static private final Logger logger = LoggerFactory.getLogger(AttachmentUploader.class);
+    static private final String UPLOADER = "goldblock-api";
+
+    private final CordaRPCOps rpcOps;
+    private final long maxBytes;
+
+    public AttachmentUploader(CordaRPCOps rpcOps, long maxBytes) {
+        this.rpcOps = rpcOps;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Uploads {@code body}. If {@code entryName} is given the body is a plain file to be stored under that name in
+     * a ZIP; if not, it must already be a ZIP or JAR. Throws {@link TooLargeException} once more than the limit has
+     * been read.
+     */
+    public Result upload(InputStream body, String entryName) throws IOException {
+        final Path spool = Files.createTempFile("goldblock-attachment", ".zip");
+        final Path plain = entryName == null ? null : Files.createTempFile("goldblock-attachment", ".bin");
+        try {
+            final MessageDigest sha256 = sha256();
+            if (entryName == null) {
+                try (OutputStream file = Files.newOutputStream(spool);
+                     OutputStream hashed = new DigestOutputStream(file, sha256)) {
+                    copy(body, hashed, maxBytes);
+                }
+            } else {
+                final MessageDigest bodySha256 = sha256();
+                try (OutputStream file = Files.newOutputStream(plain);
+                     OutputStream hashed = new DigestOutputStream(file, bodySha256)) {
+                    copy(body, hashed, maxBytes);
+                }
+                try (InputStream file = Files.newInputStream(plain);
+                     OutputStream zipFile = Files.newOutputStream(spool);
+                     OutputStream hashed = new DigestOutputStream(zipFile, sha256)) {
+                    final ZipOutputStream zip = new ZipOutputStream(hashed);
+                    final ZipEntry entry = new ZipEntry(new SecureHash.SHA256(bodySha256.digest()) + "/" + entryName);
+                    entry.setTime(0);
+                    zip.putNextEntry(entry);
+                    copy(file, zip, Long.MAX_VALUE);
+                    zip.closeEntry();
+                    zip.finish();
+                }
+            }
+            final SecureHash id = new SecureHash.SHA256(sha256.digest());
+            if (rpcOps.attachmentExists(id)) {
+                return new Result(id, true);
+            }
+
+            final String filename = entryName == null ? id + ".zip" : entryName + ".zip";
+            try (InputStream upload = Files.newInputStream(spool)) {
+                final SecureHash stored = rpcOps.uploadAttachmentWithMetadata(upload, UPLOADER, filename);
+                if (!stored.equals(id)) {
+                    logger.warn("Node stored attachment {} under {}", id, stored);
+                }
+                return new Result(stored, false);
+            } catch (RuntimeException e) {
+                // Another request uploading the same content may have won the race since the check above.
+                if (rpcOps.attachmentExists(id)) {
+                    return new Result(id, true);
+                }
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(spool);
+            if (plain != null) {
+                Files.deleteIfExists(plain);
+            }
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, long maxBytes) throws IOException {
+        final byte[] buffer = new byte[64 * 1024];
+        long copied = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            copied += read;
+            if (copied > maxBytes) {
+                throw new TooLargeException(maxBytes);
+            }
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The id of an uploaded attachment, and whether the node already had it.
+     */
+    public static class Result {
+        private final SecureHash id;
+        private final boolean deduplicated;
+
+        private Result(SecureHash id, boolean deduplicated) {
+            this.id = id;
+            this.deduplicated = deduplicated;
+        }
+
+        public SecureHash getId() { return id; }
+
+        public boolean isDeduplicated() { return deduplicated; }
+    }
+
+    /**
+     * Thrown when an upload exceeds the size limit. The API answers it with 413 Request Entity Too Large.
+     */
+    public static class TooLargeException extends IOException {
+        private TooLargeException(long maxBytes) {
+            super("Attachments may not be larger than " + maxBytes + " bytes.");
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.template.ledger.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.corda.core.messaging.FlowProgressHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the progress of every flow started through {@link GoldBlockAPI} to the clients of
+ * {@code GET /api/gb/flows/stream} as server-sent events.
+ * <p>
+ * Each flow's progress observable is subscribed to exactly once, however many clients are listening, and the
+ * subscription is released when the flow finishes. Every client has its own pending map holding at most one event per
+ * flow: a newer step replaces an older one that has not been written yet, so a slow client receives the latest step of
+ * each flow rather than a growing backlog, and a stalled client costs one entry per in-flight flow.
+ */
+public class FlowProgressHub {
+
+    static private final Logger logger = LoggerFactory.getLogger(FlowProgressHub.class);
+    static private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<UUID, Event> inFlight = new LinkedHashMap<>();
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxClients;
+
+    public FlowProgressHub(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Publishes the progress of a started flow until it completes.
+     */
+    public <T> void track(String flowName, FlowProgressHandle<T> flowHandle) {
+        final UUID runId = flowHandle.getId().getUuid();
+        final AtomicBoolean finished = new AtomicBoolean();
+        publish(new Event(sequence.incrementAndGet(), "progress", runId, flowName, "Started", null), finished);
+        final Subscription subscription = flowHandle.getProgress().subscribe(
+                step -> publish(new Event(sequence.incrementAndGet(), "progress", runId, flowName, step, null), finished),
+                error -> { /* The outcome is published from the return value below. */ });
+        flowHandle.getReturnValue().toCompletableFuture().whenComplete((result, error) -> {
+            subscription.unsubscribe();
+            final String outcome = error == null ? "COMPLETED" : "FAILED";
+            publish(new Event(sequence.incrementAndGet(), "done", runId, flowName, null, outcome), finished);
+        });
+    }
+
+    private void publish(Event event, AtomicBoolean finished) {
+        // Under one lock, so a step that races the flow's completion cannot overtake its done event.
+        synchronized (inFlight) {
+            if (finished.get()) return;
+            if (event.isTerminal()) {
+                finished.set(true);
+                inFlight.remove(event.runId);
+            } else {
+                inFlight.put(event.runId, event);
+            }
+            for (Client client : clients) {
+                client.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Registers a client, primed with the latest step of every in-flight flow, or returns null when
+     * {@code maxClients} are already connected.
+     */
+    public Client connect() {
+        final Client client = new Client();
+        synchronized (inFlight) {
+            if (clients.size() >= maxClients) return null;
+            inFlight.values().forEach(client::offer);
+            clients.add(client);
+        }
+        return client;
+    }
+
+    /**
+     * One connected event-stream client. {@link #stream} runs on the request thread until the client disconnects.
+     */
+    public class Client {
+        private final LinkedHashMap<UUID, Event> pending = new LinkedHashMap<>();
+
+        private void offer(Event event) {
+            synchronized (pending) {
+                // Re-inserting moves the flow to the back, so events are written in the order of their latest step.
+                pending.remove(event.runId);
+                pending.put(event.runId, event);
+                pending.notify();
+            }
+        }
+
+        /**
+         * Writes events to {@code out} as they arrive, with a comment line every {@code heartbeatMillis} so that a
+         * disconnected client is noticed, until writing fails.
+         */
+        public void stream(OutputStream out, long heartbeatMillis) throws IOException {
+            try {
+                out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                while (!Thread.currentThread().isInterrupted()) {
+                    final List<Event> batch;
+                    synchronized (pending) {
+                        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+                        long remaining;
+                        while (pending.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+                        }
+                        batch = new ArrayList<>(pending.values());
+                        pending.clear();
+                    }
+                    final StringBuilder text = new StringBuilder();
+                    if (batch.isEmpty()) {
+                        text.append(": heartbeat\n\n");
+                    }
+                    for (Event event : batch) {
+                        event.appendTo(text);
+                    }
+                    // Writing outside the lock lets flows keep publishing while a slow client drains.
+                    out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                clients.remove(this);
+                logger.debug("Flow progress client disconnected");
+            }
+        }
+    }
+
+    private static final class Event {
+        private final long id;
+        private final String type;
+        private final UUID runId;
+        private final String flowName;
+        private final String step;
+        private final String status;
+
+        private Event(long id, String type, UUID runId, String flowName, String step, String status) {
+            this.id = id;
+            this.type = type;
+            this.runId = runId;
+            this.flowName = flowName;
+            this.step = step;
+            this.status = status;
+        }
+
+        private boolean isTerminal() { return status != null; }
+
+        private void appendTo(StringBuilder text) {
+            final Map<String, Object> data = new LinkedHashMap<>();
+            data.put("runId", runId.toString());
+            data.put("flow", flowName);
+            if (step != null) data.put("step", step);
+            if (status != null) data.put("status", status);
+            try {
+                text.append("id: ").append(id).append('\n')
+                        .append("event: ").append(type).append('\n')
+                        .append("data: ").append(mapper.writeValueAsString(data)).append("\n\n");
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.template.ledger.api;
+
+import com.google.common.collect.ImmutableMap;
+import net.corda.core.messaging.FlowHandle;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Keeps track of flows started asynchronously through {@link GoldBlockAPI} so that clients can poll
+ * {@code GET /api/gb/flows/{runId}} instead of holding a webserver thread for the lifetime of the flow.
+ * <p>
+ * Completion is observed through the flow's return value future, so no thread is blocked while a flow is in flight.
+ * The registry is bounded and forgets the oldest flows first.
+ */
+public class FlowStatusRegistry {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private final Map<UUID, FlowStatus> flows;
+
+    public FlowStatusRegistry(int maxEntries) {
+        this.flows = new LinkedHashMap<UUID, FlowStatus>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, FlowStatus> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Registers a started flow and returns its run id. {@code describe} renders the flow's result once it completes.
+     */
+    public <T> UUID track(String flowName, FlowHandle<T> flowHandle, Function<T, String> describe) {
+        final UUID runId = flowHandle.getId().getUuid();
+        final FlowStatus status = new FlowStatus(runId, flowName);
+        synchronized (flows) {
+            flows.put(runId, status);
+        }
+        flowHandle.getReturnValue().toCompletableFuture().whenComplete((result, error) -> {
+            if (error == null) {
+                status.complete(describe.apply(result));
+            } else {
+                status.fail(unwrap(error));
+            }
+        });
+        return runId;
+    }
+
+    // Strips the wrappers added by the futures, keeping the flow's own exception and its message.
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Returns the status of the flow, or null if it is unknown or has been evicted.
+     */
+    public FlowStatus get(UUID runId) {
+        synchronized (flows) {
+            return flows.get(runId);
+        }
+    }
+
+    public static class FlowStatus {
+        private final UUID runId;
+        private final String flowName;
+        private final Instant startedAt = Instant.now();
+        private volatile Status status = Status.RUNNING;
+        private volatile Instant finishedAt;
+        private volatile String result;
+        private volatile String error;
+
+        private FlowStatus(UUID runId, String flowName) {
+            this.runId = runId;
+            this.flowName = flowName;
+        }
+
+        private void complete(String result) {
+            this.result = result;
+            this.finishedAt = Instant.now();
+            this.status = Status.COMPLETED;
+        }
+
+        private void fail(Throwable error) {
+            this.error = String.valueOf(error.getMessage());
+            this.finishedAt = Instant.now();
+            this.status = Status.FAILED;
+        }
+
+        public Status getStatus() { return status; }
+
+        public Map<String, Object> toJson() {
+            final ImmutableMap.Builder<String, Object> json = ImmutableMap.<String, Object>builder()
+                    .put("runId", runId.toString())
+                    .put("flow", flowName)
+                    .put("status", status.name())
+                    .put("startedAt", startedAt.toString());
+            if (finishedAt != null) json.put("finishedAt", finishedAt.toString());
+            if (result != null) json.put("result", result);
+            if (error != null) json.put("error", error);
+            return json.build();
+        }
+    }
+}
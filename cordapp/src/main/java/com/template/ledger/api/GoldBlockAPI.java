@@ -1,44 +1,101 @@
 package com.template.ledger.api;
 
-import com.google.common.collect.ImmutableList;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.flow.BatchIssueFlow;
 import com.template.ledger.flow.BlockIssueFlow;
+import com.template.ledger.flow.ConsolidateGoldBlocksFlow;
+import com.template.ledger.flow.DistributionFlow;
+import com.template.ledger.flow.GoldBlockMetricsFlow;
+import com.template.ledger.flow.IssueLot;
+import com.template.ledger.flow.MoveLeg;
+import com.template.ledger.flow.ReissueRecoveryFlow;
+import com.template.ledger.flow.ReissueRequestFlow;
 import com.template.ledger.flow.SellerFlow;
+import net.corda.core.crypto.SecureHash;
 import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.messaging.FlowProgressHandle;
-import net.corda.core.node.NodeInfo;
+import net.corda.core.node.services.Vault;
 import net.corda.core.transactions.SignedTransaction;
-import net.corda.finance.contracts.Commodity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
-import static java.util.stream.Collectors.toList;
+import static javax.ws.rs.core.Response.Status.BAD_GATEWAY;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.CREATED;
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 
 // This API is accessible from /api/template. The endpoint paths specified below are relative to it.
 @Path("gb")
 public class GoldBlockAPI implements GoldBlockConstants {
 
     static private final Logger logger = LoggerFactory.getLogger(GoldBlockAPI.class);
+    static private final ObjectMapper ndjsonMapper = new ObjectMapper();
+    static private final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    // Not among JAX-RS 2.0's Response.Status constants.
+    static private final int UNPROCESSABLE_ENTITY = 422;
+    static private final int TOO_MANY_REQUESTS = 429;
+    // Content types stored as they are; any other upload is wrapped in a ZIP first.
+    static private final List<String> ARCHIVE_TYPES = Arrays.asList("application/zip", "application/x-zip-compressed", "application/java-archive");
 
     private final CordaRPCOps rpcOps;
     private final CordaX500Name nodeName;
-    private final List<String> serviceNames = ImmutableList.of("Controller", "Network Map Service");
+    private final FlowStatusRegistry flowStatuses = new FlowStatusRegistry(GOLD_BLOCK_MAX_TRACKED_FLOWS);
+    private final FlowProgressHub progressHub = new FlowProgressHub(GOLD_BLOCK_PROGRESS_MAX_CLIENTS);
+    private final IdempotencyCache idempotencyKeys = new IdempotencyCache(GOLD_BLOCK_IDEMPOTENCY_MAX_KEYS,
+            Duration.ofHours(GOLD_BLOCK_IDEMPOTENCY_TTL_HOURS));
+    private final AdmissionControl admission = AdmissionControl.fromSystemProperties();
+    private final AttachmentUploader attachments;
+    private final GoldBlockHoldings holdings;
+    private final PeersView peers;
+    private final Object nodeMetricsLock = new Object();
+    private String nodeMetrics;
+    private long nodeMetricsReadNanos;
 
     public GoldBlockAPI(CordaRPCOps services) {
-        this.rpcOps = services;
+        this.rpcOps = RpcConnectionPool.pooled(services);
         this.nodeName = rpcOps.nodeInfo().getLegalIdentities().get(0).getName();
+        this.attachments = new AttachmentUploader(rpcOps, GOLD_BLOCK_ATTACHMENT_MAX_BYTES);
+        // The holdings and peers feeds are long-lived, so they stay on the webserver's own connection rather than a pooled one.
+        this.holdings = new GoldBlockHoldings(services);
+        this.peers = new PeersView(services, nodeName);
     }
 
 
@@ -54,23 +111,183 @@ public class GoldBlockAPI implements GoldBlockConstants {
 
     /**
      * Returns all parties registered with the [NetworkMapService]. These names can be used to look up identities
-     * using the [IdentityService].
+     * using the [IdentityService]. The response carries an ETag; a request whose If-None-Match still matches it is
+     * answered with 304 Not Modified.
      */
     @GET
     @Path("peers")
     @Produces(MediaType.APPLICATION_JSON)
-    public Map<String, List<CordaX500Name>> getPeers() {
-        List<NodeInfo> nodeInfoSnapshot = rpcOps.networkMapSnapshot();
-        return ImmutableMap.of("peers", nodeInfoSnapshot
-                .stream()
-                .map(node -> node.getLegalIdentities().get(0).getName())
-                .filter(name -> !name.equals(nodeName) && !serviceNames.contains(name.getOrganisation()))
-                .collect(toList()));
+    public Response getPeers(@Context Request request) {
+        final PeersView.Snapshot snapshot = peers.snapshot();
+        final EntityTag tag = new EntityTag(snapshot.getTag());
+        // Clients may cache the list but must revalidate it, which costs a 304 while the network map is unchanged.
+        final CacheControl revalidate = new CacheControl();
+        revalidate.setNoCache(true);
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate).build();
+        }
+        return Response.ok(snapshot.getJson(), MediaType.APPLICATION_JSON).tag(tag).cacheControl(revalidate).build();
+    }
+
+    /**
+     * Returns goldblock balances from the webserver's in-memory holdings view. With {@code owner} (and optionally
+     * {@code issuer}) a single balance is returned, otherwise every holding is listed.
+     */
+    @GET
+    @Path("balance")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getBalance(@QueryParam("owner") CordaX500Name owner, @QueryParam("issuer") CordaX500Name issuer) {
+        if (!holdings.isSeeded()) {
+            return Response.status(SERVICE_UNAVAILABLE).entity("Holdings are still being loaded from the vault.\n").build();
+        }
+        if (owner == null) {
+            if (issuer != null) {
+                return Response.status(BAD_REQUEST).entity("Query parameter 'issuer' requires 'owner'.\n").build();
+            }
+            return Response.ok(ImmutableMap.of("holdings", holdings.holdings()), MediaType.APPLICATION_JSON).build();
+        }
+        final long quantity = issuer == null
+                ? holdings.balance(owner.toString())
+                : holdings.balance(owner.toString(), issuer.toString());
+        final ImmutableMap.Builder<String, Object> balance = ImmutableMap.<String, Object>builder().put("owner", owner.toString());
+        if (issuer != null) balance.put("issuer", issuer.toString());
+        return Response.ok(balance.put("quantity", quantity).build(), MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Lists goldblock states one page at a time, in the order they were recorded. {@code status} is UNCONSUMED,
+     * CONSUMED or ALL, {@code from} and {@code to} bound the recorded time (ISO-8601, both inclusive) and
+     * {@code cursor} is the {@code next} value of the previous page.
+     */
+    @GET
+    @Path("states")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response listStates(@QueryParam("status") @DefaultValue("UNCONSUMED") String status,
+                               @QueryParam("owner") CordaX500Name owner,
+                               @QueryParam("from") String from, @QueryParam("to") String to,
+                               @QueryParam("limit") @DefaultValue("" + GOLD_BLOCK_STATES_PAGE_SIZE) int limit,
+                               @QueryParam("cursor") String cursor) {
+        final GoldBlockStatePager pager;
+        final GoldBlockStatePager.Cursor after;
+        try {
+            pager = statePager(status, owner, from, to, limit);
+            after = cursor == null ? null : GoldBlockStatePager.Cursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity(ex.getMessage() + "\n").build();
+        }
+
+        try {
+            return Response.ok(pager.page(after, limit).toJson(), MediaType.APPLICATION_JSON).build();
+        } catch (Throwable ex) {
+            final String msg = ex.getMessage();
+            logger.error(ex.getMessage(), ex);
+            return Response.status(BAD_REQUEST).entity(msg).build();
+        }
     }
 
+    /**
+     * Streams every matching goldblock state as newline-delimited JSON, fetching {@code limit} states from the vault
+     * at a time and writing each page as soon as it arrives. Each line carries a {@code cursor}, so an interrupted
+     * download can be resumed by passing the last one received.
+     */
+    @GET
+    @Path("states")
+    @Produces("application/x-ndjson")
+    public Response streamStates(@QueryParam("status") @DefaultValue("UNCONSUMED") String status,
+                                 @QueryParam("owner") CordaX500Name owner,
+                                 @QueryParam("from") String from, @QueryParam("to") String to,
+                                 @QueryParam("limit") @DefaultValue("" + GOLD_BLOCK_STATES_MAX_PAGE_SIZE) int limit,
+                                 @QueryParam("cursor") String cursor) {
+        final GoldBlockStatePager pager;
+        final GoldBlockStatePager.Cursor start;
+        try {
+            pager = statePager(status, owner, from, to, limit);
+            start = cursor == null ? null : GoldBlockStatePager.Cursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity(ex.getMessage() + "\n").build();
+        }
+
+        final StreamingOutput ndjson = output -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            GoldBlockStatePager.Cursor after = start;
+            do {
+                final GoldBlockStatePager.Page page = pager.page(after, limit);
+                for (Map<String, Object> row : page.getRows()) {
+                    writer.write(ndjsonMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                writer.flush();
+                after = page.getNext();
+            } while (after != null);
+        };
+        return Response.ok(ndjson, "application/x-ndjson").build();
+    }
+
+    private GoldBlockStatePager statePager(String status, CordaX500Name owner, String from, String to, int limit) {
+        if (limit <= 0 || limit > GOLD_BLOCK_STATES_MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Query parameter 'limit' must be between 1 and " + GOLD_BLOCK_STATES_MAX_PAGE_SIZE + ".");
+        }
+        final Vault.StateStatus stateStatus;
+        final Instant fromTime;
+        final Instant toTime;
+        try {
+            stateStatus = Vault.StateStatus.valueOf(status);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Query parameter 'status' must be UNCONSUMED, CONSUMED or ALL.");
+        }
+        try {
+            fromTime = from == null ? null : Instant.parse(from);
+            toTime = to == null ? null : Instant.parse(to);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Query parameters 'from' and 'to' must be ISO-8601 instants.");
+        }
+        return new GoldBlockStatePager(rpcOps, stateStatus, owner, fromTime, toTime);
+    }
+
+    /**
+     * Issues {@code orderValue} goldblocks to this node, with the attachments whose ids are given as {@code attachment}
+     * parameters. A request carrying an {@code Idempotency-Key} header starts at most one flow per key; retries with
+     * the same key return the original flow's outcome.
+     */
     @PUT
     @Path("issue")
-    public Response issueGb(@QueryParam("orderValue") int orderValue, @QueryParam("partyName") CordaX500Name partyName) throws InterruptedException, ExecutionException {
+    public Response issueGb(@QueryParam("orderValue") int orderValue, @QueryParam("partyName") CordaX500Name partyName,
+                            @QueryParam("attachment") List<String> attachmentParams, @QueryParam("async") boolean async,
+                            @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey, @Context UriInfo uriInfo) {
+        if (orderValue <= 0) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'tokenValue' must be non-negative.\n").build();
+        }
+        if (partyName == null) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'partyName' missing or has wrong format.\n").build();
+        }
+
+        final Party otherParty = rpcOps.wellKnownPartyFromX500Name(partyName);
+        if (otherParty == null) {
+            return Response.status(BAD_REQUEST).entity("Party named " + partyName + "cannot be found.\n").build();
+        }
+
+        final List<SecureHash> attachmentIds;
+        try {
+            attachmentIds = attachmentIds(attachmentParams);
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity(ex.getMessage() + "\n").build();
+        }
+
+        final String fingerprint = "issue " + orderValue + " " + partyName + " " + attachmentIds;
+        return startTransactionFlow("BlockIssueFlow", idempotencyKey, fingerprint, async, uriInfo,
+                () -> admission.start("issue", partyName, () -> rpcOps.startTrackedFlowDynamic(BlockIssueFlow.class, orderValue, attachmentIds)));
+    }
+
+    /**
+     * Moves {@code orderValue} goldblocks to {@code partyName}, with the same {@code attachment} parameters and
+     * {@code Idempotency-Key} handling as {@link #issueGb}.
+     */
+    @PUT
+    @Path("move")
+    public Response moveGb(@QueryParam("orderValue") int orderValue, @QueryParam("partyName") CordaX500Name partyName,
+                           @QueryParam("attachment") List<String> attachmentParams, @QueryParam("async") boolean async,
+                           @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey, @Context UriInfo uriInfo) {
         if (orderValue <= 0) {
             return Response.status(BAD_REQUEST).entity("Query parameter 'tokenValue' must be non-negative.\n").build();
         }
@@ -83,20 +300,161 @@ public class GoldBlockAPI implements GoldBlockConstants {
             return Response.status(BAD_REQUEST).entity("Party named " + partyName + "cannot be found.\n").build();
         }
 
+        final List<SecureHash> attachmentIds;
+        try {
+            attachmentIds = attachmentIds(attachmentParams);
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity(ex.getMessage() + "\n").build();
+        }
+
+        final String fingerprint = "move " + orderValue + " " + partyName + " " + attachmentIds;
+        return startTransactionFlow("SellerFlow", idempotencyKey, fingerprint, async, uriInfo,
+                () -> admission.start("move", partyName, () -> rpcOps.startTrackedFlowDynamic(SellerFlow.class, otherParty, (long) orderValue, attachmentIds)));
+    }
+
+    /**
+     * Parses {@code attachment} query parameters, dropping repeats, and checks that the node stores each attachment.
+     */
+    private List<SecureHash> attachmentIds(List<String> attachmentParams) {
+        final LinkedHashSet<SecureHash> ids = new LinkedHashSet<>();
+        for (String param : attachmentParams) {
+            final SecureHash id;
+            try {
+                id = SecureHash.parse(param);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Query parameter 'attachment' must be a SHA-256 attachment id but was '" + param + "'.");
+            }
+            if (!rpcOps.attachmentExists(id)) {
+                throw new IllegalArgumentException("Attachment " + id + " is not stored on this node.");
+            }
+            ids.add(id);
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Stores an attachment, such as an assay or vault certificate, on the node and returns its id for the
+     * {@code attachment} parameter of {@link #issueGb} and {@link #moveGb}. A ZIP or JAR body is stored as it is; any
+     * other body is stored in a ZIP as {@code <sha256 of the body>/<filename>}. Content the node already stores is not
+     * uploaded again: it is answered with 200 rather than 201. A body over the limit is answered with 413, a bad
+     * request with 400, and a failure to spool the body or to reach the node with 500 or 502.
+     */
+    @POST
+    @Path("attachments")
+    @Consumes(MediaType.WILDCARD)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response uploadAttachment(InputStream body, @QueryParam("filename") String filename,
+                                     @Context HttpHeaders headers, @Context UriInfo uriInfo) {
+        final MediaType type = headers.getMediaType();
+        final boolean archive = type != null && ARCHIVE_TYPES.contains(type.getType() + "/" + type.getSubtype());
+        if (!archive && (filename == null || filename.isEmpty() || filename.length() > 255
+                || filename.contains("/") || filename.contains("\\"))) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'filename' must name a file when the body is not a ZIP or JAR.\n").build();
+        }
+
         try {
-            FlowProgressHandle<SignedTransaction> flowHandle = rpcOps
-                    .startTrackedFlowDynamic(BlockIssueFlow.class, orderValue);
-            flowHandle.getProgress().subscribe(evt -> System.out.printf(">> %s\n", evt));
+            final AttachmentUploader.Result result = attachments.upload(body, archive ? null : filename);
+            final Map<String, Object> entity = ImmutableMap.of("attachmentId", result.getId().toString(),
+                    "deduplicated", result.isDeduplicated());
+            if (result.isDeduplicated()) {
+                return Response.ok(entity, MediaType.APPLICATION_JSON).build();
+            }
+            final URI location = uriInfo.getBaseUriBuilder()
+                    .path(GoldBlockAPI.class)
+                    .path("attachments")
+                    .path(result.getId().toString())
+                    .build();
+            return Response.created(location).entity(entity).type(MediaType.APPLICATION_JSON).build();
+
+        } catch (AttachmentUploader.TooLargeException ex) {
+            return Response.status(REQUEST_ENTITY_TOO_LARGE).entity(ex.getMessage() + "\n").build();
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity(ex.getMessage() + "\n").build();
+        } catch (IOException ex) {
+            logger.error("Unable to spool an attachment upload", ex);
+            return Response.status(INTERNAL_SERVER_ERROR).entity("Unable to store the upload for the node.\n").build();
+        } catch (RuntimeException ex) {
+            logger.error("The node did not store an attachment upload", ex);
+            return Response.status(BAD_GATEWAY).entity("The node did not store the attachment: " + ex.getMessage() + "\n").build();
+        }
+    }
+
+    /**
+     * Answers 200 if the node stores the attachment with the given id, and 404 if not. Clients can ask this, or send
+     * a HEAD request, with the SHA-256 of a ZIP or JAR before uploading it.
+     */
+    @GET
+    @Path("attachments/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response attachmentStatus(@PathParam("id") String id) {
+        final SecureHash attachmentId;
+        try {
+            attachmentId = SecureHash.parse(id);
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity("Path parameter 'id' must be a SHA-256 attachment id.\n").build();
+        }
+        if (!rpcOps.attachmentExists(attachmentId)) {
+            return Response.status(NOT_FOUND).entity("No attachment with id " + id + " is stored on this node.\n").build();
+        }
+        return Response.ok(ImmutableMap.of("attachmentId", attachmentId.toString()), MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Issues many lots in as few transactions as possible. The body is a JSON array of {@link IssueLotRequest}s and
+     * {@code maxOutputsPerTx} caps how many lots are packed into each transaction.
+     */
+    @PUT
+    @Path("issue/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response issueGbBatch(List<IssueLotRequest> lotRequests, @QueryParam("maxOutputsPerTx") @DefaultValue("" + GOLD_BLOCK_MAX_OUTPUTS_PER_TX) int maxOutputsPerTx,
+                                 @QueryParam("async") boolean async, @Context UriInfo uriInfo) {
+        if (lotRequests == null || lotRequests.isEmpty()) {
+            return Response.status(BAD_REQUEST).entity("Request body must contain at least one lot.\n").build();
+        }
+        if (maxOutputsPerTx <= 0) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'maxOutputsPerTx' must be positive.\n").build();
+        }
+
+        final List<IssueLot> lots = new ArrayList<>(lotRequests.size());
+        // Lots this node issues to itself involve no counterparty.
+        final Set<CordaX500Name> counterparties = new LinkedHashSet<>();
+        for (IssueLotRequest lotRequest : lotRequests) {
+            if (lotRequest.getAmount() <= 0) {
+                return Response.status(BAD_REQUEST).entity("Lot 'amount' must be positive.\n").build();
+            }
+            final CordaX500Name partyName;
+            try {
+                partyName = CordaX500Name.parse(lotRequest.getPartyName());
+            } catch (IllegalArgumentException | NullPointerException ex) {
+                return Response.status(BAD_REQUEST).entity("Lot 'partyName' missing or has wrong format.\n").build();
+            }
+            final Party owner = rpcOps.wellKnownPartyFromX500Name(partyName);
+            if (owner == null) {
+                return Response.status(BAD_REQUEST).entity("Party named " + partyName + " cannot be found.\n").build();
+            }
+            lots.add(new IssueLot(owner, lotRequest.getAmount()));
+            if (!partyName.equals(nodeName)) counterparties.add(partyName);
+        }
+
+        try {
+            FlowProgressHandle<List<SecureHash>> flowHandle = admission.start("issue/batch", counterparties, () -> rpcOps
+                    .startTrackedFlowDynamic(BatchIssueFlow.class, lots, maxOutputsPerTx));
+            progressHub.track("BatchIssueFlow", flowHandle);
+
+            if (async) {
+                return accepted(uriInfo, flowStatuses.track("BatchIssueFlow", flowHandle, List::toString));
+            }
 
             // The line below blocks and waits for the flow to return.
-            final SignedTransaction result = flowHandle
+            final List<SecureHash> txIds = flowHandle
                     .getReturnValue()
                     .get();
 
-
-            final String msg = String.format("Transaction id %s committed to ledger.\n", result.getId());
+            final String msg = String.format("%d lots committed to ledger in %d transactions %s.\n", lots.size(), txIds.size(), txIds);
             return Response.status(CREATED).entity(msg).build();
 
+        } catch (AdmissionControl.RejectedException ex) {
+            return tooManyRequests(ex);
         } catch (Throwable ex) {
             final String msg = ex.getMessage();
             logger.error(ex.getMessage(), ex);
@@ -104,43 +462,377 @@ public class GoldBlockAPI implements GoldBlockConstants {
         }
     }
 
+    /**
+     * Pays goldblocks to many recipients in a single transaction. The body is a JSON array of {@link MoveLegRequest}s;
+     * legs for the same recipient are merged.
+     */
     @PUT
-    @Path("move")
-    public Response moveGb(@QueryParam("orderValue") int orderValue, @QueryParam("partyName") CordaX500Name partyName) throws InterruptedException, ExecutionException {
-        if (orderValue <= 0) {
-            return Response.status(BAD_REQUEST).entity("Query parameter 'tokenValue' must be non-negative.\n").build();
+    @Path("move/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response moveGbBatch(List<MoveLegRequest> legRequests, @QueryParam("async") boolean async, @Context UriInfo uriInfo) {
+        if (legRequests == null || legRequests.isEmpty()) {
+            return Response.status(BAD_REQUEST).entity("Request body must contain at least one leg.\n").build();
         }
-        if (partyName == null) {
-            return Response.status(BAD_REQUEST).entity("Query parameter 'partyName' missing or has wrong format.\n").build();
+
+        final List<MoveLeg> legs = new ArrayList<>(legRequests.size());
+        final Set<CordaX500Name> counterparties = new LinkedHashSet<>();
+        for (MoveLegRequest legRequest : legRequests) {
+            if (legRequest.getAmount() <= 0) {
+                return Response.status(BAD_REQUEST).entity("Leg 'amount' must be positive.\n").build();
+            }
+            final CordaX500Name partyName;
+            try {
+                partyName = CordaX500Name.parse(legRequest.getPartyName());
+            } catch (IllegalArgumentException | NullPointerException ex) {
+                return Response.status(BAD_REQUEST).entity("Leg 'partyName' missing or has wrong format.\n").build();
+            }
+            if (partyName.equals(nodeName)) {
+                return Response.status(BAD_REQUEST).entity("A leg cannot pay goldblocks to this node.\n").build();
+            }
+            final Party recipient = rpcOps.wellKnownPartyFromX500Name(partyName);
+            if (recipient == null) {
+                return Response.status(BAD_REQUEST).entity("Party named " + partyName + " cannot be found.\n").build();
+            }
+            legs.add(new MoveLeg(recipient, legRequest.getAmount()));
+            counterparties.add(partyName);
         }
 
-        final Party otherParty = rpcOps.wellKnownPartyFromX500Name(partyName);
-        if (otherParty == null) {
-            return Response.status(BAD_REQUEST).entity("Party named " + partyName + "cannot be found.\n").build();
+        try {
+            FlowProgressHandle<SignedTransaction> flowHandle = admission.start("move/batch", counterparties, () -> rpcOps
+                    .startTrackedFlowDynamic(DistributionFlow.class, legs));
+            progressHub.track("DistributionFlow", flowHandle);
+
+            if (async) {
+                return accepted(uriInfo, flowStatuses.track("DistributionFlow", flowHandle, tx -> tx.getId().toString()));
+            }
+
+            // The line below blocks and waits for the flow to return.
+            final SignedTransaction result = flowHandle
+                    .getReturnValue()
+                    .get();
+
+            final String msg = String.format("%d legs committed to ledger in transaction id %s.\n", legs.size(), result.getId());
+            return Response.status(CREATED).entity(msg).build();
+
+        } catch (AdmissionControl.RejectedException ex) {
+            return tooManyRequests(ex);
+        } catch (Throwable ex) {
+            final String msg = ex.getMessage();
+            logger.error(ex.getMessage(), ex);
+            return Response.status(BAD_REQUEST).entity(msg).build();
+        }
+    }
+
+    /**
+     * Merges this node's fragmented goldblock states. Tokens with fewer than {@code minStates} unconsumed states are
+     * left alone, each transaction merges at most {@code maxInputsPerTx} states and a run builds at most
+     * {@code maxTransactions} transactions.
+     */
+    @PUT
+    @Path("consolidate")
+    public Response consolidateGb(@QueryParam("minStates") @DefaultValue("" + GOLD_BLOCK_CONSOLIDATION_MIN_STATES) int minStates,
+                                  @QueryParam("maxInputsPerTx") @DefaultValue("" + GOLD_BLOCK_CONSOLIDATION_MAX_INPUTS) int maxInputsPerTx,
+                                  @QueryParam("maxTransactions") @DefaultValue("" + GOLD_BLOCK_CONSOLIDATION_MAX_TXS) int maxTransactions,
+                                  @QueryParam("async") boolean async, @Context UriInfo uriInfo) {
+        if (minStates < 2 || maxInputsPerTx < minStates || maxTransactions <= 0) {
+            return Response.status(BAD_REQUEST).entity("Query parameters must satisfy 2 <= 'minStates' <= 'maxInputsPerTx' and 'maxTransactions' > 0.\n").build();
         }
 
         try {
+            // Consolidation only involves the notary, so it is capped by the endpoint alone.
+            FlowProgressHandle<Integer> flowHandle = admission.start("consolidate", Collections.emptySet(), () -> rpcOps
+                    .startTrackedFlowDynamic(ConsolidateGoldBlocksFlow.class, minStates, maxInputsPerTx, maxTransactions));
+            progressHub.track("ConsolidateGoldBlocksFlow", flowHandle);
 
+            if (async) {
+                return accepted(uriInfo, flowStatuses.track("ConsolidateGoldBlocksFlow", flowHandle, String::valueOf));
+            }
 
-            Commodity goldblocks = new Commodity(GOLD_BLOCK_UNIQUE_CODE, GOLD_BLOCK_DISPLAY_NAME, 2);
+            // The line below blocks and waits for the flow to return.
+            final Integer reclaimed = flowHandle
+                    .getReturnValue()
+                    .get();
 
-            FlowProgressHandle<SignedTransaction> flowHandle = rpcOps
-                    .startTrackedFlowDynamic(SellerFlow.class, otherParty, goldblocks);
-            flowHandle.getProgress().subscribe(evt -> System.out.printf(">> %s\n", evt));
+            final String msg = String.format("Consolidation reclaimed %d states.\n", reclaimed);
+            return Response.ok(msg).build();
+
+        } catch (AdmissionControl.RejectedException ex) {
+            return tooManyRequests(ex);
+        } catch (Throwable ex) {
+            final String msg = ex.getMessage();
+            logger.error(ex.getMessage(), ex);
+            return Response.status(BAD_REQUEST).entity(msg).build();
+        }
+    }
+
+    /**
+     * Swaps up to {@code maxStates} of this node's goldblocks from {@code issuer} that are deep enough for the
+     * issuer's re-issuance policy for freshly issued ones, so that their backchain starts again at the issuer.
+     */
+    @PUT
+    @Path("reissue")
+    public Response reissueGb(@QueryParam("issuer") CordaX500Name issuer,
+                              @QueryParam("maxStates") @DefaultValue("" + GOLD_BLOCK_REISSUE_MAX_STATES) int maxStates,
+                              @QueryParam("async") boolean async, @Context UriInfo uriInfo) {
+        if (issuer == null) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'issuer' missing or has wrong format.\n").build();
+        }
+        if (issuer.equals(nodeName)) {
+            return Response.status(BAD_REQUEST).entity("This node cannot re-issue goldblocks to itself.\n").build();
+        }
+        if (maxStates <= 0) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'maxStates' must be > 0.\n").build();
+        }
+
+        final Party issuerParty = rpcOps.wellKnownPartyFromX500Name(issuer);
+        if (issuerParty == null) {
+            return Response.status(BAD_REQUEST).entity("Party named " + issuer + " cannot be found.\n").build();
+        }
+
+        try {
+            FlowProgressHandle<SignedTransaction> flowHandle = admission.start("reissue", issuer, () -> rpcOps
+                    .startTrackedFlowDynamic(ReissueRequestFlow.class, issuerParty, maxStates));
+            progressHub.track("ReissueRequestFlow", flowHandle);
+
+            if (async) {
+                return accepted(uriInfo, flowStatuses.track("ReissueRequestFlow", flowHandle, tx -> tx.getId().toString()));
+            }
 
             // The line below blocks and waits for the flow to return.
             final SignedTransaction result = flowHandle
                     .getReturnValue()
                     .get();
 
+            final String msg = String.format("Goldblocks re-issued in transaction id %s.\n", result.getId());
+            return Response.status(CREATED).entity(msg).build();
+
+        } catch (AdmissionControl.RejectedException ex) {
+            return tooManyRequests(ex);
+        } catch (Throwable ex) {
+            final String msg = ex.getMessage();
+            logger.error(ex.getMessage(), ex);
+            return Response.status(BAD_REQUEST).entity(msg).build();
+        }
+    }
 
-            final String msg = String.format("Transaction id %s committed to ledger.\n", result.getId());
+    /**
+     * Claims the goldblocks of the notarised exit {@code exit} from {@code issuer} when a re-issuance did not complete.
+     * Recovering an exit that has already been re-issued returns the existing re-issuance. Admitted, tracked and
+     * answered asynchronously on request like {@link #reissueGb}.
+     */
+    @PUT
+    @Path("reissue/recover")
+    public Response recoverReissue(@QueryParam("issuer") CordaX500Name issuer, @QueryParam("exit") String exit,
+                                   @QueryParam("async") boolean async, @Context UriInfo uriInfo) {
+        if (issuer == null) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'issuer' missing or has wrong format.\n").build();
+        }
+        if (exit == null) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'exit' missing.\n").build();
+        }
+        final SecureHash exitTxId;
+        try {
+            exitTxId = SecureHash.parse(exit);
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity("Query parameter 'exit' must be a SHA-256 transaction id.\n").build();
+        }
+
+        final Party issuerParty = rpcOps.wellKnownPartyFromX500Name(issuer);
+        if (issuerParty == null) {
+            return Response.status(BAD_REQUEST).entity("Party named " + issuer + " cannot be found.\n").build();
+        }
+
+        try {
+            FlowProgressHandle<SignedTransaction> flowHandle = admission.start("reissue/recover", issuer, () -> rpcOps
+                    .startTrackedFlowDynamic(ReissueRecoveryFlow.class, issuerParty, exitTxId));
+            progressHub.track("ReissueRecoveryFlow", flowHandle);
+
+            if (async) {
+                return accepted(uriInfo, flowStatuses.track("ReissueRecoveryFlow", flowHandle, tx -> tx.getId().toString()));
+            }
+
+            // The line below blocks and waits for the flow to return.
+            final SignedTransaction result = flowHandle
+                    .getReturnValue()
+                    .get();
+
+            final String msg = String.format("Goldblocks re-issued in transaction id %s.\n", result.getId());
             return Response.status(CREATED).entity(msg).build();
 
+        } catch (AdmissionControl.RejectedException ex) {
+            return tooManyRequests(ex);
+        } catch (Throwable ex) {
+            final String msg = ex.getMessage();
+            logger.error(ex.getMessage(), ex);
+            return Response.status(BAD_REQUEST).entity(msg).build();
+        }
+    }
+
+    /**
+     * Returns the node's per-step GoldBlock flow timings, flow durations and outcome counters in the Prometheus text
+     * format, for scraping. The node's figures are read by a flow, so they are cached for
+     * {@link GoldBlockConstants#GOLD_BLOCK_METRICS_CACHE_SECONDS} and scrapes in between do not reach the node.
+     */
+    @GET
+    @Path("metrics")
+    @Produces("text/plain; version=0.0.4")
+    public Response metrics() {
+        try {
+            return Response.ok(nodeMetrics() + admission.getPrometheusText()).build();
+        } catch (Throwable ex) {
+            final String msg = ex.getMessage();
+            logger.error(ex.getMessage(), ex);
+            return Response.status(SERVICE_UNAVAILABLE).entity(msg).build();
+        }
+    }
+
+    // Each GoldBlockMetricsFlow is checkpointed like any other flow, so one read serves every scrape within the cache
+    // period, and concurrent scrapes wait for the same read rather than each starting a flow.
+    private String nodeMetrics() throws InterruptedException, ExecutionException {
+        synchronized (nodeMetricsLock) {
+            if (nodeMetrics == null || System.nanoTime() - nodeMetricsReadNanos > TimeUnit.SECONDS.toNanos(GOLD_BLOCK_METRICS_CACHE_SECONDS)) {
+                nodeMetrics = rpcOps.startFlowDynamic(GoldBlockMetricsFlow.class).getReturnValue().get();
+                nodeMetricsReadNanos = System.nanoTime();
+            }
+            return nodeMetrics;
+        }
+    }
+
+    /**
+     * Streams the progress of every flow started through this API as server-sent events: a {@code progress} event
+     * for each step and a {@code done} event with the flow's outcome. A client that falls behind receives only the
+     * latest step of each flow.
+     */
+    @GET
+    @Path("flows/stream")
+    @Produces("text/event-stream")
+    public Response flowProgress() {
+        final FlowProgressHub.Client client = progressHub.connect();
+        if (client == null) {
+            return Response.status(SERVICE_UNAVAILABLE).entity("Too many clients are following flow progress.\n").build();
+        }
+        final StreamingOutput stream = out -> client.stream(out, TimeUnit.SECONDS.toMillis(GOLD_BLOCK_PROGRESS_HEARTBEAT_SECONDS));
+        return Response.ok(stream)
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+
+    /**
+     * Returns the status of a flow started with {@code async=true}. Poll this until the status is no longer RUNNING.
+     */
+    @GET
+    @Path("flows/{runId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response flowStatus(@PathParam("runId") String runId) {
+        final UUID id;
+        try {
+            id = UUID.fromString(runId);
+        } catch (IllegalArgumentException ex) {
+            return Response.status(BAD_REQUEST).entity("Path parameter 'runId' must be a UUID.\n").build();
+        }
+        final FlowStatusRegistry.FlowStatus status = flowStatuses.get(id);
+        if (status == null) {
+            return Response.status(NOT_FOUND).entity("No flow with run id " + runId + " is known.\n").build();
+        }
+        return Response.ok(status.toJson(), MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Starts a flow returning a transaction and answers with its outcome, or with 202 Accepted when {@code async}.
+     * With an idempotency key, a retry is answered from the flow the key first started and carries an
+     * {@code Idempotent-Replayed} header; reusing a key for a different request is rejected with 422, and a new key
+     * is shed with 429 while every remembered key still has a flow in flight.
+     */
+    private Response startTransactionFlow(String flowName, String idempotencyKey, String fingerprint, boolean async,
+                                          UriInfo uriInfo, Supplier<FlowProgressHandle<SignedTransaction>> start) {
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > GOLD_BLOCK_IDEMPOTENCY_MAX_KEY_LENGTH)) {
+            return Response.status(BAD_REQUEST).entity("Header '" + IDEMPOTENCY_KEY_HEADER + "' must be 1 to "
+                    + GOLD_BLOCK_IDEMPOTENCY_MAX_KEY_LENGTH + " characters long.\n").build();
+        }
+
+        try {
+            if (idempotencyKey == null) {
+                final FlowProgressHandle<SignedTransaction> flowHandle = start.get();
+                progressHub.track(flowName, flowHandle);
+
+                if (async) {
+                    return accepted(uriInfo, flowStatuses.track(flowName, flowHandle, tx -> tx.getId().toString()));
+                }
+
+                // The line below blocks and waits for the flow to return.
+                final SignedTransaction result = flowHandle
+                        .getReturnValue()
+                        .get();
+                return committed(result.getId());
+            }
+
+            final IdempotencyCache.Entry entry;
+            try {
+                entry = idempotencyKeys.startOnce(idempotencyKey, fingerprint, () -> {
+                    final FlowProgressHandle<SignedTransaction> flowHandle = start.get();
+                    progressHub.track(flowName, flowHandle);
+                    // Tracked even for a synchronous request, so that an asynchronous retry can be pointed at it.
+                    flowStatuses.track(flowName, flowHandle, tx -> tx.getId().toString());
+                    return flowHandle;
+                });
+            } catch (IllegalArgumentException ex) {
+                return Response.status(UNPROCESSABLE_ENTITY).entity(ex.getMessage() + "\n").build();
+            } catch (IdempotencyCache.FullException ex) {
+                return Response.status(TOO_MANY_REQUESTS)
+                        .header("Retry-After", GOLD_BLOCK_IDEMPOTENCY_FULL_RETRY_SECONDS)
+                        .entity(ex.getMessage() + "\n")
+                        .build();
+            }
+
+            // Both lines below block until the original flow has started or returned, respectively.
+            final Response response = async
+                    ? accepted(uriInfo, entry.getRunId().get())
+                    : committed(entry.getResult().get());
+            if (entry.isFirst()) {
+                return response;
+            }
+            return Response.fromResponse(response).header("Idempotent-Replayed", "true").build();
+
+        } catch (AdmissionControl.RejectedException ex) {
+            return tooManyRequests(ex);
+        } catch (ExecutionException ex) {
+            // A retry waiting on a key whose first request was shed is shed too.
+            if (ex.getCause() instanceof AdmissionControl.RejectedException) {
+                return tooManyRequests((AdmissionControl.RejectedException) ex.getCause());
+            }
+            logger.error(ex.getMessage(), ex);
+            return Response.status(BAD_REQUEST).entity(ex.getMessage()).build();
         } catch (Throwable ex) {
             final String msg = ex.getMessage();
             logger.error(ex.getMessage(), ex);
             return Response.status(BAD_REQUEST).entity(msg).build();
         }
     }
+
+    private static Response tooManyRequests(AdmissionControl.RejectedException ex) {
+        return Response.status(TOO_MANY_REQUESTS)
+                .header("Retry-After", ex.getRetryAfterSeconds())
+                .entity(ex.getMessage() + "\n")
+                .build();
+    }
+
+    private static Response committed(SecureHash txId) {
+        final String msg = String.format("Transaction id %s committed to ledger.\n", txId);
+        return Response.status(CREATED).entity(msg).build();
+    }
+
+    /**
+     * Answers an asynchronous request with 202 Accepted and a Location pointing at the flow's status endpoint.
+     */
+    private Response accepted(UriInfo uriInfo, UUID runId) {
+        final URI location = uriInfo.getBaseUriBuilder()
+                .path(GoldBlockAPI.class)
+                .path("flows")
+                .path(runId.toString())
+                .build();
+        return Response.accepted(ImmutableMap.of("runId", runId.toString()))
+                .type(MediaType.APPLICATION_JSON)
+                .location(location)
+                .build();
+    }
 }
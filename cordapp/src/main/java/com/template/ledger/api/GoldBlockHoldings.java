@@ -0,0 +1,271 @@
+package com.template.ledger.api;
+
+import com.google.common.collect.ImmutableMap;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.schema.GoldBlockQueries;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * An in-memory view of goldblock balances per owner and issuer, kept inside the webserver so that balance reads never
+ * reach the node.
+ * <p>
+ * The view subscribes to vault updates first and then pages through the vault once to seed itself. While seeding, it
+ * remembers which states it has counted so that a state seen both in a page and in an update is only counted once.
+ * Once seeded, that bookkeeping is dropped and each update is applied incrementally. Owners and issuers are numbered
+ * densely as they are first seen, balances are kept in {@code long} arrays indexed by those numbers, and reads are O(1)
+ * without boxing.
+ * <p>
+ * Like {@link PeersView}, the view recovers from a failed feed, which happens whenever the RPC connection behind it
+ * is lost. It stops reporting itself seeded, so no frozen totals are served, drops the subscription and its totals,
+ * and subscribes and seeds again when {@link #isSeeded()} is next asked. A failed seed is treated the same way. Retries
+ * back off exponentially up to {@link GoldBlockConstants#GOLD_BLOCK_HOLDINGS_MAX_RETRY_MILLIS}.
+ */
+public class GoldBlockHoldings implements GoldBlockConstants {
+
+    static private final Logger logger = LoggerFactory.getLogger(GoldBlockHoldings.class);
+    static private final long FIRST_RETRY_MILLIS = 1_000;
+
+    private final CordaRPCOps rpcOps;
+    private final Object lock = new Object();
+    private final Map<String, Integer> ownerIds = new HashMap<>();
+    private final List<String> ownerNames = new ArrayList<>();
+    private final Map<String, Integer> issuerIds = new HashMap<>();
+    private final List<String> issuerNames = new ArrayList<>();
+    // Indexed by owner id, then issuer id. A row only grows to the highest issuer id its owner has held.
+    private long[][] holdingTotals = new long[16][];
+    private long[] ownerTotals = new long[16];
+    // Only non-null while seeding: states counted so far, and states consumed before the seed reached them.
+    private Set<StateRef> counted = new HashSet<>();
+    private Set<StateRef> consumedEarly = new HashSet<>();
+    private volatile boolean seeded;
+    // Guarded by lock. Bumped on every (re)subscription, so updates from a dropped feed are ignored.
+    private int generation;
+    private Subscription subscription;
+    private boolean starting;
+    private int failures;
+    private long retryAtNanos;
+
+    /**
+     * Starts tracking the vault and seeds the view on a background thread.
+     */
+    public GoldBlockHoldings(CordaRPCOps rpcOps) {
+        this.rpcOps = rpcOps;
+        this.retryAtNanos = System.nanoTime();
+        restart();
+    }
+
+    /**
+     * Whether the view is current. If its feed or seed has failed, this starts another attempt in the background once
+     * the backoff has passed, and answers false until it completes.
+     */
+    public boolean isSeeded() {
+        if (!seeded) {
+            restart();
+        }
+        return seeded;
+    }
+
+    private void restart() {
+        final int attempt;
+        synchronized (lock) {
+            if (seeded || starting || System.nanoTime() - retryAtNanos < 0) return;
+            starting = true;
+            attempt = ++generation;
+            reset();
+        }
+        final Thread seeder = new Thread(() -> start(attempt), "gold-block-holdings-seeder");
+        seeder.setDaemon(true);
+        seeder.start();
+    }
+
+    // Forgets every total, ready for a fresh seed. Called holding lock.
+    private void reset() {
+        ownerIds.clear();
+        ownerNames.clear();
+        issuerIds.clear();
+        issuerNames.clear();
+        holdingTotals = new long[16][];
+        ownerTotals = new long[16];
+        counted = new HashSet<>();
+        consumedEarly = new HashSet<>();
+    }
+
+    /**
+     * Marks the view stale after its feed or seed failed, and schedules the next attempt.
+     */
+    private void fail(int attempt, String what, Throwable error) {
+        final Subscription dropped;
+        synchronized (lock) {
+            if (attempt != generation) return;
+            logger.error("Goldblock holdings {} failed; they will be reloaded on a later request", what, error);
+            seeded = false;
+            starting = false;
+            dropped = subscription;
+            subscription = null;
+            // Updates still in flight from the dropped feed are ignored from here on.
+            generation++;
+            final long backoff = Math.min(GOLD_BLOCK_HOLDINGS_MAX_RETRY_MILLIS, FIRST_RETRY_MILLIS << Math.min(failures++, 16));
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+        }
+        if (dropped != null) {
+            dropped.unsubscribe();
+        }
+    }
+
+    /**
+     * Returns the quantity {@code owner} holds of goldblocks issued by {@code issuer}.
+     */
+    public long balance(String owner, String issuer) {
+        synchronized (lock) {
+            final Integer ownerId = ownerIds.get(owner);
+            final Integer issuerId = issuerIds.get(issuer);
+            if (ownerId == null || issuerId == null) return 0;
+            final long[] row = holdingTotals[ownerId];
+            return row == null || issuerId >= row.length ? 0 : row[issuerId];
+        }
+    }
+
+    /**
+     * Returns the quantity {@code owner} holds across all issuers.
+     */
+    public long balance(String owner) {
+        synchronized (lock) {
+            final Integer ownerId = ownerIds.get(owner);
+            return ownerId == null ? 0 : ownerTotals[ownerId];
+        }
+    }
+
+    /**
+     * Returns every non-zero holding as {owner, issuer, quantity} rows.
+     */
+    public List<Map<String, Object>> holdings() {
+        synchronized (lock) {
+            final List<Map<String, Object>> rows = new ArrayList<>();
+            for (int ownerId = 0; ownerId < ownerNames.size(); ownerId++) {
+                final long[] row = holdingTotals[ownerId];
+                if (row == null) continue;
+                for (int issuerId = 0; issuerId < row.length; issuerId++) {
+                    if (row[issuerId] != 0) {
+                        rows.add(ImmutableMap.of(
+                                "owner", ownerNames.get(ownerId),
+                                "issuer", issuerNames.get(issuerId),
+                                "quantity", row[issuerId]));
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+
+    private void start(int attempt) {
+        try {
+            final QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL);
+            // A stable order over all states, consumed or not, so pages do not shift while the vault changes under us.
+            final Sort byStateRef = new Sort(Arrays.asList(
+                    new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+                    new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+
+            final DataFeed<Vault.Page<GoldBlockState>, Vault.Update<GoldBlockState>> feed = rpcOps.vaultTrackBy(
+                    criteria, new PageSpecification(DEFAULT_PAGE_NUM, GOLD_BLOCK_HOLDINGS_PAGE_SIZE), byStateRef, GoldBlockState.class);
+            final Subscription subscribed = feed.getUpdates().subscribe(update -> apply(attempt, update), error -> fail(attempt, "feed", error));
+            synchronized (lock) {
+                if (attempt != generation) {
+                    subscribed.unsubscribe();
+                    return;
+                }
+                subscription = subscribed;
+            }
+
+            Vault.Page<GoldBlockState> page = feed.getSnapshot();
+            int pageNumber = DEFAULT_PAGE_NUM;
+            while (true) {
+                if (!seed(attempt, page)) return;
+                if (page.getStates().size() < GOLD_BLOCK_HOLDINGS_PAGE_SIZE) break;
+                page = rpcOps.vaultQueryBy(criteria, new PageSpecification(++pageNumber, GOLD_BLOCK_HOLDINGS_PAGE_SIZE), byStateRef, GoldBlockState.class);
+            }
+
+            synchronized (lock) {
+                if (attempt != generation) return;
+                counted = null;
+                consumedEarly = null;
+                seeded = true;
+                starting = false;
+                failures = 0;
+            }
+            logger.info("Goldblock holdings seeded from {} vault pages", pageNumber);
+        } catch (Exception e) {
+            fail(attempt, "seed", e);
+        }
+    }
+
+    // Returns false if the attempt has been abandoned since it started.
+    private boolean seed(int attempt, Vault.Page<GoldBlockState> page) {
+        synchronized (lock) {
+            if (attempt != generation) return false;
+            for (int i = 0; i < page.getStates().size(); i++) {
+                final StateAndRef<GoldBlockState> stateAndRef = page.getStates().get(i);
+                final StateRef ref = stateAndRef.getRef();
+                final boolean unconsumed = page.getStatesMetadata().get(i).getStatus() == Vault.StateStatus.UNCONSUMED;
+                if (unconsumed && !consumedEarly.contains(ref) && counted.add(ref)) {
+                    add(stateAndRef.getState().getData(), 1);
+                }
+            }
+            return true;
+        }
+    }
+
+    private void apply(int attempt, Vault.Update<GoldBlockState> update) {
+        synchronized (lock) {
+            if (attempt != generation) return;
+            for (StateAndRef<GoldBlockState> consumed : update.getConsumed()) {
+                if (counted == null || counted.remove(consumed.getRef())) {
+                    add(consumed.getState().getData(), -1);
+                } else {
+                    consumedEarly.add(consumed.getRef());
+                }
+            }
+            for (StateAndRef<GoldBlockState> produced : update.getProduced()) {
+                if (counted == null || counted.add(produced.getRef())) {
+                    add(produced.getState().getData(), 1);
+                }
+            }
+        }
+    }
+
+    private void add(GoldBlockState state, int sign) {
+        final int ownerId = id(ownerIds, ownerNames, GoldBlockQueries.nameOf(state.getOwner()));
+        final int issuerId = id(issuerIds, issuerNames, GoldBlockQueries.nameOf(state.getIssuer().getParty()));
+        final long quantity = sign * state.getQuantity();
+        if (ownerId >= ownerTotals.length) {
+            ownerTotals = Arrays.copyOf(ownerTotals, ownerTotals.length * 2);
+            holdingTotals = Arrays.copyOf(holdingTotals, holdingTotals.length * 2);
+        }
+        long[] row = holdingTotals[ownerId];
+        if (row == null || issuerId >= row.length) {
+            row = holdingTotals[ownerId] = row == null ? new long[issuerId + 1] : Arrays.copyOf(row, Math.max(issuerId + 1, row.length * 2));
+        }
+        row[issuerId] += quantity;
+        ownerTotals[ownerId] += quantity;
+    }
+
+    private static int id(Map<String, Integer> ids, List<String> names, String name) {
+        return ids.computeIfAbsent(name, n -> {
+            names.add(n);
+            return names.size() - 1;
+        });
+    }
+}
@@ -0,0 +1,180 @@
+package com.template.ledger.api;
+
+import com.template.ledger.schema.GoldBlockQueries;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Cursor pagination over the node's goldblock states for {@code GET /api/gb/states}.
+ * <p>
+ * States are ordered by recorded time and then by state reference. A cursor holds the position of the last state
+ * returned, and the next page is queried from that state's recorded time onwards, dropping anything at or before the
+ * position. Unlike offset paging, a page therefore does not shift when states are recorded or consumed behind it, and
+ * fetching page N does not cost N pages of work. Corda has no native keyset paging, so the query still pages by offset
+ * within the states that share the cursor's recorded time.
+ */
+public class GoldBlockStatePager {
+
+    private static final Sort BY_RECORDED_TIME = new Sort(Arrays.asList(
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC),
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+            new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+
+    private final CordaRPCOps rpcOps;
+    private final Vault.StateStatus status;
+    private final QueryCriteria filter;
+    private final Instant from;
+    private final Instant to;
+
+    /**
+     * Pages over goldblock states in {@code status}, optionally held by {@code owner} and recorded between
+     * {@code from} and {@code to}, both inclusive. Any of the optional filters may be null.
+     */
+    public GoldBlockStatePager(CordaRPCOps rpcOps, Vault.StateStatus status, CordaX500Name owner, Instant from, Instant to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'.");
+        }
+        this.rpcOps = rpcOps;
+        this.status = status;
+        this.filter = owner == null ? null : GoldBlockQueries.ownedBy(owner, status);
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns up to {@code limit} states after {@code after}, or from the start when it is null.
+     */
+    public Page page(Cursor after, int limit) {
+        final QueryCriteria criteria = criteriaAfter(after);
+        final List<Map<String, Object>> rows = new ArrayList<>(limit);
+        Cursor last = after;
+        for (int pageNumber = DEFAULT_PAGE_NUM; ; pageNumber++) {
+            final Vault.Page<GoldBlockState> page = rpcOps.vaultQueryBy(criteria, new PageSpecification(pageNumber, limit), BY_RECORDED_TIME, GoldBlockState.class);
+            for (int i = 0; i < page.getStates().size(); i++) {
+                final StateAndRef<GoldBlockState> stateAndRef = page.getStates().get(i);
+                final Vault.StateMetadata metadata = page.getStatesMetadata().get(i);
+                final Cursor position = new Cursor(metadata.getRecordedTime(), stateAndRef.getRef());
+                if (after != null && position.compareTo(after) <= 0) continue;
+                rows.add(row(stateAndRef, metadata, position));
+                last = position;
+                if (rows.size() == limit) return new Page(rows, last);
+            }
+            if (page.getStates().size() < limit) return new Page(rows, null);
+        }
+    }
+
+    private QueryCriteria criteriaAfter(Cursor after) {
+        final Instant lower = after != null ? after.recordedTime : from;
+        final ColumnPredicate<Instant> recorded;
+        if (lower != null && to != null) {
+            recorded = new ColumnPredicate.Between<>(lower, to);
+        } else if (lower != null) {
+            recorded = new ColumnPredicate.BinaryComparison<>(BinaryComparisonOperator.GREATER_THAN_OR_EQUAL, lower);
+        } else if (to != null) {
+            recorded = new ColumnPredicate.BinaryComparison<>(BinaryComparisonOperator.LESS_THAN_OR_EQUAL, to);
+        } else {
+            recorded = null;
+        }
+        final QueryCriteria.TimeCondition timeCondition = recorded == null
+                ? null
+                : new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.RECORDED, recorded);
+        final QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(status, null, null, null, null, timeCondition);
+        return filter == null ? criteria : criteria.and(filter);
+    }
+
+    private static Map<String, Object> row(StateAndRef<GoldBlockState> stateAndRef, Vault.StateMetadata metadata, Cursor position) {
+        final GoldBlockState state = stateAndRef.getState().getData();
+        final Map<String, Object> row = new LinkedHashMap<>();
+        row.put("ref", stateAndRef.getRef().toString());
+        row.put("owner", GoldBlockQueries.nameOf(state.getOwner()));
+        row.put("issuer", GoldBlockQueries.nameOf(state.getIssuer().getParty()));
+        row.put("quantity", state.getQuantity());
+        row.put("status", metadata.getStatus().name());
+        row.put("recordedTime", metadata.getRecordedTime().toString());
+        if (metadata.getConsumedTime() != null) row.put("consumedTime", metadata.getConsumedTime().toString());
+        // Every row carries its own cursor, so a streamed download can resume from the last line it received.
+        row.put("cursor", position.encode());
+        return row;
+    }
+
+    /**
+     * A page of states and the cursor of the next page, which is null on the last page.
+     */
+    public static class Page {
+        private final List<Map<String, Object>> rows;
+        private final Cursor next;
+
+        private Page(List<Map<String, Object>> rows, Cursor next) {
+            this.rows = rows;
+            this.next = next;
+        }
+
+        public List<Map<String, Object>> getRows() { return rows; }
+
+        public Cursor getNext() { return next; }
+
+        public Map<String, Object> toJson() {
+            final Map<String, Object> json = new LinkedHashMap<>();
+            json.put("states", rows);
+            json.put("next", next == null ? null : next.encode());
+            return json;
+        }
+    }
+
+    /**
+     * The position of a state in recorded-time order, encoded for clients as an opaque URL-safe string.
+     */
+    public static class Cursor implements Comparable<Cursor> {
+        private final Instant recordedTime;
+        private final String txId;
+        private final int index;
+
+        private Cursor(Instant recordedTime, StateRef ref) {
+            this(recordedTime, ref.getTxhash().toString(), ref.getIndex());
+        }
+
+        private Cursor(Instant recordedTime, String txId, int index) {
+            this.recordedTime = recordedTime;
+            this.txId = txId;
+            this.index = index;
+        }
+
+        public String encode() {
+            final String position = recordedTime + "|" + txId + "|" + index;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Decodes a cursor returned by an earlier page, throwing {@link IllegalArgumentException} if it is malformed.
+         */
+        public static Cursor decode(String encoded) {
+            try {
+                final String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split("\\|");
+                if (parts.length != 3) throw new IllegalArgumentException("Malformed cursor");
+                return new Cursor(Instant.parse(parts[0]), parts[1], Integer.parseInt(parts[2]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Query parameter 'cursor' is not a cursor returned by this endpoint.", e);
+            }
+        }
+
+        // Same order as BY_RECORDED_TIME; transaction ids are upper-case hex, which sorts alike in Java and the database.
+        @Override
+        public int compareTo(Cursor other) {
+            int result = recordedTime.compareTo(other.recordedTime);
+            if (result == 0) result = txId.compareTo(other.txId);
+            if (result == 0) result = Integer.compare(index, other.index);
+            return result;
+        }
+    }
+}
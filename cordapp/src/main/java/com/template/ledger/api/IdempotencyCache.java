@@ -0,0 +1,162 @@
+package com.template.ledger.api;
+
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.transactions.SignedTransaction;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the flows started for requests carrying an {@code Idempotency-Key} header, so that a client retrying a
+ * timed-out {@code PUT /api/gb/issue} or {@code /move} gets the outcome of the original flow rather than starting a
+ * second one.
+ * <p>
+ * Keys are kept for a fixed time to live and the cache holds a bounded number of them, evicting the oldest first.
+ * A key is reserved before its flow is started, so concurrent duplicates wait for the first request's flow instead of
+ * racing it; if the flow cannot be started at all the key is released again so the client can retry.
+ * <p>
+ * A key whose flow has not returned is never evicted, by age or by size, since a retry would then start the flow a
+ * second time. When every key held is still in flight a new key is refused with {@link FullException}.
+ */
+public class IdempotencyCache {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+
+    public IdempotencyCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    // Package-private so tests can move time on.
+    IdempotencyCache(int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the entry for {@code key}, starting the flow with {@code start} if the key is new. A key seen before
+     * with a different {@code fingerprint} is rejected with {@link IllegalArgumentException}, since replaying its
+     * outcome would answer a request the client did not send. A new key is refused with {@link FullException} when
+     * the cache is full of keys whose flows are still running.
+     */
+    public Entry startOnce(String key, String fingerprint, Supplier<FlowHandle<SignedTransaction>> start) {
+        final Entry entry;
+        synchronized (entries) {
+            evictExpired();
+            final Entry existing = entries.get(key);
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) {
+                    throw new IllegalArgumentException("Idempotency-Key " + key + " was already used for a different request.");
+                }
+                return existing;
+            }
+            if (entries.size() >= maxEntries && !evictEldestResolved()) {
+                throw new FullException("Too many requests with an Idempotency-Key are in flight.");
+            }
+            entry = new Entry(fingerprint, clock.instant().plus(ttl), false);
+            entries.put(key, entry);
+        }
+
+        final FlowHandle<SignedTransaction> flowHandle;
+        try {
+            flowHandle = start.get();
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.runId.completeExceptionally(e);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        entry.runId.complete(flowHandle.getId().getUuid());
+        flowHandle.getReturnValue().toCompletableFuture().whenComplete((tx, error) -> {
+            if (error == null) {
+                entry.result.complete(tx.getId());
+            } else {
+                entry.result.completeExceptionally(error);
+            }
+        });
+        return new Entry(entry, true);
+    }
+
+    // Entries are kept in insertion order and share one time to live, so the expired ones are at the front.
+    private void evictExpired() {
+        final Instant now = clock.instant();
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (!entry.expiresAt.isBefore(now)) break;
+            if (entry.result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Removes the oldest entry whose flow has returned, if there is one.
+    private boolean evictEldestResolved() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A request's flow. {@link #isFirst} tells the request that started the flow apart from its replays.
+     */
+    public static class Entry {
+        private final String fingerprint;
+        private final Instant expiresAt;
+        private final CompletableFuture<UUID> runId;
+        private final CompletableFuture<SecureHash> result;
+        private final boolean first;
+
+        private Entry(String fingerprint, Instant expiresAt, boolean first) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+            this.runId = new CompletableFuture<>();
+            this.result = new CompletableFuture<>();
+            this.first = first;
+        }
+
+        private Entry(Entry shared, boolean first) {
+            this.fingerprint = shared.fingerprint;
+            this.expiresAt = shared.expiresAt;
+            this.runId = shared.runId;
+            this.result = shared.result;
+            this.first = first;
+        }
+
+        public boolean isFirst() { return first; }
+
+        /** Completes with the flow's run id once it has started. */
+        public CompletableFuture<UUID> getRunId() { return runId; }
+
+        /** Completes with the id of the flow's transaction, or with the flow's failure. */
+        public CompletableFuture<SecureHash> getResult() { return result; }
+    }
+
+    /**
+     * Thrown when a new key finds every slot taken by a flow that has not returned. The API answers it with 429 Too
+     * Many Requests.
+     */
+    public static class FullException extends RuntimeException {
+        private FullException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.template.ledger.api;
+
+/**
+ * JSON body element of {@code PUT /api/gb/issue/batch}: one lot of goldblocks for one owner.
+ */
+public class IssueLotRequest {
+    private String partyName;
+    private long amount;
+
+    public IssueLotRequest() {
+    }
+
+    public IssueLotRequest(String partyName, long amount) {
+        this.partyName = partyName;
+        this.amount = amount;
+    }
+
+    public String getPartyName() { return partyName; }
+
+    public void setPartyName(String partyName) { this.partyName = partyName; }
+
+    public long getAmount() { return amount; }
+
+    public void setAmount(long amount) { this.amount = amount; }
+}
@@ -0,0 +1,25 @@
+package com.template.ledger.api;
+
+/**
+ * JSON body element of {@code PUT /api/gb/move/batch}: a quantity of goldblocks for one recipient.
+ */
+public class MoveLegRequest {
+    private String partyName;
+    private long amount;
+
+    public MoveLegRequest() {
+    }
+
+    public MoveLegRequest(String partyName, long amount) {
+        this.partyName = partyName;
+        this.amount = amount;
+    }
+
+    public String getPartyName() { return partyName; }
+
+    public void setPartyName(String partyName) { this.partyName = partyName; }
+
+    public long getAmount() { return amount; }
+
+    public void setAmount(long amount) { this.amount = amount; }
+}
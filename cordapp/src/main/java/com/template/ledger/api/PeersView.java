@@ -0,0 +1,122 @@
+package com.template.ledger.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.NodeInfo;
+import net.corda.core.node.services.NetworkMapCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * The node's peers for {@code GET /api/gb/peers}, kept inside the webserver so that the network map is fetched once
+ * rather than on every request.
+ * <p>
+ * The view is seeded from the snapshot of the network map feed and then follows its updates. Each change that alters
+ * the peer list bumps a version and serializes the response body once, so a request only reads a reference, and the
+ * version doubles as an entity tag that lets clients revalidate with {@code If-None-Match}. The tag also carries an
+ * epoch chosen at startup, so a tag from before a webserver restart is never mistaken for a current one.
+ */
+public class PeersView {
+
+    static private final Logger logger = LoggerFactory.getLogger(PeersView.class);
+    static private final ObjectMapper mapper = new ObjectMapper();
+    // Organisations of network services that are not peers to transact with.
+    static private final Set<String> SERVICE_NAMES = new HashSet<>(Arrays.asList("Controller", "Network Map Service"));
+
+    private final CordaRPCOps rpcOps;
+    private final CordaX500Name nodeName;
+    private final String epoch = Long.toHexString(new Random().nextLong());
+    private final Set<CordaX500Name> peers = new LinkedHashSet<>();
+    private long version;
+    private volatile Snapshot snapshot;
+    private volatile boolean following;
+
+    public PeersView(CordaRPCOps rpcOps, CordaX500Name nodeName) {
+        this.rpcOps = rpcOps;
+        this.nodeName = nodeName;
+        follow();
+    }
+
+    /**
+     * The current peer list. If the network map feed has failed, the view resubscribes first, and serves the last
+     * list it had while the node cannot be reached.
+     */
+    public Snapshot snapshot() {
+        if (!following) {
+            try {
+                follow();
+            } catch (RuntimeException e) {
+                logger.warn("Unable to reload peers from the network map: {}", e.getMessage());
+            }
+        }
+        return snapshot;
+    }
+
+    private synchronized void follow() {
+        if (following) return;
+        final DataFeed<List<NodeInfo>, NetworkMapCache.MapChange> feed = rpcOps.networkMapFeed();
+        peers.clear();
+        feed.getSnapshot().forEach(node -> add(node.getLegalIdentities().get(0).getName()));
+        publish();
+        following = true;
+        feed.getUpdates().subscribe(this::apply, error -> {
+            logger.error("Network map feed failed; peers will be reloaded on the next request", error);
+            following = false;
+        });
+    }
+
+    private synchronized void apply(NetworkMapCache.MapChange change) {
+        final CordaX500Name name = change.getNode().getLegalIdentities().get(0).getName();
+        boolean changed;
+        if (change instanceof NetworkMapCache.MapChange.Removed) {
+            changed = peers.remove(name);
+        } else if (change instanceof NetworkMapCache.MapChange.Modified) {
+            final CordaX500Name previous = ((NetworkMapCache.MapChange.Modified) change).getPreviousNode()
+                    .getLegalIdentities().get(0).getName();
+            changed = !previous.equals(name) && peers.remove(previous);
+            changed |= add(name);
+        } else {
+            changed = add(name);
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    private boolean add(CordaX500Name name) {
+        return !name.equals(nodeName) && !SERVICE_NAMES.contains(name.getOrganisation()) && peers.add(name);
+    }
+
+    private void publish() {
+        final List<String> names = new ArrayList<>(peers.size());
+        peers.forEach(name -> names.add(name.toString()));
+        try {
+            snapshot = new Snapshot(mapper.writeValueAsBytes(ImmutableMap.of("peers", names)), epoch + "-" + ++version);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A serialized peer list and the entity tag identifying it.
+     */
+    public static class Snapshot {
+        private final byte[] json;
+        private final String tag;
+
+        private Snapshot(byte[] json, String tag) {
+            this.json = json;
+            this.tag = tag;
+        }
+
+        public byte[] getJson() { return json; }
+
+        public String getTag() { return tag; }
+    }
+}
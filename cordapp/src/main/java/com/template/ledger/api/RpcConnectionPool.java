@@ -0,0 +1,263 @@
+package com.template.ledger.api;
+
+import com.google.common.collect.ImmutableList;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import net.corda.client.rpc.CordaRPCClient;
+import net.corda.client.rpc.CordaRPCClientConfiguration;
+import net.corda.client.rpc.CordaRPCConnection;
+import net.corda.client.rpc.RPCException;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.utilities.NetworkHostAndPort;
+import org.apache.activemq.artemis.api.core.ActiveMQException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the web layer's RPC calls over several connections to the node instead of multiplexing them all over the
+ * webserver's single Artemis session.
+ * <p>
+ * The pool is sized with {@code -Dgoldblock.rpc.pool.size=N} on the webserver JVM, together with
+ * {@code goldblock.rpc.pool.address} and {@code goldblock.rpc.pool.username}. The password is read from the
+ * {@code GOLDBLOCK_RPC_POOL_PASSWORD} environment variable rather than a system property, so that it does not appear in
+ * process listings. The webserver's own connection is always a member, so N - 1 connections are opened. Without this
+ * configuration the pool holds just the webserver's connection and behaves exactly like it. The pooled connections are
+ * closed with the webserver's JVM, so that the node releases their sessions at once.
+ * <p>
+ * Each call goes to the healthy connection with the fewest outstanding requests. A flow start counts as outstanding
+ * until the flow's return value arrives, because that is when the connection stops carrying traffic for it. The
+ * connections are checked every few seconds. A connection that fails a check or a call is taken out of rotation and
+ * reopened with exponential back-off. Observables returned by a call, such as a flow's progress, stay on the
+ * connection that made the call.
+ */
+public class RpcConnectionPool implements GoldBlockConstants {
+
+    static private final Logger logger = LoggerFactory.getLogger(RpcConnectionPool.class);
+
+    private static RpcConnectionPool shared;
+
+    private final List<Member> members;
+    private final CordaRPCOps proxy;
+    private final AtomicInteger nextMember = new AtomicInteger();
+    private final CordaRPCClient client;
+    private final String username;
+    private final String password;
+
+    /**
+     * Returns the web layer's pooled view of the node, creating the pool around the webserver's connection on first use.
+     */
+    public static synchronized CordaRPCOps pooled(CordaRPCOps webserverOps) {
+        if (shared == null) {
+            shared = new RpcConnectionPool(webserverOps);
+        }
+        return shared.proxy;
+    }
+
+    private RpcConnectionPool(CordaRPCOps webserverOps) {
+        final ImmutableList.Builder<Member> members = ImmutableList.<Member>builder().add(new Member("webserver", webserverOps));
+        final int size = Integer.getInteger(GOLD_BLOCK_RPC_POOL_SIZE_PROPERTY, 1);
+        final String address = System.getProperty(GOLD_BLOCK_RPC_POOL_ADDRESS_PROPERTY);
+        this.username = System.getProperty(GOLD_BLOCK_RPC_POOL_USERNAME_PROPERTY);
+        this.password = System.getenv(GOLD_BLOCK_RPC_POOL_PASSWORD_ENV);
+        final boolean configured = address != null && username != null && password != null;
+        this.client = size > 1 && configured
+                ? new CordaRPCClient(NetworkHostAndPort.parse(address), CordaRPCClientConfiguration.DEFAULT)
+                : null;
+
+        if (size > 1 && !configured) {
+            logger.warn("An RPC pool of {} needs {}, {} and {}; using the webserver's single connection", size,
+                    GOLD_BLOCK_RPC_POOL_ADDRESS_PROPERTY, GOLD_BLOCK_RPC_POOL_USERNAME_PROPERTY, GOLD_BLOCK_RPC_POOL_PASSWORD_ENV);
+        } else if (size > 1) {
+            for (int i = 1; i < size; i++) {
+                final Member member = new Member("pooled-" + i, null);
+                open(member);
+                members.add(member);
+            }
+        }
+        this.members = members.build();
+
+        if (this.members.size() > 1) {
+            final ScheduledExecutorService healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "gold-block-rpc-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecks.scheduleWithFixedDelay(this::checkHealth, GOLD_BLOCK_RPC_POOL_HEALTH_CHECK_SECONDS,
+                    GOLD_BLOCK_RPC_POOL_HEALTH_CHECK_SECONDS, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                healthChecks.shutdownNow();
+                close();
+            }, "gold-block-rpc-pool-shutdown"));
+            logger.info("Web layer RPC calls are spread over {} connections to {}", this.members.size(), address);
+        }
+        this.proxy = (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(),
+                new Class<?>[]{CordaRPCOps.class}, (target, method, args) -> invoke(method, args));
+    }
+
+    private Object invoke(Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        final Member member = choose();
+        final CordaRPCOps ops = member.ops;
+        member.outstanding.incrementAndGet();
+        boolean release = true;
+        try {
+            final Object result = method.invoke(ops, args);
+            if (result instanceof FlowHandle) {
+                release = false;
+                ((FlowHandle<?>) result).getReturnValue().toCompletableFuture()
+                        .whenComplete((value, error) -> member.outstanding.decrementAndGet());
+            }
+            return result;
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (isConnectionFailure(cause)) {
+                markFailed(member, ops, cause);
+            }
+            throw cause;
+        } finally {
+            if (release) {
+                member.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Picks the healthy member with the fewest outstanding requests, starting the scan at a rotating offset so that
+     * ties are shared out. Falls back to the webserver's connection when none is healthy, so that callers see the
+     * underlying error.
+     */
+    private Member choose() {
+        final int start = Math.floorMod(nextMember.getAndIncrement(), members.size());
+        Member best = null;
+        for (int i = 0; i < members.size(); i++) {
+            final Member member = members.get((start + i) % members.size());
+            if (member.healthy && (best == null || member.outstanding.get() < best.outstanding.get())) {
+                best = member;
+            }
+        }
+        return best != null ? best : members.get(0);
+    }
+
+    private void checkHealth() {
+        for (Member member : members) {
+            if (member.healthy || !member.pooled) {
+                final CordaRPCOps ops = member.ops;
+                try {
+                    ops.currentNodeTime();
+                    if (!member.healthy) {
+                        member.healthy = true;
+                        logger.info("RPC connection {} is healthy again", member.name);
+                    }
+                } catch (RuntimeException e) {
+                    markFailed(member, ops, e);
+                }
+            } else if (System.nanoTime() - member.nextAttemptNanos >= 0) {
+                open(member);
+            }
+        }
+    }
+
+    private synchronized void open(Member member) {
+        try {
+            final CordaRPCConnection connection = client.start(username, password);
+            member.connection = connection;
+            member.ops = connection.getProxy();
+            member.failures = 0;
+            member.healthy = true;
+            logger.info("Opened RPC connection {}", member.name);
+        } catch (RuntimeException e) {
+            scheduleReopen(member, e);
+        }
+    }
+
+    /**
+     * Takes a member out of rotation. {@code ops} is the proxy that failed, so that a late report about a connection
+     * which has already been replaced, or already reported, is ignored.
+     */
+    private synchronized void markFailed(Member member, CordaRPCOps ops, Throwable error) {
+        if (member.ops == ops && member.healthy) {
+            scheduleReopen(member, error);
+        }
+    }
+
+    private synchronized void scheduleReopen(Member member, Throwable error) {
+        member.healthy = false;
+        member.failures++;
+        final long backoffSeconds = Math.min(GOLD_BLOCK_RPC_POOL_MAX_BACKOFF_SECONDS, 1L << Math.min(member.failures, 16));
+        member.nextAttemptNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(backoffSeconds);
+        logger.warn("RPC connection {} failed, retrying in {}s: {}", member.name, backoffSeconds, error.toString());
+
+        if (member.connection != null) {
+            try {
+                member.connection.forceClose();
+            } catch (RuntimeException e) {
+                logger.debug("Error closing RPC connection {}", member.name, e);
+            }
+            member.connection = null;
+        }
+    }
+
+    // Tells the node each pooled connection is going away; the webserver closes its own connection itself.
+    private synchronized void close() {
+        for (Member member : members) {
+            if (member.pooled && member.connection != null) {
+                member.healthy = false;
+                try {
+                    member.connection.notifyServerAndClose();
+                } catch (RuntimeException e) {
+                    logger.debug("Error closing RPC connection {}", member.name, e);
+                }
+                member.connection = null;
+            }
+        }
+    }
+
+    private static boolean isConnectionFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RPCException || cause instanceof ActiveMQException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RpcConnectionPool" + members;
+    }
+
+    private static final class Member {
+        private final String name;
+        // Only connections the pool opened itself are reopened; the webserver manages its own.
+        private final boolean pooled;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile CordaRPCConnection connection;
+        private volatile CordaRPCOps ops;
+        private volatile boolean healthy;
+        private volatile long nextAttemptNanos;
+        private int failures;
+
+        private Member(String name, CordaRPCOps ops) {
+            this.name = name;
+            this.pooled = ops == null;
+            this.ops = ops;
+            this.healthy = ops != null;
+        }
+
+        @Override
+        public String toString() {
+            return name + (healthy ? "" : " (down)") + ": " + outstanding.get() + " outstanding";
+        }
+    }
+}
@@ -2,13 +2,142 @@ package com.template.ledger.common.constants;
 
 public interface GoldBlockConstants {
 
-    String GOLD_BLOCK_UNIQUE_CODE = "GB";
-
-    String GOLD_BLOCK_DISPLAY_NAME = "GOLDBLOCKS";
-
     String GOLD_BLOCK_NOTARY_SERVICE = "Notary";
 
     String GOLD_BLOCK_NOTARY_CITY = "London";
 
-    String GOLD_BLOCK_NOTARY_COUNTRY = "UK";
+    String GOLD_BLOCK_NOTARY_COUNTRY = "GB";
+
+    // System property holding the X.500 name of the notary GoldBlock flows use, overriding the name above.
+    String GOLD_BLOCK_NOTARY_NAME_PROPERTY = "goldblock.notary.name";
+
+    // Upper bound on the number of outputs packed into a single batch issuance transaction.
+    int GOLD_BLOCK_MAX_OUTPUTS_PER_TX = 500;
+
+    // Number of asynchronously started flows whose status GoldBlockAPI remembers for polling.
+    int GOLD_BLOCK_MAX_TRACKED_FLOWS = 10_000;
+
+    // Page size used when coin selection walks the vault for goldblocks to spend.
+    int GOLD_BLOCK_SELECTION_PAGE_SIZE = 200;
+
+    // Number of times coin selection re-queries the vault after losing a soft-lock race to another flow.
+    int GOLD_BLOCK_SELECTION_MAX_RETRIES = 3;
+
+    // Page size used by the webserver's holdings view when it seeds itself from the vault.
+    int GOLD_BLOCK_HOLDINGS_PAGE_SIZE = 1_000;
+
+    // Longest wait, in milliseconds, between the holdings view's attempts to resubscribe after its vault feed failed.
+    long GOLD_BLOCK_HOLDINGS_MAX_RETRY_MILLIS = 60_000;
+
+    // A token's fragments are only consolidated once at least this many unconsumed states of it exist.
+    int GOLD_BLOCK_CONSOLIDATION_MIN_STATES = 10;
+
+    // Upper bound on the number of states merged into one output by a single consolidation transaction.
+    int GOLD_BLOCK_CONSOLIDATION_MAX_INPUTS = 100;
+
+    // Upper bound on the number of consolidation transactions built by one run of the flow.
+    int GOLD_BLOCK_CONSOLIDATION_MAX_TXS = 20;
+
+    // Upper bound on the vault pages one consolidation run walks, which bounds the states it holds while batching.
+    int GOLD_BLOCK_CONSOLIDATION_MAX_PAGES = 50;
+
+    // System property holding the interval, in seconds, between scheduled consolidations; unset or 0 disables them.
+    String GOLD_BLOCK_CONSOLIDATION_INTERVAL_PROPERTY = "goldblock.consolidation.intervalSeconds";
+
+    // Webserver system property holding the number of pooled RPC connections; unset or 1 keeps the single connection.
+    String GOLD_BLOCK_RPC_POOL_SIZE_PROPERTY = "goldblock.rpc.pool.size";
+
+    // Webserver system property holding the node's RPC address for the pooled connections, as host:port.
+    String GOLD_BLOCK_RPC_POOL_ADDRESS_PROPERTY = "goldblock.rpc.pool.address";
+
+    // Webserver system property holding the RPC user the pooled connections log in as.
+    String GOLD_BLOCK_RPC_POOL_USERNAME_PROPERTY = "goldblock.rpc.pool.username";
+
+    // Webserver environment variable holding that user's password, which is kept out of the process's command line.
+    String GOLD_BLOCK_RPC_POOL_PASSWORD_ENV = "GOLDBLOCK_RPC_POOL_PASSWORD";
+
+    // Interval, in seconds, between health checks of the pooled RPC connections.
+    int GOLD_BLOCK_RPC_POOL_HEALTH_CHECK_SECONDS = 5;
+
+    // Upper bound, in seconds, on the back-off between attempts to reopen a failed pooled RPC connection.
+    int GOLD_BLOCK_RPC_POOL_MAX_BACKOFF_SECONDS = 60;
+
+    // Number of states GET /api/gb/states returns per page when no limit is given.
+    int GOLD_BLOCK_STATES_PAGE_SIZE = 100;
+
+    // Upper bound on the page size accepted by GET /api/gb/states.
+    int GOLD_BLOCK_STATES_MAX_PAGE_SIZE = 1_000;
+
+    // Goldblocks are only re-issued once they are at least this many transactions away from their issuance.
+    int GOLD_BLOCK_REISSUE_MIN_CHAIN_DEPTH = 50;
+
+    // System property an issuer may set to override GOLD_BLOCK_REISSUE_MIN_CHAIN_DEPTH.
+    String GOLD_BLOCK_REISSUE_MIN_CHAIN_DEPTH_PROPERTY = "goldblock.reissue.minChainDepth";
+
+    // Upper bound on the number of states exited and re-issued by a single re-issuance.
+    int GOLD_BLOCK_REISSUE_MAX_STATES = 100;
+
+    // Number of clients that may follow GET /api/gb/flows/stream at once; each holds a webserver thread.
+    int GOLD_BLOCK_PROGRESS_MAX_CLIENTS = 32;
+
+    // Interval, in seconds, between keep-alive comments on an idle flow progress stream.
+    int GOLD_BLOCK_PROGRESS_HEARTBEAT_SECONDS = 15;
+
+    // Number of Idempotency-Key headers GoldBlockAPI remembers; the oldest finished ones are forgotten first.
+    int GOLD_BLOCK_IDEMPOTENCY_MAX_KEYS = 10_000;
+
+    // Retry-After, in seconds, sent when every remembered Idempotency-Key still has a flow in flight.
+    int GOLD_BLOCK_IDEMPOTENCY_FULL_RETRY_SECONDS = 5;
+
+    // Hours for which a retry with the same Idempotency-Key returns the original outcome.
+    int GOLD_BLOCK_IDEMPOTENCY_TTL_HOURS = 24;
+
+    // Longest accepted Idempotency-Key header value.
+    int GOLD_BLOCK_IDEMPOTENCY_MAX_KEY_LENGTH = 255;
+
+    // Webserver system property and default for the most flows each GoldBlockAPI endpoint may have in flight.
+    String GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT_PROPERTY = "goldblock.admission.maxInFlight";
+    int GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT = 64;
+
+    // Webserver system property and default for the most flows GoldBlockAPI may have in flight with one counterparty.
+    String GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT_PER_PARTY_PROPERTY = "goldblock.admission.maxInFlightPerParty";
+    int GOLD_BLOCK_ADMISSION_MAX_IN_FLIGHT_PER_PARTY = 16;
+
+    // Webserver system property and default for the number of requests that may wait for a flow slot at once.
+    String GOLD_BLOCK_ADMISSION_QUEUE_SIZE_PROPERTY = "goldblock.admission.queueSize";
+    int GOLD_BLOCK_ADMISSION_QUEUE_SIZE = 128;
+
+    // Webserver system property and default for how long, in milliseconds, a request waits for a flow slot.
+    String GOLD_BLOCK_ADMISSION_QUEUE_TIMEOUT_MILLIS_PROPERTY = "goldblock.admission.queueTimeoutMillis";
+    long GOLD_BLOCK_ADMISSION_QUEUE_TIMEOUT_MILLIS = 2_000;
+
+    // Seconds for which GET /api/gb/metrics serves the node's figures before starting another GoldBlockMetricsFlow.
+    int GOLD_BLOCK_METRICS_CACHE_SECONDS = 10;
+
+    // Largest attachment, in bytes, that POST /api/gb/attachments accepts. The upload travels to the node as one RPC
+    // message, which Corda 3.1 caps at 10 MiB by default, so this leaves room for the ZIP wrapping and the message.
+    long GOLD_BLOCK_ATTACHMENT_MAX_BYTES = 8L * 1024 * 1024;
+
+    // Number of verified transaction signatures the node remembers, so that later flow stages need not check them again.
+    int GOLD_BLOCK_SIGNATURE_CACHE_SIZE = 10_000;
+
+    // Notary system property and default for how long, in milliseconds, BatchingNotaryService waits for a batch to fill.
+    // Only worth raising on a node that runs flows on several threads; see BatchingUniquenessProvider.
+    String GOLD_BLOCK_NOTARY_BATCH_WINDOW_MILLIS_PROPERTY = "goldblock.notary.batchWindowMillis";
+    long GOLD_BLOCK_NOTARY_BATCH_WINDOW_MILLIS = 0;
+
+    // Notary system property and default for the most notarisation requests BatchingNotaryService commits together.
+    String GOLD_BLOCK_NOTARY_MAX_BATCH_SIZE_PROPERTY = "goldblock.notary.maxBatchSize";
+    int GOLD_BLOCK_NOTARY_MAX_BATCH_SIZE = 256;
+
+    // Notary system property and default for the JDBC URL of BatchingNotaryService's uniqueness store. The default file
+    // is relative to the notary's working directory; see BatchingUniquenessProvider before relying on it.
+    String GOLD_BLOCK_NOTARY_JDBC_URL_PROPERTY = "goldblock.notary.jdbcUrl";
+    String GOLD_BLOCK_NOTARY_JDBC_URL = "jdbc:h2:file:./goldblock-notary-states";
+
+    // Seconds a notarisation waits for its batch to be committed before the notary gives up on it.
+    int GOLD_BLOCK_NOTARY_COMMIT_TIMEOUT_SECONDS = 30;
+
+    // Seconds a committed notarisation keeps its place in its batch's signature; a response signed later is signed alone.
+    int GOLD_BLOCK_NOTARY_UNSIGNED_EXPIRY_SECONDS = 60;
 }
@@ -0,0 +1,145 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.service.SignatureVerificationCache;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.OpaqueBytes;
+import net.corda.core.utilities.ProgressTracker;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flow to issue many lots of goldblocks in as few transactions as possible. Each transaction carries up to
+ * {@code maxOutputsPerTx} outputs, so the signing, notarisation and vault costs are paid once per batch instead of
+ * once per lot.
+ */
+@InitiatingFlow
+@StartableByRPC
+public class BatchIssueFlow extends InstrumentedFlowLogic<List<SecureHash>> implements GoldBlockConstants {
+
+    /*Write progress tracker*/
+    private static final ProgressTracker.Step IDENTIFY_OTHER_NODES = new ProgressTracker.Step("Identifying other nodes on the network.");
+    private static final ProgressTracker.Step OTHER_TX_COMPONENTS = new ProgressTracker.Step("Gathering a transaction's other components.");
+    private static final ProgressTracker.Step TX_BUILDING = new ProgressTracker.Step("Building a batch transaction.");
+    private static final ProgressTracker.Step TX_SIGNING = new ProgressTracker.Step("Signing a batch transaction.");
+    private static final ProgressTracker.Step TX_VERIFICATION = new ProgressTracker.Step("Verifying a batch transaction.");
+    private static final ProgressTracker.Step FINALISATION = new ProgressTracker.Step("Finalising a batch transaction.");
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            IDENTIFY_OTHER_NODES,
+            OTHER_TX_COMPONENTS,
+            TX_BUILDING,
+            TX_SIGNING,
+            TX_VERIFICATION,
+            FINALISATION
+    );
+    private final List<IssueLot> lots;
+    private final int maxOutputsPerTx;
+    private Party regulator;
+    private GoldBlockIssuer issuer;
+    private Command<GoldBlockContract.Commands.Issue> issueAssetCommand;
+
+    public BatchIssueFlow(List<IssueLot> lots) {
+        this(lots, GOLD_BLOCK_MAX_OUTPUTS_PER_TX);
+    }
+
+    public BatchIssueFlow(List<IssueLot> lots, int maxOutputsPerTx) {
+        if (maxOutputsPerTx <= 0) {
+            throw new IllegalArgumentException("maxOutputsPerTx must be positive.");
+        }
+        this.lots = lots;
+        this.maxOutputsPerTx = maxOutputsPerTx;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected List<SecureHash> run() throws FlowException {
+        if (lots.isEmpty()) {
+            throw new FlowException("At least one lot must be supplied.");
+        }
+        for (IssueLot lot : lots) {
+            if (lot.getAmount() <= 0) {
+                throw new FlowException("Lot amounts must be positive, got " + lot.getAmount() + " for " + lot.getOwner());
+            }
+        }
+
+        //STAGE-1 - IDENTIFY_OTHER_NODES
+        stepTo(IDENTIFY_OTHER_NODES);
+        identifyOtherNodes();
+
+        //STAGE-2 - OTHER_TX_COMPONENTS
+        stepTo(OTHER_TX_COMPONENTS);
+        generateOtherTxnComponents();
+
+        final List<SecureHash> txIds = new ArrayList<>();
+        for (List<IssueLot> batch : Lists.partition(lots, maxOutputsPerTx)) {
+            //STAGE-3 - TX_BUILDING
+            stepTo(TX_BUILDING);
+            final TransactionBuilder txBuilder = buildTransaction(batch);
+
+            //STAGE-4 - TX_SIGNING
+            stepTo(TX_SIGNING);
+            final SignedTransaction signedTx = getServiceHub().signInitialTransaction(txBuilder);
+
+            //STAGE-5 - TX_VERIFICATION
+            stepTo(TX_VERIFICATION);
+            try {
+                // The time window makes the notary a required signer and it has not signed yet, so only check the
+                // signatures that are present.
+                getServiceHub().cordaService(SignatureVerificationCache.class).verify(signedTx, getServiceHub(), false);
+            } catch (SignatureException e) {
+                throw new FlowException("Batch transaction signatures are invalid.", e);
+            }
+
+            //STAGE-6 - FINALISATION
+            // The issuer is the only signer besides the notary, so the transaction goes straight to the notary and the owners.
+            stepTo(FINALISATION);
+            final SignedTransaction notarisedTx = subFlow(new FinalityFlow(signedTx));
+            txIds.add(notarisedTx.getId());
+        }
+        return txIds;
+    }
+
+    private void identifyOtherNodes() throws FlowException {
+        //Retrieve notary from the node's identity cache
+        regulator = getServiceHub().cordaService(GoldBlockIdentityCache.class).notary();
+    }
+
+    private void generateOtherTxnComponents() {
+        final Party me = getOurIdentity();
+        issuer = GoldBlockIssuer.of(me, OpaqueBytes.of((byte) 0x01));
+
+        final List<PublicKey> requiredSigners = ImmutableList.of(me.getOwningKey());
+        issueAssetCommand = new Command<>(new GoldBlockContract.Commands.Issue(), requiredSigners);
+    }
+
+    private TransactionBuilder buildTransaction(List<IssueLot> batch) {
+        final TransactionBuilder txBuilder = new TransactionBuilder(regulator);
+        for (IssueLot lot : batch) {
+            txBuilder.addOutputState(new GoldBlockState(lot.getAmount(), issuer, lot.getOwner()), GoldBlockContract.GOLD_BLOCK_CONTRACT_ID);
+        }
+        txBuilder.addCommand(issueAssetCommand);
+        txBuilder.setTimeWindow(TimeWindow.fromStartAndDuration(getServiceHub().getClock().instant(), Duration.ofSeconds(30)));
+        return txBuilder;
+    }
+}
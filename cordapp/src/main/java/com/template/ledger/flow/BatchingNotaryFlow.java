@@ -0,0 +1,127 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.service.BatchingNotaryService;
+import net.corda.core.contracts.TimeWindow;
+import net.corda.core.contracts.TransactionVerificationException;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.WireTransaction;
+import net.corda.core.utilities.UntrustworthyData;
+import org.jetbrains.annotations.NotNull;
+
+import java.security.SignatureException;
+import java.util.Collections;
+
+/**
+ * Notary side of a notarisation handled by the {@link BatchingNotaryService}. Validates the transaction as the stock
+ * validating notary does, then waits for its inputs to be committed in a batch and answers with the batch signature.
+ * <p>
+ * As in the stock notary flow, errors are raised as {@link NotaryInternalException} and reach the client as a
+ * {@link NotaryException}, so a store that cannot commit the inputs in time is reported as a notary error.
+ */
+public class BatchingNotaryFlow extends NotaryFlow.Service {
+
+    private final BatchingNotaryService batchingService;
+
+    public BatchingNotaryFlow(FlowSession otherSideSession, BatchingNotaryService service) {
+        super(otherSideSession, service);
+        this.batchingService = service;
+    }
+
+    @Suspendable
+    @Override
+    public Void call() throws FlowException {
+        try {
+            final TransactionParts parts = receiveAndVerifyTx();
+            batchingService.validateTimeWindow(parts.getTimestamp());
+            try {
+                batchingService.commitInputStates(parts.getInputs(), parts.getId(), getOtherSideSession().getCounterparty());
+            } catch (IllegalStateException e) {
+                // The store failed, timed out or is stopping; the client may retry.
+                throw new NotaryInternalException(new NotaryError.General(new Exception("Service unavailable, please try again later.", e)));
+            }
+            getOtherSideSession().send(Collections.singletonList(batchingService.signBatched(parts.getId())));
+        } catch (NotaryInternalException e) {
+            throw new NotaryException(e.getError(), null);
+        }
+        return null;
+    }
+
+    /**
+     * Receives the transaction, checks it is addressed to us and signed by everyone but us, and resolves and verifies
+     * it together with its backchain.
+     */
+    @Suspendable
+    @Override
+    public TransactionParts receiveAndVerifyTx() throws FlowException {
+        try {
+            final SignedTransaction stx = getOtherSideSession().receive(NotarisationPayload.class).unwrap(payload -> {
+                final SignedTransaction received = payload.getSignedTransaction();
+                validateRequest(new NotarisationRequest(received.getInputs(), received.getId()), payload.getRequestSignature());
+                return received;
+            });
+            final Party notary = stx.getNotary();
+            checkNotary(notary);
+            stx.resolveTransactionWithSignatures(getServiceHub()).verifySignaturesExcept(batchingService.getNotaryIdentityKey());
+            // The client serves the backchain as for any SendTransactionFlow once its payload is sent.
+            subFlow(new ReceiveTransactionFlow(new ReceivedPayloadSession(getOtherSideSession(), stx), false, StatesToRecord.NONE));
+            final TimeWindow timeWindow = stx.getCoreTransaction() instanceof WireTransaction ? stx.getTx().getTimeWindow() : null;
+            return new TransactionParts(stx.getId(), stx.getInputs(), timeWindow, notary);
+        } catch (TransactionVerificationException | SignatureException e) {
+            throw new NotaryInternalException(new NotaryError.TransactionInvalid(e));
+        }
+    }
+
+    /**
+     * The client's session, with the transaction of its notarisation payload, which has already been received, handed
+     * to {@link ReceiveTransactionFlow} as the transaction it expects first. Everything else goes to the session.
+     */
+    private static class ReceivedPayloadSession extends FlowSession {
+        private final FlowSession session;
+        private SignedTransaction payload;
+
+        private ReceivedPayloadSession(FlowSession session, SignedTransaction payload) {
+            this.session = session;
+            this.payload = payload;
+        }
+
+        @NotNull
+        @Override
+        public Party getCounterparty() { return session.getCounterparty(); }
+
+        @Suspendable
+        @NotNull
+        @Override
+        public FlowInfo getCounterpartyFlowInfo(boolean maySkipCheckpoint) {
+            return session.getCounterpartyFlowInfo(maySkipCheckpoint);
+        }
+
+        @Suspendable
+        @NotNull
+        @Override
+        public <R> UntrustworthyData<R> sendAndReceive(@NotNull Class<R> receiveType, @NotNull Object payload, boolean maySkipCheckpoint) {
+            return session.sendAndReceive(receiveType, payload, maySkipCheckpoint);
+        }
+
+        @Suspendable
+        @NotNull
+        @Override
+        public <R> UntrustworthyData<R> receive(@NotNull Class<R> receiveType, boolean maySkipCheckpoint) {
+            if (payload != null && receiveType == SignedTransaction.class) {
+                final SignedTransaction received = payload;
+                payload = null;
+                return new UntrustworthyData<>(receiveType.cast(received));
+            }
+            return session.receive(receiveType, maySkipCheckpoint);
+        }
+
+        @Suspendable
+        @Override
+        public void send(@NotNull Object payload, boolean maySkipCheckpoint) {
+            session.send(payload, maySkipCheckpoint);
+        }
+    }
+}
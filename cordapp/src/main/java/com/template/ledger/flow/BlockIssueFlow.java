@@ -1,17 +1,21 @@
 package com.template.ledger.flow;
 
+import co.paralleluniverse.fibers.Suspendable;
 import com.google.common.collect.ImmutableList;
 import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.service.SignatureVerificationCache;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
 import net.corda.core.contracts.*;
+import net.corda.core.crypto.SecureHash;
 import net.corda.core.flows.*;
-import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.transactions.TransactionBuilder;
 import net.corda.core.utilities.OpaqueBytes;
 import net.corda.core.utilities.ProgressTracker;
-import net.corda.finance.contracts.Commodity;
-import net.corda.finance.contracts.asset.CommodityContract;
 
 import java.security.GeneralSecurityException;
 import java.security.PublicKey;
@@ -20,14 +24,13 @@ import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 
-import static net.corda.core.crypto.CryptoUtils.generateKeyPair;
-
 /**
- * Flow to issue some goldblocks to seller for selling it to buyer.
+ * Flow to issue some goldblocks to seller for selling it to buyer. The issuance can carry attachments already stored
+ * on this node, such as the lot's assay and vault certificates.
  */
 @InitiatingFlow
 @StartableByRPC
-public class BlockIssueFlow extends FlowLogic<SignedTransaction> implements GoldBlockConstants {
+public class BlockIssueFlow extends InstrumentedFlowLogic<SignedTransaction> implements GoldBlockConstants {
 
     /*Write progress tracker*/
     private static final ProgressTracker.Step IDENTIFY_OTHER_NODES = new ProgressTracker.Step("Identifying other nodes on the network.");
@@ -61,11 +64,10 @@ public class BlockIssueFlow extends FlowLogic<SignedTransaction> implements Gold
             FINALISATION
     );
     private int orderValue;
+    private List<SecureHash> attachmentIds;
     private Party regulator;
-    private Amount<Issued<Commodity>> issuedBlocks;
-    private CordaX500Name notaryName;
     private StateAndContract outputStateAndContract;
-    private Command<CommodityContract.Commands.Issue> issueAssetCommand;
+    private Command<GoldBlockContract.Commands.Issue> issueAssetCommand;
     private TimeWindow txnTimeWindow;
     private TransactionBuilder txBuilder;
     private SignedTransaction onceSignedTx;
@@ -73,75 +75,81 @@ public class BlockIssueFlow extends FlowLogic<SignedTransaction> implements Gold
     private SignedTransaction notarisedTx;
 
     public BlockIssueFlow(int orderValue) {
+        this(orderValue, Collections.emptyList());
+    }
+
+    public BlockIssueFlow(int orderValue, List<SecureHash> attachmentIds) {
         this.orderValue = orderValue;
-        final OpaqueBytes ref = OpaqueBytes.of((byte) 0x01);
-        PartyAndReference partyAndReference = new PartyAndReference(getServiceHub().getMyInfo().getLegalIdentities().get(0), ref);
-        Commodity goldblocks = new Commodity(GOLD_BLOCK_UNIQUE_CODE, GOLD_BLOCK_DISPLAY_NAME, 2);
-        Issued<Commodity> issuedCommodity = new Issued<Commodity>(partyAndReference, goldblocks);
-        Amount<Issued<Commodity>> issuedBlocks = new Amount<Issued<Commodity>>(orderValue, issuedCommodity);
-        this.issuedBlocks = issuedBlocks;
+        this.attachmentIds = attachmentIds;
     }
 
     @Override
-    public SignedTransaction call() throws FlowException {
-        PublicKey dummyPubKey = generateKeyPair().getPublic();
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected SignedTransaction run() throws FlowException {
 
         //STAGE-1 - IDENTIFY_OTHER_NODES
-        progressTracker.setCurrentStep(IDENTIFY_OTHER_NODES);
+        stepTo(IDENTIFY_OTHER_NODES);
         identifyOtherNodes();
 
         //STAGE-2 - OTHER_TX_COMPONENTS
-        progressTracker.setCurrentStep(OTHER_TX_COMPONENTS);
+        stepTo(OTHER_TX_COMPONENTS);
         generateOtherTxnComponents();
 
         //STAGE-3 -  TX_BUILDING
-        progressTracker.setCurrentStep(TX_BUILDING);
+        stepTo(TX_BUILDING);
         buildTransaction();
 
         //STAGE-4 - TX_SIGNING
-        progressTracker.setCurrentStep(TX_SIGNING);
+        stepTo(TX_SIGNING);
         signTransaction();
 
         try {
 
             //STAGE-5 - TX_VERIFICATION
-            progressTracker.setCurrentStep(TX_VERIFICATION);
+            stepTo(TX_VERIFICATION);
             verifyTransaction();
 
             //STAGE-6 - SIGS_GATHERING
-            progressTracker.setCurrentStep(SIGS_GATHERING);
+            stepTo(SIGS_GATHERING);
             gatherSignatures();
 
             //STAGE-7 - VERIFYING_SIGS
-            progressTracker.setCurrentStep(VERIFYING_SIGS);
+            stepTo(VERIFYING_SIGS);
             verfiySignatures();
 
         } catch (GeneralSecurityException e) {
-            e.printStackTrace();
+            throw new FlowException("Issuance transaction signatures are invalid.", e);
         }
 
         //STAGE-8 - FINALISATION
-        progressTracker.setCurrentStep(FINALISATION);
+        stepTo(FINALISATION);
         finalisingTransaction();
 
-        return null;
+        return notarisedTx;
     }
 
-    private void identifyOtherNodes(){
+    private void identifyOtherNodes() throws FlowException {
         //progressTracker.setCurrentStep(IDENTIFY_OTHER_NODES);
-        //Retrieve notary from network map
-        notaryName = new CordaX500Name(GOLD_BLOCK_NOTARY_SERVICE, GOLD_BLOCK_NOTARY_CITY, GOLD_BLOCK_NOTARY_COUNTRY);
-        regulator = getServiceHub().getNetworkMapCache().getNotary(notaryName);
+        //Retrieve notary from the node's identity cache
+        regulator = getServiceHub().cordaService(GoldBlockIdentityCache.class).notary();
 
     }
 
     private void generateOtherTxnComponents(){
         //progressTracker.setCurrentStep(OTHER_TX_COMPONENTS);
 
-        CommodityContract.State outputState = new CommodityContract.State(issuedBlocks, getServiceHub().getMyInfo().getLegalIdentities().get(0));
-        outputStateAndContract = new StateAndContract(outputState, CommodityContract.Companion.toString());
+        // The service hub is only available once the flow is running, so the issuer is built here.
+        final GoldBlockIssuer issuer = GoldBlockIssuer.of(getOurIdentity(), OpaqueBytes.of((byte) 0x01));
+
+        GoldBlockState outputState = new GoldBlockState(orderValue, issuer, getServiceHub().getMyInfo().getLegalIdentities().get(0));
+        outputStateAndContract = new StateAndContract(outputState, GoldBlockContract.GOLD_BLOCK_CONTRACT_ID);
 
-        CommodityContract.Commands.Issue commandData = new CommodityContract.Commands.Issue();
+        GoldBlockContract.Commands.Issue commandData = new GoldBlockContract.Commands.Issue();
         PublicKey ourPubKey = getServiceHub().getMyInfo().getLegalIdentitiesAndCerts().get(0).getOwningKey();
         List<PublicKey> requiredSigners = ImmutableList.of(ourPubKey);
         issueAssetCommand = new Command<>(commandData, requiredSigners);
@@ -157,19 +165,17 @@ public class BlockIssueFlow extends FlowLogic<SignedTransaction> implements Gold
         // If transaction has input states or a time-window, instantiate it with a notary.
         txBuilder = new TransactionBuilder(regulator);
 
-        // Add items to the transaction builder
+        // Add items to the transaction builder; an issuance has no inputs
         txBuilder.withItems(
-                // Inputs, as StateAndRef that reference to the outputs of previous transactions
-                null,
                 // Outputs, as StateAndContract
                 outputStateAndContract,
                 // Command
                 issueAssetCommand,
-                // Attachments, as SecureHash
-                null,
                 // A txn time-window, as TimeWindow
                 txnTimeWindow
         );
+        // Certificates, by attachment id; counterparties fetch them from us when they resolve the transaction
+        attachmentIds.forEach(txBuilder::addAttachment);
 
     }
 
@@ -182,10 +188,12 @@ public class BlockIssueFlow extends FlowLogic<SignedTransaction> implements Gold
 
     private void verifyTransaction() throws FlowException, SignatureException {
         //progressTracker.setCurrentStep(TX_VERIFICATION);
-        onceSignedTx.verify(getServiceHub());
+        // The notary has not signed yet, so only check the signatures that are present.
+        getServiceHub().cordaService(SignatureVerificationCache.class).verify(onceSignedTx, getServiceHub(), false);
 
     }
 
+    @Suspendable
     private void gatherSignatures() throws FlowException {
         //progressTracker.setCurrentStep(SIGS_GATHERING);
          /*The list of parties who need to sign a transaction is dictated by the transaction's commands. Once we've signed a transaction
@@ -197,10 +205,12 @@ public class BlockIssueFlow extends FlowLogic<SignedTransaction> implements Gold
 
     private void verfiySignatures() throws SignatureException {
         //progressTracker.setCurrentStep(VERIFYING_SIGS);
-        // Verify that a transaction has all the required signatures, and that they're all valid.
-        fullySignedTx.verifyRequiredSignatures();
+        // Verify that a transaction has all the required signatures except the notary's, and that they're all valid.
+        // Our own signature was checked, and cached, at TX_VERIFICATION.
+        getServiceHub().cordaService(SignatureVerificationCache.class).verifySignaturesExcept(fullySignedTx, regulator.getOwningKey());
     }
 
+    @Suspendable
     private void finalisingTransaction() throws FlowException {
         //progressTracker.setCurrentStep(FINALISATION);
 
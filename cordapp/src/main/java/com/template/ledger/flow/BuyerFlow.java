@@ -1,14 +1,25 @@
 package com.template.ledger.flow;
 
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.crypto.TransactionSignature;
 import net.corda.core.flows.*;
+import net.corda.core.transactions.LedgerTransaction;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.utilities.ProgressTracker;
 import net.corda.core.utilities.ProgressTracker.Step;
 
+import java.security.PublicKey;
+
 import static net.corda.core.contracts.ContractsDSL.requireThat;
 
+/**
+ * Buyer side of a {@link SellerFlow} trade. Receives and resolves the seller's partially signed transaction, checks
+ * that it pays us without spending anything of ours, and answers with our signature on the same session.
+ */
 @InitiatedBy(SellerFlow.class)
-public class BuyerFlow extends FlowLogic<SignedTransaction> {
+public class BuyerFlow extends InstrumentedFlowLogic<SignedTransaction> {
 
     private final FlowSession counterpartySession;
 
@@ -16,61 +27,59 @@ public class BuyerFlow extends FlowLogic<SignedTransaction> {
         this.counterpartySession = counterpartySession;
     }
 
-    private static final Step RECEIVING_AND_SENDING_DATA = new Step("Sending data between parties.");
-    private static final Step SIGNING = new Step("Responding to CollectSignaturesFlow.");
-    private static final Step FINALISATION = new Step("Finalising a transaction.");
+    private static final Step RECEIVING_TRANSACTION = new Step("Receiving and resolving the seller's transaction.");
+    private static final Step CHECKING = new Step("Checking the seller's transaction.");
+    private static final Step SIGNING = new Step("Signing the seller's transaction.");
 
     private final ProgressTracker progressTracker = new ProgressTracker(
-            RECEIVING_AND_SENDING_DATA,
-            SIGNING,
-            FINALISATION
+            RECEIVING_TRANSACTION,
+            CHECKING,
+            SIGNING
     );
 
     @Override
-    public SignedTransaction call() throws FlowException {
-
-        //STAGE-1 - RECEIVING_AND_SENDING_DATA
-        receiveAndSendData();
-
-        //STAGE-2 - SIGNING
-        signTransaction();
-
-        //STAGE-3 - FINALISATION
-        finalizeTransaction();
-        return null;
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
     }
 
-    private void receiveAndSendData() throws FlowException {
-        progressTracker.setCurrentStep(RECEIVING_AND_SENDING_DATA);
-
-        Object obj = counterpartySession.receive(Object.class).unwrap(data -> data);
-        counterpartySession.send(true);
-    }
-
-    private void signTransaction() throws FlowException {
-        progressTracker.setCurrentStep(SIGNING);
-        class SignTxFlow extends SignTransactionFlow {
-            private SignTxFlow(FlowSession otherSession, ProgressTracker progressTracker) {
-                super(otherSession, progressTracker);
-            }
-
-            @Override
-            protected void checkTransaction(SignedTransaction stx) {
-                requireThat(require -> {
-                    // Any additional checking we see fit...
-                    //CommodityContract.State outputState = (CommodityContract.State) stx.getTx().getOutputs().get(0).getData();
-                    //require.using("This must be an Commodity transaction.", outputState instanceof CommodityContract.State);
-                    //require.using("Commodity with a value over 100.", outputState.getAmount() <= 100);
-                    return null;
-                });
-            }
-        }
-
-        subFlow(new SignTxFlow(counterpartySession, SignTransactionFlow.tracker()));
-
+    @Suspendable
+    @Override
+    protected SignedTransaction run() throws FlowException {
+
+        //STAGE-1 - RECEIVING_TRANSACTION
+        stepTo(RECEIVING_TRANSACTION);
+        // Resolves the backchain, checks every signature present and verifies the contracts; the seller is the only
+        // signer so far.
+        final SignedTransaction stx = subFlow(new ReceiveTransactionFlow(counterpartySession, false));
+
+        //STAGE-2 - CHECKING
+        stepTo(CHECKING);
+        checkTransaction(stx);
+
+        //STAGE-3 - SIGNING
+        stepTo(SIGNING);
+        final TransactionSignature signature = getServiceHub().createSignature(stx, getOurIdentity().getOwningKey());
+        counterpartySession.send(signature);
+        return stx;
     }
 
-    private void finalizeTransaction(){
-        progressTracker.setCurrentStep(FINALISATION);
+    /**
+     * Checks what {@code stx} does for us. ReceiveTransactionFlow has already checked its signatures.
+     */
+    private void checkTransaction(SignedTransaction stx) throws FlowException {
+        final LedgerTransaction ledgerTx = stx.getTx().toLedgerTransaction(getServiceHub());
+        final PublicKey ourKey = getOurIdentity().getOwningKey();
+
+        requireThat(require -> {
+            require.using("This must be a goldblock move.",
+                    ledgerTx.getCommands().size() == 1 && ledgerTx.getCommands().get(0).getValue() instanceof GoldBlockContract.Commands.Move);
+            require.using("The move must ask for our signature.",
+                    ledgerTx.getCommands().get(0).getSigners().contains(ourKey));
+            require.using("The move must pay us some goldblocks.",
+                    ledgerTx.outputsOfType(GoldBlockState.class).stream().anyMatch(state -> state.getOwner().getOwningKey().equals(ourKey)));
+            require.using("The move must not spend our goldblocks.",
+                    ledgerTx.inputsOfType(GoldBlockState.class).stream().noneMatch(state -> state.getOwner().getOwningKey().equals(ourKey)));
+            return null;
+        });
     }
 }
@@ -0,0 +1,194 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.schema.GoldBlockQueries;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.service.SignatureVerificationCache;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.StatesNotAvailableException;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.SoftLockingCondition;
+import net.corda.core.node.services.vault.QueryCriteria.SoftLockingType;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.NonEmptySet;
+import net.corda.core.utilities.ProgressTracker;
+
+import java.security.SignatureException;
+import java.time.Duration;
+import java.util.*;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Flow to merge this node's small goldblock states into larger ones. States are grouped by issued token, smallest
+ * first, and up to {@code maxInputsPerTx} of them are replaced by a single output per transaction. A group is only
+ * merged once it has at least {@code minStates} states, and at most {@code maxTransactions} transactions are built per
+ * run so that one run stays bounded. Returns the number of states reclaimed.
+ */
+@InitiatingFlow
+@StartableByRPC
+@StartableByService
+public class ConsolidateGoldBlocksFlow extends InstrumentedFlowLogic<Integer> implements GoldBlockConstants {
+
+    /*Write progress tracker*/
+    private static final ProgressTracker.Step IDENTIFY_OTHER_NODES = new ProgressTracker.Step("Identifying other nodes on the network.");
+    private static final ProgressTracker.Step EXTRACTING_VAULT_STATES = new ProgressTracker.Step("Finding fragmented states in the vault.");
+    private static final ProgressTracker.Step TX_BUILDING = new ProgressTracker.Step("Building a consolidation transaction.");
+    private static final ProgressTracker.Step TX_SIGNING = new ProgressTracker.Step("Signing a consolidation transaction.");
+    private static final ProgressTracker.Step TX_VERIFICATION = new ProgressTracker.Step("Verifying a consolidation transaction.");
+    private static final ProgressTracker.Step FINALISATION = new ProgressTracker.Step("Finalising a consolidation transaction.");
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            IDENTIFY_OTHER_NODES,
+            EXTRACTING_VAULT_STATES,
+            TX_BUILDING,
+            TX_SIGNING,
+            TX_VERIFICATION,
+            FINALISATION
+    );
+    private final int minStates;
+    private final int maxInputsPerTx;
+    private final int maxTransactions;
+    private Party regulator;
+
+    public ConsolidateGoldBlocksFlow() {
+        this(GOLD_BLOCK_CONSOLIDATION_MIN_STATES, GOLD_BLOCK_CONSOLIDATION_MAX_INPUTS, GOLD_BLOCK_CONSOLIDATION_MAX_TXS);
+    }
+
+    public ConsolidateGoldBlocksFlow(int minStates, int maxInputsPerTx, int maxTransactions) {
+        if (minStates < 2 || maxInputsPerTx < minStates || maxTransactions <= 0) {
+            throw new IllegalArgumentException("Require 2 <= minStates <= maxInputsPerTx and maxTransactions > 0.");
+        }
+        this.minStates = minStates;
+        this.maxInputsPerTx = maxInputsPerTx;
+        this.maxTransactions = maxTransactions;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected Integer run() throws FlowException {
+        //STAGE-1 - IDENTIFY_OTHER_NODES
+        stepTo(IDENTIFY_OTHER_NODES);
+        regulator = getServiceHub().cordaService(GoldBlockIdentityCache.class).notary();
+
+        //STAGE-2 - EXTRACTING_VAULT_STATES
+        stepTo(EXTRACTING_VAULT_STATES);
+        final List<List<StateAndRef<GoldBlockState>>> batches = findBatches();
+
+        int consolidated = 0;
+        int reclaimed = 0;
+        for (List<StateAndRef<GoldBlockState>> batch : batches) {
+            final Set<StateRef> refs = new LinkedHashSet<>();
+            batch.forEach(stateAndRef -> refs.add(stateAndRef.getRef()));
+            try {
+                getServiceHub().getVaultService().softLockReserve(getRunId().getUuid(), NonEmptySet.copyOf(refs));
+            } catch (StatesNotAvailableException e) {
+                // A concurrent flow is about to spend some of these; leave them for the next run.
+                getLogger().info("Skipping consolidation batch: {}", e.getMessage());
+                continue;
+            }
+
+            //STAGE-3 - TX_BUILDING
+            stepTo(TX_BUILDING);
+            final TransactionBuilder txBuilder = buildTransaction(batch);
+
+            //STAGE-4 - TX_SIGNING
+            stepTo(TX_SIGNING);
+            final SignedTransaction signedTx = getServiceHub().signInitialTransaction(txBuilder);
+
+            //STAGE-5 - TX_VERIFICATION
+            stepTo(TX_VERIFICATION);
+            try {
+                // The notary has not signed yet, so only check the signatures that are present.
+                getServiceHub().cordaService(SignatureVerificationCache.class).verify(signedTx, getServiceHub(), false);
+            } catch (SignatureException e) {
+                throw new FlowException("Consolidation transaction signatures are invalid.", e);
+            }
+
+            //STAGE-6 - FINALISATION
+            stepTo(FINALISATION);
+            subFlow(new FinalityFlow(signedTx));
+            consolidated++;
+            reclaimed += batch.size() - 1;
+        }
+        getLogger().info("Consolidated goldblocks in {} of {} transactions, reclaiming {} states", consolidated, batches.size(), reclaimed);
+        return reclaimed;
+    }
+
+    /**
+     * Walks our unlocked goldblocks smallest first and splits them, per issued token, into batches to merge. At most
+     * {@link GoldBlockConstants#GOLD_BLOCK_CONSOLIDATION_MAX_PAGES} pages are walked: with many issuers each holding
+     * fewer than {@code maxInputsPerTx} fragments no bucket ever fills, and an unbounded walk would hold the whole
+     * vault in memory. Fragments beyond the last page are left for the next run, once this run's have been merged.
+     */
+    @Suspendable
+    private List<List<StateAndRef<GoldBlockState>>> findBatches() {
+        final QueryCriteria criteria = new VaultQueryCriteria(
+                Vault.StateStatus.UNCONSUMED,
+                ImmutableSet.of(GoldBlockState.class),
+                null,
+                null,
+                new SoftLockingCondition(SoftLockingType.UNLOCKED_ONLY, ImmutableList.of())
+        ).and(GoldBlockQueries.ownedBy(getOurIdentity()));
+        final Sort smallestFirst = GoldBlockQueries.sortByQuantity(Sort.Direction.ASC);
+
+        final List<List<StateAndRef<GoldBlockState>>> batches = new ArrayList<>();
+        final Map<GoldBlockIssuer, List<StateAndRef<GoldBlockState>>> buckets = new LinkedHashMap<>();
+        int pageNumber = DEFAULT_PAGE_NUM;
+        while (batches.size() < maxTransactions && pageNumber < DEFAULT_PAGE_NUM + GOLD_BLOCK_CONSOLIDATION_MAX_PAGES) {
+            final Vault.Page<GoldBlockState> page = getServiceHub().getVaultService().queryBy(GoldBlockState.class, criteria,
+                    new PageSpecification(pageNumber, GOLD_BLOCK_SELECTION_PAGE_SIZE), smallestFirst);
+            for (StateAndRef<GoldBlockState> stateAndRef : page.getStates()) {
+                final List<StateAndRef<GoldBlockState>> bucket = buckets.computeIfAbsent(
+                        stateAndRef.getState().getData().getIssuer(), issuer -> new ArrayList<>());
+                bucket.add(stateAndRef);
+                if (bucket.size() == maxInputsPerTx) {
+                    batches.add(new ArrayList<>(bucket));
+                    bucket.clear();
+                    if (batches.size() == maxTransactions) break;
+                }
+            }
+            if (page.getStates().size() < GOLD_BLOCK_SELECTION_PAGE_SIZE) break;
+            pageNumber++;
+        }
+        for (List<StateAndRef<GoldBlockState>> bucket : buckets.values()) {
+            if (batches.size() < maxTransactions && bucket.size() >= minStates) {
+                batches.add(bucket);
+            }
+        }
+        return batches;
+    }
+
+    private TransactionBuilder buildTransaction(List<StateAndRef<GoldBlockState>> batch) {
+        final GoldBlockIssuer issuer = batch.get(0).getState().getData().getIssuer();
+        long total = 0;
+        int chainDepth = 0;
+        final TransactionBuilder txBuilder = new TransactionBuilder(regulator);
+        for (StateAndRef<GoldBlockState> input : batch) {
+            txBuilder.addInputState(input);
+            total = Math.addExact(total, input.getState().getData().getQuantity());
+            chainDepth = Math.max(chainDepth, input.getState().getData().getChainDepth() + 1);
+        }
+        txBuilder.addOutputState(new GoldBlockState(total, issuer, getOurIdentity(), chainDepth), GoldBlockContract.GOLD_BLOCK_CONTRACT_ID);
+        txBuilder.addCommand(new GoldBlockContract.Commands.Move(), getOurIdentity().getOwningKey());
+        txBuilder.setTimeWindow(TimeWindow.fromStartAndDuration(getServiceHub().getClock().instant(), Duration.ofSeconds(30)));
+        return txBuilder;
+    }
+}
@@ -0,0 +1,207 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.service.SignatureVerificationCache;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.core.utilities.UntrustworthyData;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flow to pay goldblocks out to many recipients in one transaction. The inputs are selected once for the total, each
+ * recipient gets its own output and any surplus comes back to us as change, so a distribution costs one notarisation
+ * instead of one per recipient.
+ * <p>
+ * The partially signed transaction is sent to every recipient before any reply is awaited, and the signatures are
+ * then received from all sessions at once, so the recipients sign in parallel rather than one round trip after
+ * another.
+ */
+@InitiatingFlow
+@StartableByRPC
+public class DistributionFlow extends InstrumentedFlowLogic<SignedTransaction> implements GoldBlockConstants {
+
+    /*Write progress tracker*/
+    private static final Step IDENTIFY_OTHER_NODES = new Step("Identifying other nodes on the network.");
+    private static final Step EXTRACTING_VAULT_STATES = new Step("Extracting states from the vault.");
+    private static final Step OTHER_TX_COMPONENTS = new Step("Gathering a transaction's other components.");
+    private static final Step TX_BUILDING = new Step("Building a transaction.");
+    private static final Step TX_SIGNING = new Step("Signing a transaction.");
+    private static final Step TX_VERIFICATION = new Step("Verifying a transaction.");
+    private static final Step SIGS_GATHERING = new Step("Gathering the recipients' signatures.");
+    private static final Step VERIFYING_SIGS = new Step("Verifying a transaction's signatures.");
+    private static final Step FINALISATION = new Step("Finalising a transaction.") {
+        @Override
+        public ProgressTracker childProgressTracker() {
+            return FinalityFlow.tracker();
+        }
+    };
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            IDENTIFY_OTHER_NODES,
+            EXTRACTING_VAULT_STATES,
+            OTHER_TX_COMPONENTS,
+            TX_BUILDING,
+            TX_SIGNING,
+            TX_VERIFICATION,
+            SIGS_GATHERING,
+            VERIFYING_SIGS,
+            FINALISATION
+    );
+    private final List<MoveLeg> legs;
+    private final Map<Party, Long> payouts = new LinkedHashMap<>();
+    private Party regulator;
+    private long quantity;
+    private List<StateAndRef<GoldBlockState>> inputStates;
+    private List<GoldBlockState> outputStates;
+    private Command<GoldBlockContract.Commands.Move> moveAssetCommand;
+    private TransactionBuilder txBuilder;
+    private SignedTransaction onceSignedTx;
+    private SignedTransaction fullySignedTx;
+
+    public DistributionFlow(List<MoveLeg> legs) {
+        this.legs = legs;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected SignedTransaction run() throws FlowException {
+        //STAGE-1 - IDENTIFY_OTHER_NODES
+        identifyOtherNodes();
+
+        //STAGE-2 - EXTRACTING_VAULT_STATES
+        stepTo(EXTRACTING_VAULT_STATES);
+        inputStates = new GoldBlockSelection(getServiceHub(), getRunId().getUuid()).select(getOurIdentity(), quantity);
+
+        //STAGE-3 - OTHER_TX_COMPONENTS
+        generateOtherTxnComponents();
+
+        //STAGE-4 - TX_BUILDING
+        buildTransaction();
+
+        //STAGE-5 - TX_SIGNING
+        stepTo(TX_SIGNING);
+        onceSignedTx = getServiceHub().signInitialTransaction(txBuilder);
+
+        //STAGE-6 - TX_VERIFICATION
+        stepTo(TX_VERIFICATION);
+        try {
+            getServiceHub().cordaService(SignatureVerificationCache.class).verify(onceSignedTx, getServiceHub(), false);
+        } catch (SignatureException e) {
+            throw new FlowException("Distribution transaction signatures are invalid.", e);
+        }
+
+        //STAGE-7 - SIGS_GATHERING
+        gatherSignatures();
+
+        //STAGE-8 - VERIFYING_SIGS
+        stepTo(VERIFYING_SIGS);
+        try {
+            // Only the notary's signature may still be missing; FinalityFlow obtains it.
+            getServiceHub().cordaService(SignatureVerificationCache.class).verifySignaturesExcept(fullySignedTx, regulator.getOwningKey());
+        } catch (GeneralSecurityException e) {
+            throw new FlowException("Distribution transaction is missing signatures.", e);
+        }
+
+        //STAGE-9 - FINALISATION
+        stepTo(FINALISATION);
+        return subFlow(new FinalityFlow(fullySignedTx, FINALISATION.childProgressTracker()));
+    }
+
+    private void identifyOtherNodes() throws FlowException {
+        stepTo(IDENTIFY_OTHER_NODES);
+        if (legs.isEmpty()) {
+            throw new FlowException("At least one leg must be supplied.");
+        }
+
+        //Retrieve notary and recipients from the node's identity cache, merging legs paid to the same recipient
+        GoldBlockIdentityCache identities = getServiceHub().cordaService(GoldBlockIdentityCache.class);
+        regulator = identities.notary();
+        for (MoveLeg leg : legs) {
+            if (leg.getQuantity() <= 0) {
+                throw new FlowException("Leg quantities must be positive, got " + leg.getQuantity() + " for " + leg.getRecipient());
+            }
+            final Party recipient = identities.wellKnownParty(leg.getRecipient().getName());
+            if (recipient.equals(getOurIdentity())) {
+                throw new FlowException("A distribution cannot pay goldblocks to ourselves.");
+            }
+            payouts.merge(recipient, leg.getQuantity(), Math::addExact);
+            quantity = Math.addExact(quantity, leg.getQuantity());
+        }
+    }
+
+    private void generateOtherTxnComponents() {
+        stepTo(OTHER_TX_COMPONENTS);
+
+        // Each recipient gets its share and any surplus from the selected inputs comes back to us as change.
+        outputStates = GoldBlockSelection.spend(inputStates, payouts, getOurIdentity());
+
+        // Every recipient signs, so that each has agreed to the leg paid to it.
+        final List<PublicKey> requiredSigners = new ArrayList<>();
+        requiredSigners.add(getOurIdentity().getOwningKey());
+        payouts.keySet().forEach(recipient -> requiredSigners.add(recipient.getOwningKey()));
+        moveAssetCommand = new Command<>(new GoldBlockContract.Commands.Move(), requiredSigners);
+    }
+
+    private void buildTransaction() {
+        stepTo(TX_BUILDING);
+
+        txBuilder = new TransactionBuilder(regulator);
+        inputStates.forEach(txBuilder::addInputState);
+        outputStates.forEach(outputState -> txBuilder.addOutputState(outputState, GoldBlockContract.GOLD_BLOCK_CONTRACT_ID));
+        txBuilder.addCommand(moveAssetCommand);
+        txBuilder.setTimeWindow(TimeWindow.fromStartAndDuration(getServiceHub().getClock().instant(), Duration.ofSeconds(30)));
+    }
+
+    @Suspendable
+    private void gatherSignatures() throws FlowException {
+        stepTo(SIGS_GATHERING);
+
+        // Send to everyone first, then wait on all sessions together: the recipients sign concurrently.
+        final List<FlowSession> sessions = new ArrayList<>(payouts.size());
+        for (Party recipient : payouts.keySet()) {
+            final FlowSession session = initiateFlow(recipient);
+            session.send(onceSignedTx);
+            sessions.add(session);
+        }
+        final List<UntrustworthyData<TransactionSignature>> replies = receiveAll(TransactionSignature.class, sessions);
+
+        final List<TransactionSignature> signatures = new ArrayList<>(replies.size());
+        for (int i = 0; i < replies.size(); i++) {
+            final Party recipient = sessions.get(i).getCounterparty();
+            signatures.add(replies.get(i).unwrap(signature -> {
+                if (!signature.getBy().equals(recipient.getOwningKey())) {
+                    throw new FlowException(recipient + " signed with a key other than its own.");
+                }
+                try {
+                    getServiceHub().cordaService(SignatureVerificationCache.class).checkSignature(onceSignedTx.getId(), signature);
+                } catch (GeneralSecurityException e) {
+                    throw new FlowException(recipient + " returned an invalid signature.", e);
+                }
+                return signature;
+            }));
+        }
+        fullySignedTx = onceSignedTx.withAdditionalSignatures(signatures);
+    }
+}
@@ -0,0 +1,99 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.Command;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.TransactionState;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.WireTransaction;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+
+import java.security.PublicKey;
+
+/**
+ * Recipient side of a {@link DistributionFlow}. Receives the partially signed transaction, checks that it is a move
+ * paying goldblocks to us and spending nothing of ours, and sends back our signature.
+ * <p>
+ * The backchain is not resolved here: signing only acknowledges the leg paid to us, and the transaction is resolved
+ * and verified when {@link FinalityFlow} delivers it.
+ */
+@InitiatedBy(DistributionFlow.class)
+public class DistributionResponderFlow extends InstrumentedFlowLogic<Void> {
+
+    private static final Step RECEIVING = new Step("Receiving a distribution transaction.");
+    private static final Step CHECKING = new Step("Checking our leg of the distribution.");
+    private static final Step SIGNING = new Step("Signing our leg of the distribution.");
+
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            RECEIVING,
+            CHECKING,
+            SIGNING
+    );
+    private final FlowSession counterpartySession;
+
+    public DistributionResponderFlow(FlowSession counterpartySession) {
+        this.counterpartySession = counterpartySession;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected Void run() throws FlowException {
+        //STAGE-1 - RECEIVING
+        stepTo(RECEIVING);
+        final SignedTransaction stx = counterpartySession.receive(SignedTransaction.class).unwrap(data -> data);
+
+        //STAGE-2 - CHECKING
+        stepTo(CHECKING);
+        checkTransaction(stx);
+
+        //STAGE-3 - SIGNING
+        stepTo(SIGNING);
+        final TransactionSignature signature = getServiceHub().createSignature(stx, getOurIdentity().getOwningKey());
+        counterpartySession.send(signature);
+        return null;
+    }
+
+    private void checkTransaction(SignedTransaction stx) throws FlowException {
+        final WireTransaction tx = stx.getTx();
+        final PublicKey ourKey = getOurIdentity().getOwningKey();
+
+        if (tx.getCommands().size() != 1 || !(tx.getCommands().get(0).getValue() instanceof GoldBlockContract.Commands.Move)) {
+            throw new FlowException("A distribution must carry a single goldblock move command.");
+        }
+        final Command<?> command = tx.getCommands().get(0);
+        if (!command.getSigners().contains(ourKey)) {
+            throw new FlowException("The distribution does not ask for our signature.");
+        }
+
+        long received = 0;
+        for (TransactionState<ContractState> output : tx.getOutputs()) {
+            if (output.getData() instanceof GoldBlockState && ((GoldBlockState) output.getData()).getOwner().getOwningKey().equals(ourKey)) {
+                received += ((GoldBlockState) output.getData()).getQuantity();
+            }
+        }
+        if (received <= 0) {
+            throw new FlowException("The distribution pays us no goldblocks.");
+        }
+
+        // Our signature authorises spending any of our states among the inputs, so none may be ours.
+        if (!tx.getInputs().isEmpty()) {
+            final Vault.Page<ContractState> ours = getServiceHub().getVaultService().queryBy(ContractState.class,
+                    new VaultQueryCriteria(Vault.StateStatus.UNCONSUMED, null, tx.getInputs()));
+            if (!ours.getStates().isEmpty()) {
+                throw new FlowException("The distribution spends states held in our vault.");
+            }
+        }
+    }
+}
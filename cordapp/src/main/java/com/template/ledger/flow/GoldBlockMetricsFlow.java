@@ -0,0 +1,25 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.service.GoldBlockFlowMetrics;
+import com.template.ledger.service.SignatureVerificationCache;
+import net.corda.core.flows.FlowException;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.flows.StartableByRPC;
+
+/**
+ * Returns a snapshot of this node's {@link GoldBlockFlowMetrics} and {@link SignatureVerificationCache} counters in
+ * the Prometheus text format. The webserver runs in its own JVM and Corda 3 offers no RPC into a service, so this is
+ * how it reads the node's metrics; the webserver caches the result between scrapes. The flow is not instrumented
+ * itself, so that scraping does not show up in the figures it returns.
+ */
+@StartableByRPC
+public class GoldBlockMetricsFlow extends FlowLogic<String> {
+
+    @Suspendable
+    @Override
+    public String call() throws FlowException {
+        return getServiceHub().cordaService(GoldBlockFlowMetrics.class).getPrometheusText()
+                + getServiceHub().cordaService(SignatureVerificationCache.class).getPrometheusText();
+    }
+}
@@ -0,0 +1,159 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.schema.GoldBlockQueries;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.flows.FlowException;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.node.ServiceHub;
+import net.corda.core.node.services.StatesNotAvailableException;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.VaultService;
+import net.corda.core.node.services.vault.*;
+import net.corda.core.node.services.vault.QueryCriteria.SoftLockingCondition;
+import net.corda.core.node.services.vault.QueryCriteria.SoftLockingType;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.utilities.NonEmptySet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Coin selection for goldblocks. Pages through the node's unconsumed goldblock states, largest first, takes only as
+ * many as are needed to cover the requested quantity and soft-locks them under the calling flow's run id. States
+ * locked by other flows are skipped, so concurrent sellers on the same node never pick the same inputs.
+ * <p>
+ * The node releases the locks when the states are consumed or when the flow ends.
+ */
+public class GoldBlockSelection implements GoldBlockConstants {
+
+    static private final Logger logger = LoggerFactory.getLogger(GoldBlockSelection.class);
+
+    private final ServiceHub serviceHub;
+    private final UUID lockId;
+
+    public GoldBlockSelection(ServiceHub serviceHub, UUID lockId) {
+        this.serviceHub = serviceHub;
+        this.lockId = lockId;
+    }
+
+    /**
+     * Selects and soft-locks states owned by {@code owner} whose quantities sum to at least {@code quantity}.
+     *
+     * @throws FlowException if the owner does not hold enough unlocked goldblocks.
+     */
+    @Suspendable
+    public List<StateAndRef<GoldBlockState>> select(AbstractParty owner, long quantity) throws FlowException {
+        final VaultService vaultService = serviceHub.getVaultService();
+        for (int attempt = 1; attempt <= GOLD_BLOCK_SELECTION_MAX_RETRIES; attempt++) {
+            final List<StateAndRef<GoldBlockState>> selected = gather(vaultService, owner, quantity);
+            if (sum(selected) < quantity) {
+                throw new FlowException("Insufficient goldblocks: requested " + quantity + " but only " + sum(selected) + " available.");
+            }
+
+            final Set<StateRef> refs = new LinkedHashSet<>();
+            selected.forEach(stateAndRef -> refs.add(stateAndRef.getRef()));
+            try {
+                vaultService.softLockReserve(lockId, NonEmptySet.copyOf(refs));
+                return selected;
+            } catch (StatesNotAvailableException e) {
+                // Another flow locked one of our picks between the query and the reservation; go round again.
+                logger.debug("Selection attempt {} for lock {} lost a race: {}", attempt, lockId, e.getMessage());
+                vaultService.softLockRelease(lockId, NonEmptySet.copyOf(refs));
+            }
+        }
+        throw new FlowException("Unable to soft-lock goldblocks for " + quantity + " after " + GOLD_BLOCK_SELECTION_MAX_RETRIES + " attempts.");
+    }
+
+    /**
+     * Splits the selected inputs into the outputs of a move: {@code quantity} to {@code newOwner} and the remainder
+     * back to {@code changeOwner}, keeping each issuer's goldblocks in their own outputs.
+     */
+    public static List<GoldBlockState> spend(List<StateAndRef<GoldBlockState>> inputs, long quantity,
+                                                      AbstractParty newOwner, AbstractParty changeOwner) {
+        return spend(inputs, ImmutableMap.of(newOwner, quantity), changeOwner);
+    }
+
+    /**
+     * Splits the selected inputs into the outputs of a multi-recipient move: each entry of {@code payouts} to its
+     * party, in order, and the remainder back to {@code changeOwner}, keeping each issuer's goldblocks in their own
+     * outputs.
+     */
+    public static List<GoldBlockState> spend(List<StateAndRef<GoldBlockState>> inputs, Map<? extends AbstractParty, Long> payouts,
+                                             AbstractParty changeOwner) {
+        final Map<GoldBlockIssuer, Long> totals = new LinkedHashMap<>();
+        int chainDepth = 0;
+        for (StateAndRef<GoldBlockState> input : inputs) {
+            totals.merge(input.getState().getData().getIssuer(), input.getState().getData().getQuantity(), Long::sum);
+            chainDepth = Math.max(chainDepth, input.getState().getData().getChainDepth() + 1);
+        }
+
+        final List<GoldBlockState> outputs = new ArrayList<>();
+        final Map<AbstractParty, Long> owed = new LinkedHashMap<>(payouts);
+        for (Map.Entry<GoldBlockIssuer, Long> total : totals.entrySet()) {
+            long available = total.getValue();
+            for (Map.Entry<AbstractParty, Long> payout : owed.entrySet()) {
+                final long paid = Math.min(available, payout.getValue());
+                if (paid > 0) {
+                    outputs.add(new GoldBlockState(paid, total.getKey(), payout.getKey(), chainDepth));
+                    payout.setValue(payout.getValue() - paid);
+                    available -= paid;
+                }
+            }
+            if (available > 0) {
+                outputs.add(new GoldBlockState(available, total.getKey(), changeOwner, chainDepth));
+            }
+        }
+        return outputs;
+    }
+
+    @Suspendable
+    private List<StateAndRef<GoldBlockState>> gather(VaultService vaultService, AbstractParty owner, long quantity) {
+        final QueryCriteria criteria = new VaultQueryCriteria(
+                Vault.StateStatus.UNCONSUMED,
+                ImmutableSet.of(GoldBlockState.class),
+                null,
+                null,
+                new SoftLockingCondition(SoftLockingType.UNLOCKED_AND_SPECIFIED, ImmutableList.of(lockId))
+        ).and(GoldBlockQueries.ownedBy(owner));
+        final Sort largestFirst = GoldBlockQueries.sortByQuantity(Sort.Direction.DESC);
+
+        final List<StateAndRef<GoldBlockState>> selected = new ArrayList<>();
+        long gathered = 0;
+        int pageNumber = DEFAULT_PAGE_NUM;
+        while (gathered < quantity) {
+            final Vault.Page<GoldBlockState> page = vaultService.queryBy(GoldBlockState.class, criteria,
+                    new PageSpecification(pageNumber, GOLD_BLOCK_SELECTION_PAGE_SIZE), largestFirst);
+            for (StateAndRef<GoldBlockState> stateAndRef : page.getStates()) {
+                selected.add(stateAndRef);
+                gathered += stateAndRef.getState().getData().getQuantity();
+                if (gathered >= quantity) {
+                    break;
+                }
+            }
+            if (page.getStates().size() < GOLD_BLOCK_SELECTION_PAGE_SIZE) {
+                break;
+            }
+            pageNumber++;
+        }
+        return selected;
+    }
+
+    private static long sum(List<StateAndRef<GoldBlockState>> states) {
+        long total = 0;
+        for (StateAndRef<GoldBlockState> stateAndRef : states) {
+            total += stateAndRef.getState().getData().getQuantity();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,79 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.service.GoldBlockFlowMetrics;
+import net.corda.core.flows.FlowException;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.utilities.ProgressTracker;
+
+/**
+ * Base class for GoldBlock flows that reports to {@link GoldBlockFlowMetrics}. Subclasses implement {@link #run()}
+ * and move through their progress steps with {@link #stepTo}, which also advances the progress tracker. The time
+ * between two steps is recorded against the earlier one, and the flow's outcome and total duration are recorded when
+ * {@link #run()} returns or throws.
+ * <p>
+ * Times are taken with {@link System#nanoTime()}; a flow restored from a checkpoint after a node restart records
+ * its outcome but not the duration of the flow or of the step it was in.
+ */
+public abstract class InstrumentedFlowLogic<T> extends FlowLogic<T> {
+
+    // Identifies this JVM, so that nanoTime readings taken before a restart are not compared with ones taken after.
+    private static final long JVM_ID = System.nanoTime() ^ System.identityHashCode(InstrumentedFlowLogic.class);
+
+    private String currentStep;
+    private long stepStartedNanos;
+    private long flowStartedNanos;
+    private long startedInJvm;
+
+    @Suspendable
+    @Override
+    public final T call() throws FlowException {
+        flowStartedNanos = System.nanoTime();
+        startedInJvm = JVM_ID;
+        final T result;
+        try {
+            result = run();
+        } catch (FlowException | RuntimeException e) {
+            finish(false);
+            throw e;
+        }
+        finish(true);
+        return result;
+    }
+
+    /**
+     * The body of the flow.
+     */
+    @Suspendable
+    protected abstract T run() throws FlowException;
+
+    /**
+     * Closes the timing of the current step and moves on to {@code step}.
+     */
+    protected void stepTo(ProgressTracker.Step step) {
+        closeStep();
+        final ProgressTracker progressTracker = getProgressTracker();
+        if (progressTracker != null) {
+            progressTracker.setCurrentStep(step);
+        }
+        currentStep = step.getLabel();
+        stepStartedNanos = System.nanoTime();
+    }
+
+    private void closeStep() {
+        if (currentStep != null && startedInJvm == JVM_ID) {
+            metrics().recordStep(getClass().getSimpleName(), currentStep, System.nanoTime() - stepStartedNanos);
+        }
+        currentStep = null;
+    }
+
+    private void finish(boolean succeeded) {
+        closeStep();
+        final long elapsed = startedInJvm == JVM_ID ? System.nanoTime() - flowStartedNanos : -1;
+        metrics().recordFlow(getClass().getSimpleName(), succeeded, elapsed);
+    }
+
+    private GoldBlockFlowMetrics metrics() {
+        return getServiceHub().cordaService(GoldBlockFlowMetrics.class);
+    }
+}
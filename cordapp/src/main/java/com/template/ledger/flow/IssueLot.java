@@ -0,0 +1,22 @@
+package com.template.ledger.flow;
+
+import net.corda.core.identity.Party;
+import net.corda.core.serialization.CordaSerializable;
+
+/**
+ * A single lot of goldblocks to be issued to an owner as part of a {@link BatchIssueFlow}.
+ */
+@CordaSerializable
+public class IssueLot {
+    private final Party owner;
+    private final long amount;
+
+    public IssueLot(Party owner, long amount) {
+        this.owner = owner;
+        this.amount = amount;
+    }
+
+    public Party getOwner() { return owner; }
+
+    public long getAmount() { return amount; }
+}
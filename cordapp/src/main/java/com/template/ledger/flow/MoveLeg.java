@@ -0,0 +1,22 @@
+package com.template.ledger.flow;
+
+import net.corda.core.identity.Party;
+import net.corda.core.serialization.CordaSerializable;
+
+/**
+ * A single leg of a {@link DistributionFlow}: a quantity of goldblocks to be paid to one recipient.
+ */
+@CordaSerializable
+public class MoveLeg {
+    private final Party recipient;
+    private final long quantity;
+
+    public MoveLeg(Party recipient, long quantity) {
+        this.recipient = recipient;
+        this.quantity = quantity;
+    }
+
+    public Party getRecipient() { return recipient; }
+
+    public long getQuantity() { return quantity; }
+}
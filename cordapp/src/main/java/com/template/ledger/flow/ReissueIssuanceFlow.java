@@ -0,0 +1,67 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.service.GoldBlockReissueStore;
+import com.template.ledger.service.SignatureVerificationCache;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.flows.FinalityFlow;
+import net.corda.core.flows.FlowException;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+
+import java.security.SignatureException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.template.ledger.contract.GoldBlockContract.GOLD_BLOCK_CONTRACT_ID;
+
+/**
+ * Issuer side of a re-issuance: issues the goldblocks retired by a notarised exit back to their owner at chain depth
+ * zero, with the same quantity per issuer reference, and marks the exit as re-issued in the
+ * {@link GoldBlockReissueStore}. Used by {@link ReissueResponderFlow} and {@link ReissueRecoveryResponderFlow}.
+ * <p>
+ * The re-issuance has no inputs and no time window, so {@link FinalityFlow} records it without a notary. The exit is
+ * marked in the same database transaction that records the re-issuance, so an exit is never re-issued twice and never
+ * marked without its re-issuance.
+ */
+public class ReissueIssuanceFlow extends FlowLogic<SignedTransaction> {
+
+    private final SignedTransaction exitTx;
+    private final Party owner;
+
+    public ReissueIssuanceFlow(SignedTransaction exitTx, Party owner) {
+        this.exitTx = exitTx;
+        this.owner = owner;
+    }
+
+    @Suspendable
+    @Override
+    public SignedTransaction call() throws FlowException {
+        final Map<GoldBlockIssuer, Long> exited = new LinkedHashMap<>();
+        for (GoldBlockState state : exitTx.getTx().toLedgerTransaction(getServiceHub()).inputsOfType(GoldBlockState.class)) {
+            exited.merge(state.getIssuer(), state.getQuantity(), Math::addExact);
+        }
+
+        final TransactionBuilder txBuilder = new TransactionBuilder(getServiceHub().cordaService(GoldBlockIdentityCache.class).notary());
+        exited.forEach((issuer, quantity) -> txBuilder.addOutputState(new GoldBlockState(quantity, issuer, owner), GOLD_BLOCK_CONTRACT_ID));
+        txBuilder.addCommand(new GoldBlockContract.Commands.Issue(), ImmutableList.of(getOurIdentity().getOwningKey()));
+        final SignedTransaction signedTx = getServiceHub().signInitialTransaction(txBuilder);
+        try {
+            // Without inputs or a time window the notary is not a signer, so the transaction is already complete.
+            getServiceHub().cordaService(SignatureVerificationCache.class).verify(signedTx, getServiceHub(), true);
+        } catch (SignatureException e) {
+            throw new FlowException("Re-issuance transaction signatures are invalid.", e);
+        }
+
+        if (!getServiceHub().cordaService(GoldBlockReissueStore.class).markIssued(exitTx.getId(), signedTx.getId())) {
+            throw new FlowException("The goldblocks exited in " + exitTx.getId() + " have already been re-issued.");
+        }
+        return subFlow(new FinalityFlow(signedTx));
+    }
+}
@@ -0,0 +1,79 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+
+/**
+ * Flow for an owner to claim the goldblocks of a notarised re-issuance exit that {@code issuer} did not issue back,
+ * named by a {@link ReissueRequestFlow.ReissueIncompleteException}. The issuer's
+ * {@link ReissueRecoveryResponderFlow} issues them, or returns the re-issuance if it already exists, so the flow can be
+ * run again safely. Returns the re-issuance transaction.
+ */
+@InitiatingFlow
+@StartableByRPC
+public class ReissueRecoveryFlow extends InstrumentedFlowLogic<SignedTransaction> {
+
+    private static final Step LOADING_EXIT = new Step("Loading the exit transaction.");
+    private static final Step SENDING_EXIT = new Step("Sending the exit transaction to the issuer.");
+    private static final Step RECEIVING_REISSUE = new Step("Receiving the re-issuance transaction.");
+    private static final Step RECORDING = new Step("Recording the re-issuance transaction.");
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            LOADING_EXIT,
+            SENDING_EXIT,
+            RECEIVING_REISSUE,
+            RECORDING
+    );
+    private final SecureHash exitTxId;
+    private Party issuer;
+
+    public ReissueRecoveryFlow(Party issuer, SecureHash exitTxId) {
+        this.issuer = issuer;
+        this.exitTxId = exitTxId;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected SignedTransaction run() throws FlowException {
+        //STAGE-1 - LOADING_EXIT
+        stepTo(LOADING_EXIT);
+        issuer = getServiceHub().cordaService(GoldBlockIdentityCache.class).wellKnownParty(issuer.getName());
+        final SignedTransaction exitTx = getServiceHub().getValidatedTransactions().getTransaction(exitTxId);
+        if (exitTx == null) {
+            throw new FlowException("No notarised exit " + exitTxId + " is recorded on this node.");
+        }
+        long total = 0;
+        for (GoldBlockState state : exitTx.getTx().toLedgerTransaction(getServiceHub()).inputsOfType(GoldBlockState.class)) {
+            total = Math.addExact(total, state.getQuantity());
+        }
+
+        //STAGE-2 - SENDING_EXIT
+        stepTo(SENDING_EXIT);
+        final FlowSession issuerSession = initiateFlow(issuer);
+        subFlow(new SendTransactionFlow(issuerSession, exitTx));
+
+        //STAGE-3 - RECEIVING_REISSUE
+        stepTo(RECEIVING_REISSUE);
+        // Not recorded until it has been checked against the exit.
+        final SignedTransaction reissueTx = subFlow(new ReceiveTransactionFlow(issuerSession, true, StatesToRecord.NONE));
+        ReissueRequestFlow.checkReissue(reissueTx, total, getOurIdentity(), issuer);
+
+        //STAGE-4 - RECORDING
+        stepTo(RECORDING);
+        getServiceHub().recordTransactions(reissueTx);
+        getLogger().info("Recovered the re-issuance {} of exit {} from {}", reissueTx.getId(), exitTxId, issuer);
+        return reissueTx;
+    }
+}
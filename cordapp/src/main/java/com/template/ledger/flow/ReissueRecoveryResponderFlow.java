@@ -0,0 +1,71 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.service.GoldBlockReissueStore;
+import com.template.ledger.service.GoldBlockReissueStore.Reissue;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+
+/**
+ * Issuer side of a {@link ReissueRecoveryFlow}. Only exits recorded in our {@link GoldBlockReissueStore} for the
+ * counterparty are honoured: a pending one is issued back with {@link ReissueIssuanceFlow}, and one already issued
+ * is answered with the existing re-issuance.
+ */
+@InitiatedBy(ReissueRecoveryFlow.class)
+public class ReissueRecoveryResponderFlow extends InstrumentedFlowLogic<SignedTransaction> {
+
+    private static final Step RECEIVING = new Step("Receiving the exit transaction.");
+    private static final Step REISSUING = new Step("Re-issuing the exited goldblocks.");
+    private static final Step SENDING = new Step("Sending the re-issuance transaction.");
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            RECEIVING,
+            REISSUING,
+            SENDING
+    );
+    private final FlowSession counterpartySession;
+
+    public ReissueRecoveryResponderFlow(FlowSession counterpartySession) {
+        this.counterpartySession = counterpartySession;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected SignedTransaction run() throws FlowException {
+        //STAGE-1 - RECEIVING
+        stepTo(RECEIVING);
+        // Requires the notary's signature, so only an exit that has actually consumed the goldblocks is re-issued.
+        final SignedTransaction exitTx = subFlow(new ReceiveTransactionFlow(counterpartySession, true, StatesToRecord.ONLY_RELEVANT));
+        final Party owner = counterpartySession.getCounterparty();
+        final GoldBlockReissueStore store = getServiceHub().cordaService(GoldBlockReissueStore.class);
+        final Reissue reissue = store.find(exitTx.getId());
+        if (reissue == null || !reissue.getOwner().equals(owner.getName())) {
+            throw new FlowException("We did not countersign " + exitTx.getId() + " for re-issuance to " + owner + ".");
+        }
+
+        //STAGE-2 - REISSUING
+        stepTo(REISSUING);
+        final SignedTransaction reissueTx;
+        if (reissue.getStatus() == GoldBlockReissueStore.Status.ISSUED) {
+            reissueTx = getServiceHub().getValidatedTransactions().getTransaction(reissue.getReissueId());
+            if (reissueTx == null) {
+                throw new FlowException("The re-issuance " + reissue.getReissueId() + " is not recorded on this node.");
+            }
+        } else {
+            reissueTx = subFlow(new ReissueIssuanceFlow(exitTx, owner));
+        }
+
+        //STAGE-3 - SENDING
+        stepTo(SENDING);
+        subFlow(new SendTransactionFlow(counterpartySession, reissueTx));
+        return reissueTx;
+    }
+}
@@ -0,0 +1,252 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.schema.GoldBlockQueries;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.service.SignatureVerificationCache;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.StatesNotAvailableException;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.SoftLockingCondition;
+import net.corda.core.node.services.vault.QueryCriteria.SoftLockingType;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.NonEmptySet;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+
+import java.security.GeneralSecurityException;
+import java.security.SignatureException;
+import java.time.Duration;
+import java.util.*;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Flow for an owner to swap goldblocks with a long history for equivalent fresh ones from their issuer, so that the
+ * next recipient resolves a backchain of one transaction instead of every move since the original issuance.
+ * <p>
+ * Our states from {@code issuer} that are at least {@link ReissueResponderFlow#minChainDepth()} moves deep are
+ * retired in an exit transaction signed by us and the issuer. Once the exit is notarised, the issuer's
+ * {@link ReissueResponderFlow} issues the same quantity back to us in a new transaction with no inputs. The snipped
+ * backchain is the point of the swap, so the exit and the re-issuance cannot be one transaction: there is a window in
+ * which the goldblocks are exited but not yet issued back.
+ * <p>
+ * The issuer checks the exit against the same minimum depth, and everything else it requires, before it countersigns,
+ * so a rejected request fails before anything is exited. Once it has countersigned, the issuer records the exit in its
+ * {@link com.template.ledger.service.GoldBlockReissueStore} as pending re-issuance. Both sides are checkpointed, so a
+ * node restart resumes the swap. If the re-issuance still does not complete, for example because the issuer's flow
+ * failed, this flow fails with a {@link ReissueIncompleteException} naming the exit, and {@link ReissueRecoveryFlow}
+ * claims the goldblocks later. An exit is only ever re-issued once. Returns the re-issuance transaction.
+ */
+@InitiatingFlow
+@StartableByRPC
+public class ReissueRequestFlow extends InstrumentedFlowLogic<SignedTransaction> implements GoldBlockConstants {
+
+    /*Write progress tracker*/
+    private static final Step IDENTIFY_OTHER_NODES = new Step("Identifying other nodes on the network.");
+    private static final Step EXTRACTING_VAULT_STATES = new Step("Finding deep goldblock states in the vault.");
+    private static final Step TX_BUILDING = new Step("Building an exit transaction.");
+    private static final Step TX_SIGNING = new Step("Signing an exit transaction.");
+    private static final Step TX_VERIFICATION = new Step("Verifying an exit transaction.");
+    private static final Step SIGS_GATHERING = new Step("Gathering the issuer's signature.");
+    private static final Step VERIFYING_SIGS = new Step("Verifying an exit transaction's signatures.");
+    private static final Step FINALISATION = new Step("Finalising an exit transaction.") {
+        @Override
+        public ProgressTracker childProgressTracker() {
+            return FinalityFlow.tracker();
+        }
+    };
+    private static final Step AWAITING_REISSUE = new Step("Waiting for the issuer to re-issue the goldblocks.");
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            IDENTIFY_OTHER_NODES,
+            EXTRACTING_VAULT_STATES,
+            TX_BUILDING,
+            TX_SIGNING,
+            TX_VERIFICATION,
+            SIGS_GATHERING,
+            VERIFYING_SIGS,
+            FINALISATION,
+            AWAITING_REISSUE
+    );
+    private final int maxStates;
+    private Party issuer;
+    private Party regulator;
+
+    public ReissueRequestFlow(Party issuer) {
+        this(issuer, GOLD_BLOCK_REISSUE_MAX_STATES);
+    }
+
+    public ReissueRequestFlow(Party issuer, int maxStates) {
+        if (maxStates <= 0) {
+            throw new IllegalArgumentException("Require maxStates > 0.");
+        }
+        this.issuer = issuer;
+        this.maxStates = maxStates;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Suspendable
+    @Override
+    protected SignedTransaction run() throws FlowException {
+        //STAGE-1 - IDENTIFY_OTHER_NODES
+        stepTo(IDENTIFY_OTHER_NODES);
+        final GoldBlockIdentityCache identities = getServiceHub().cordaService(GoldBlockIdentityCache.class);
+        regulator = identities.notary();
+        issuer = identities.wellKnownParty(issuer.getName());
+        if (issuer.equals(getOurIdentity())) {
+            throw new FlowException("An issuer's own goldblocks have no backchain to snip.");
+        }
+
+        //STAGE-2 - EXTRACTING_VAULT_STATES
+        stepTo(EXTRACTING_VAULT_STATES);
+        final List<StateAndRef<GoldBlockState>> exited = selectDeepStates();
+        long total = 0;
+        for (StateAndRef<GoldBlockState> stateAndRef : exited) {
+            total = Math.addExact(total, stateAndRef.getState().getData().getQuantity());
+        }
+
+        //STAGE-3 - TX_BUILDING
+        stepTo(TX_BUILDING);
+        final TransactionBuilder txBuilder = new TransactionBuilder(regulator);
+        exited.forEach(txBuilder::addInputState);
+        txBuilder.addCommand(new GoldBlockContract.Commands.Exit(), ImmutableList.of(getOurIdentity().getOwningKey(), issuer.getOwningKey()));
+        txBuilder.setTimeWindow(TimeWindow.fromStartAndDuration(getServiceHub().getClock().instant(), Duration.ofSeconds(30)));
+
+        //STAGE-4 - TX_SIGNING
+        stepTo(TX_SIGNING);
+        final SignedTransaction onceSignedTx = getServiceHub().signInitialTransaction(txBuilder);
+
+        //STAGE-5 - TX_VERIFICATION
+        stepTo(TX_VERIFICATION);
+        try {
+            getServiceHub().cordaService(SignatureVerificationCache.class).verify(onceSignedTx, getServiceHub(), false);
+        } catch (SignatureException e) {
+            throw new FlowException("Exit transaction signatures are invalid.", e);
+        }
+
+        //STAGE-6 - SIGS_GATHERING
+        stepTo(SIGS_GATHERING);
+        final FlowSession issuerSession = initiateFlow(issuer);
+        subFlow(new SendTransactionFlow(issuerSession, onceSignedTx));
+        final TransactionSignature issuerSignature = issuerSession.receive(TransactionSignature.class).unwrap(signature -> {
+            if (!signature.getBy().equals(issuer.getOwningKey())) {
+                throw new FlowException("The issuer signed with a key other than its own.");
+            }
+            return signature;
+        });
+        final SignedTransaction fullySignedTx = onceSignedTx.withAdditionalSignature(issuerSignature);
+
+        //STAGE-7 - VERIFYING_SIGS
+        stepTo(VERIFYING_SIGS);
+        try {
+            // Only the notary's signature may still be missing; FinalityFlow obtains it.
+            getServiceHub().cordaService(SignatureVerificationCache.class).verifySignaturesExcept(fullySignedTx, regulator.getOwningKey());
+        } catch (GeneralSecurityException e) {
+            throw new FlowException("Exit transaction is missing signatures.", e);
+        }
+
+        //STAGE-8 - FINALISATION
+        stepTo(FINALISATION);
+        // The issuer is not a participant of our states, so it is sent the exit explicitly.
+        final SignedTransaction exitTx = subFlow(new FinalityFlow(fullySignedTx, ImmutableSet.of(issuer), FINALISATION.childProgressTracker()));
+        issuerSession.send(exitTx.getId());
+
+        //STAGE-9 - AWAITING_REISSUE
+        stepTo(AWAITING_REISSUE);
+        final SecureHash reissueId;
+        try {
+            reissueId = issuerSession.receive(SecureHash.class).unwrap(id -> id);
+        } catch (FlowException | UnexpectedFlowEndException e) {
+            throw new ReissueIncompleteException(exitTx.getId(), issuer, e);
+        }
+        final SignedTransaction reissueTx = waitForLedgerCommit(reissueId);
+        checkReissue(reissueTx, total, getOurIdentity(), issuer);
+        getLogger().info("Re-issued {} goldblock states from {} as {}", exited.size(), issuer, reissueId);
+        return reissueTx;
+    }
+
+    /**
+     * Queries our unlocked goldblocks from the issuer that are deep enough to be re-issued, on the indexed chain depth
+     * column, and soft-locks them.
+     */
+    @Suspendable
+    private List<StateAndRef<GoldBlockState>> selectDeepStates() throws FlowException {
+        final int minChainDepth = ReissueResponderFlow.minChainDepth();
+        final QueryCriteria criteria = new VaultQueryCriteria(
+                Vault.StateStatus.UNCONSUMED,
+                ImmutableSet.of(GoldBlockState.class),
+                null,
+                null,
+                new SoftLockingCondition(SoftLockingType.UNLOCKED_ONLY, ImmutableList.of())
+        ).and(GoldBlockQueries.ownedBy(getOurIdentity()))
+                .and(GoldBlockQueries.issuedBy(issuer))
+                .and(GoldBlockQueries.chainDepthAtLeast(minChainDepth));
+
+        final List<StateAndRef<GoldBlockState>> selected = getServiceHub().getVaultService().queryBy(GoldBlockState.class,
+                criteria, new PageSpecification(DEFAULT_PAGE_NUM, maxStates)).getStates();
+        if (selected.isEmpty()) {
+            throw new FlowException("No goldblocks from " + issuer + " are " + minChainDepth + " or more transactions deep.");
+        }
+
+        final Set<StateRef> refs = new LinkedHashSet<>();
+        selected.forEach(stateAndRef -> refs.add(stateAndRef.getRef()));
+        try {
+            getServiceHub().getVaultService().softLockReserve(getRunId().getUuid(), NonEmptySet.copyOf(refs));
+        } catch (StatesNotAvailableException e) {
+            throw new FlowException("Some of the goldblocks to re-issue are being spent by another flow.", e);
+        }
+        return selected;
+    }
+
+    /**
+     * Checks that {@code reissueTx} issues exactly {@code exitedTotal} of {@code issuer}'s goldblocks to {@code owner}.
+     */
+    static void checkReissue(SignedTransaction reissueTx, long exitedTotal, Party owner, Party issuer) throws FlowException {
+        if (!reissueTx.getInputs().isEmpty()) {
+            throw new FlowException("The re-issuance consumes states, so it does not start a new chain.");
+        }
+        long reissued = 0;
+        for (GoldBlockState state : reissueTx.getTx().outputsOfType(GoldBlockState.class)) {
+            if (!state.getOwner().equals(owner) || !state.getIssuer().getParty().equals(issuer)) {
+                throw new FlowException("The re-issuance pays goldblocks to someone other than us.");
+            }
+            reissued = Math.addExact(reissued, state.getQuantity());
+        }
+        if (reissued != exitedTotal) {
+            throw new FlowException("The issuer re-issued " + reissued + " goldblocks against an exit of " + exitedTotal + ".");
+        }
+    }
+
+    /**
+     * Thrown once the exit is notarised if the issuer does not re-issue the goldblocks. The goldblocks are claimed
+     * with a {@link ReissueRecoveryFlow} for {@link #getExitId()}.
+     */
+    public static class ReissueIncompleteException extends FlowException {
+        private final SecureHash exitId;
+
+        public ReissueIncompleteException(SecureHash exitId, Party issuer, Throwable cause) {
+            super("Goldblocks exited in " + exitId + " were not re-issued by " + issuer
+                    + "; claim them with ReissueRecoveryFlow for that exit.", cause);
+            this.exitId = exitId;
+        }
+
+        public SecureHash getExitId() { return exitId; }
+    }
+}
@@ -0,0 +1,147 @@
+package com.template.ledger.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.service.GoldBlockReissueStore;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.LedgerTransaction;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+
+import java.security.PublicKey;
+
+/**
+ * Issuer side of a {@link ReissueRequestFlow}. Checks an exit of goldblocks we issued, including that they are at
+ * least {@link #minChainDepth()} moves deep, before countersigning it, so a request we reject exits nothing. The exit
+ * is recorded as pending in the {@link GoldBlockReissueStore} before our signature is sent. Once the exit is notarised,
+ * {@link ReissueIssuanceFlow} issues the same quantities back to the owner at chain depth zero.
+ */
+@InitiatedBy(ReissueRequestFlow.class)
+public class ReissueResponderFlow extends InstrumentedFlowLogic<SignedTransaction> implements GoldBlockConstants {
+
+    private static final Step RECEIVING = new Step("Receiving an exit transaction.");
+    private static final Step CHECKING = new Step("Checking the goldblocks to re-issue.");
+    private static final Step SIGNING = new Step("Countersigning the exit transaction.");
+    private static final Step AWAITING_EXIT = new Step("Waiting for the exit to be notarised.");
+    private static final Step REISSUING = new Step("Re-issuing the exited goldblocks.");
+
+    private final ProgressTracker progressTracker = new ProgressTracker(
+            RECEIVING,
+            CHECKING,
+            SIGNING,
+            AWAITING_EXIT,
+            REISSUING
+    );
+    private final FlowSession counterpartySession;
+
+    public ReissueResponderFlow(FlowSession counterpartySession) {
+        this.counterpartySession = counterpartySession;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    /**
+     * The fewest moves goldblocks must be away from their issuance for us to re-issue them: the
+     * {@code goldblock.reissue.minChainDepth} system property, or
+     * {@link GoldBlockConstants#GOLD_BLOCK_REISSUE_MIN_CHAIN_DEPTH}. Requesters select their states with the same rule.
+     */
+    public static int minChainDepth() {
+        return Math.max(1, Integer.getInteger(GOLD_BLOCK_REISSUE_MIN_CHAIN_DEPTH_PROPERTY, GOLD_BLOCK_REISSUE_MIN_CHAIN_DEPTH));
+    }
+
+    @Suspendable
+    @Override
+    protected SignedTransaction run() throws FlowException {
+        //STAGE-1 - RECEIVING
+        stepTo(RECEIVING);
+        // Resolves and verifies the backchain of the exited states and checks the counterparty's signature.
+        final SignedTransaction stx = subFlow(new ReceiveTransactionFlow(counterpartySession, false));
+
+        //STAGE-2 - CHECKING
+        stepTo(CHECKING);
+        checkExit(stx);
+
+        //STAGE-3 - SIGNING
+        stepTo(SIGNING);
+        // Committed with the checkpoint taken when the signature is sent, so no countersigned exit goes unrecorded.
+        final Party owner = counterpartySession.getCounterparty();
+        getServiceHub().cordaService(GoldBlockReissueStore.class).recordPending(stx.getId(), owner.getName());
+        final TransactionSignature signature = getServiceHub().createSignature(stx, getOurIdentity().getOwningKey());
+        counterpartySession.send(signature);
+
+        //STAGE-4 - AWAITING_EXIT
+        stepTo(AWAITING_EXIT);
+        final SecureHash exitId = counterpartySession.receive(SecureHash.class).unwrap(id -> {
+            if (!id.equals(stx.getId())) {
+                throw new FlowException("The notarised exit is not the transaction we countersigned.");
+            }
+            return id;
+        });
+        // Returns once FinalityFlow has delivered the notarised exit, so nothing is re-issued against an unspent input.
+        final SignedTransaction exitTx = waitForLedgerCommit(exitId);
+
+        //STAGE-5 - REISSUING
+        stepTo(REISSUING);
+        final SignedTransaction reissueTx = reissue(exitTx, owner);
+        counterpartySession.send(reissueTx.getId());
+        return reissueTx;
+    }
+
+    /**
+     * Issues the goldblocks of the notarised {@code exitTx} back to {@code owner}.
+     */
+    @Suspendable
+    protected SignedTransaction reissue(SignedTransaction exitTx, Party owner) throws FlowException {
+        return subFlow(new ReissueIssuanceFlow(exitTx, owner));
+    }
+
+    /**
+     * Checks that {@code stx} only exits goldblocks we issued to the counterparty that are deep enough for our
+     * re-issuance policy.
+     */
+    private void checkExit(SignedTransaction stx) throws FlowException {
+        final LedgerTransaction ltx = stx.getTx().toLedgerTransaction(getServiceHub());
+        final PublicKey ourKey = getOurIdentity().getOwningKey();
+        final Party owner = counterpartySession.getCounterparty();
+
+        if (ltx.getCommands().size() != 1 || !(ltx.getCommands().get(0).getValue() instanceof GoldBlockContract.Commands.Exit)) {
+            throw new FlowException("A re-issuance request must carry a single goldblock exit command.");
+        }
+        if (!ltx.getCommands().get(0).getSigners().contains(ourKey)) {
+            throw new FlowException("The exit does not ask for our signature.");
+        }
+        if (!ltx.getOutputs().isEmpty()) {
+            throw new FlowException("The exit must not create any states.");
+        }
+
+        final int minChainDepth = minChainDepth();
+        for (StateAndRef<ContractState> input : ltx.getInputs()) {
+            if (!(input.getState().getData() instanceof GoldBlockState)) {
+                throw new FlowException("The exit may only consume goldblocks.");
+            }
+            final GoldBlockState state = (GoldBlockState) input.getState().getData();
+            if (!state.getIssuer().getParty().getOwningKey().equals(ourKey)) {
+                throw new FlowException("The exit consumes goldblocks issued by " + state.getIssuer().getParty() + ".");
+            }
+            if (!state.getOwner().getOwningKey().equals(owner.getOwningKey())) {
+                throw new FlowException("The exit consumes goldblocks the counterparty does not own.");
+            }
+            if (state.getChainDepth() < minChainDepth) {
+                throw new FlowException("Goldblocks are only re-issued at a chain depth of " + minChainDepth + " or more.");
+            }
+        }
+        if (ltx.getInputs().isEmpty()) {
+            throw new FlowException("The exit consumes no goldblocks.");
+        }
+    }
+}
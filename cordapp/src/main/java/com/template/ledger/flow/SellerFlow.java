@@ -1,25 +1,22 @@
 package com.template.ledger.flow;
 
+import co.paralleluniverse.fibers.Suspendable;
 import com.google.common.collect.ImmutableList;
 import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.service.GoldBlockIdentityCache;
+import com.template.ledger.service.SignatureVerificationCache;
+import com.template.ledger.state.GoldBlockState;
 import net.corda.core.contracts.*;
 import net.corda.core.crypto.SecureHash;
 import net.corda.core.crypto.TransactionSignature;
 import net.corda.core.flows.*;
-import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.identity.PartyAndCertificate;
-import net.corda.core.node.services.Vault;
-import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
-import net.corda.core.transactions.LedgerTransaction;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.transactions.TransactionBuilder;
-import net.corda.core.utilities.OpaqueBytes;
 import net.corda.core.utilities.ProgressTracker;
 import net.corda.core.utilities.ProgressTracker.Step;
-import net.corda.core.utilities.UntrustworthyData;
-import net.corda.finance.contracts.Commodity;
-import net.corda.finance.contracts.asset.CommodityContract;
 
 import java.security.GeneralSecurityException;
 import java.security.PublicKey;
@@ -29,28 +26,40 @@ import java.util.Collections;
 import java.util.Currency;
 import java.util.List;
 
-import static net.corda.core.crypto.CryptoUtils.generateKeyPair;
-
+/**
+ * Flow to move goldblocks to a buyer. The trade takes a single round trip with the buyer before notarisation: the
+ * partially signed transaction is sent with {@link SendTransactionFlow}, the buyer resolves and checks it, and its
+ * signature comes straight back on the same session.
+ * <p>
+ * Messages exchanged with the buyer before {@link FinalityFlow}, where R is the number of backchain fetches:
+ * <pre>
+ *                                    before            after
+ *   handshake with the buyer         2 (1 round trip)  -
+ *   handshake with the notary        2 (1 round trip)  -
+ *   SendTransactionFlow              2 + 2R            2 + 2R
+ *   CollectSignaturesFlow            4 (2 round trips) -
+ *   signature reply                  -                 1
+ *   total                            10 + 2R           3 + 2R
+ * </pre>
+ * That is four round trips plus resolution down to one plus resolution. The "after" column counts the messages the
+ * flows exchange, not the session set-up and tear-down the platform adds; {@code FlowTests} checks it on a mock network
+ * by counting the buyer's sends and receives.
+ * <p>
+ * The move can carry attachments already stored on this node, such as the certificates of the goldblocks moved; the
+ * buyer fetches them from us while resolving the transaction.
+ */
 @InitiatingFlow
 @StartableByRPC
-public class SellerFlow extends FlowLogic<SignedTransaction> implements GoldBlockConstants {
+public class SellerFlow extends InstrumentedFlowLogic<SignedTransaction> implements GoldBlockConstants {
 
     /*Write progress tracker*/
     private static final Step IDENTIFY_OTHER_NODES = new Step("Identifying other nodes on the network.");
-    private static final Step SENDING_AND_RECEIVING_DATA = new Step("Sending data between parties.");
     private static final Step EXTRACTING_VAULT_STATES = new Step("Extracting states from the vault.");
     private static final Step OTHER_TX_COMPONENTS = new Step("Gathering a transaction's other components.");
     private static final Step TX_BUILDING = new Step("Building a transaction.");
     private static final Step TX_VERIFICATION = new Step("Verifying a transaction.");
     private static final Step TX_SIGNING = new Step("Signing a transaction.");
-    private static final Step SIGS_GATHERING = new Step("Gathering a transaction's signatures.") {
-        // Wiring up a child progress tracker allows us to see the
-        // subflow's progress steps in our flow's progress tracker.
-        @Override
-        public ProgressTracker childProgressTracker() {
-            return CollectSignaturesFlow.tracker();
-        }
-    };
+    private static final Step SIGS_GATHERING = new Step("Gathering the buyer's signature.");
     private static final Step VERIFYING_SIGS = new Step("Verifying a transaction's signatures.");
     private static final Step FINALISATION = new Step("Finalising a transaction.") {
         @Override
@@ -59,7 +68,7 @@ public class SellerFlow extends FlowLogic<SignedTransaction> implements GoldBloc
         }
     };
     private final ProgressTracker progressTracker = new ProgressTracker(
-            SENDING_AND_RECEIVING_DATA,
+            IDENTIFY_OTHER_NODES,
             EXTRACTING_VAULT_STATES,
             OTHER_TX_COMPONENTS,
             TX_BUILDING,
@@ -71,125 +80,96 @@ public class SellerFlow extends FlowLogic<SignedTransaction> implements GoldBloc
     );
     private Party otherParty;
     private Party regulator;
-    private Commodity amount;
-    private CordaX500Name notaryName;
+    private long quantity;
+    private List<SecureHash> attachmentIds;
     private FlowSession counterpartySession;
-    private StateAndRef inputStateAndRef;
-    private StateAndContract outputStateAndContract;
-    private Command<CommodityContract.Commands.Move> moveAssetCommand;
+    private List<StateAndRef<GoldBlockState>> inputStates;
+    private List<GoldBlockState> outputStates;
+    private Command<GoldBlockContract.Commands.Move> moveAssetCommand;
     private TimeWindow txnTimeWindow;
     private TransactionBuilder txBuilder;
     private SignedTransaction onceSignedTx;
     private SignedTransaction fullySignedTx;
     private SignedTransaction notarisedTx;
 
-    public SellerFlow(Party otherParty, Commodity amount) {
+    public SellerFlow(Party otherParty, long quantity) {
+        this(otherParty, quantity, Collections.emptyList());
+    }
+
+    public SellerFlow(Party otherParty, long quantity, List<SecureHash> attachmentIds) {
         this.otherParty = otherParty;
-        this.amount = amount;
+        this.quantity = quantity;
+        this.attachmentIds = attachmentIds;
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
     }
 
+    @Suspendable
     @Override
-    public SignedTransaction call() throws FlowException {
-        PublicKey dummyPubKey = generateKeyPair().getPublic();
+    protected SignedTransaction run() throws FlowException {
 
         //STAGE-1 - IDENTIFY_OTHER_NODES
         identifyOtherNodes();
 
-        //STAGE-2 - SENDING_AND_RECEIVING_DATA
-        sendAndRecieveData();
-
-        //STAGE-3 - EXTRACTING_VAULT_STATES
+        //STAGE-2 - EXTRACTING_VAULT_STATES
         extractVaultStates();
 
-        //STAGE-4 - OTHER_TX_COMPONENTS
+        //STAGE-3 - OTHER_TX_COMPONENTS
         generateOtherTxnComponents();
 
-        //STAGE-5 -  TX_BUILDING
+        //STAGE-4 -  TX_BUILDING
         buildTransaction();
 
-        //STAGE-6 - TX_SIGNING
+        //STAGE-5 - TX_SIGNING
         signTransaction();
 
-        try {
-
-            //STAGE-7 - TX_INITIATION
-            verifyTransaction();
+        //STAGE-6 - TX_VERIFICATION
+        verifyTransaction();
 
-            //STAGE-8 - SIGS_GATHERING
-            gatherSignatures();
+        //STAGE-7 - SIGS_GATHERING
+        gatherSignatures();
 
-            //STAGE-9 - VERIFYING_SIGS
-            verfiySignatures();
+        //STAGE-8 - VERIFYING_SIGS
+        verfiySignatures();
 
-        } catch (GeneralSecurityException e) {
-            e.printStackTrace();
-        }
-
-        //STAGE-10 - FINALISATION
+        //STAGE-9 - FINALISATION
         finalisingTransaction();
 
-        return null;
-    }
-
-    private void identifyOtherNodes(){
-
-        progressTracker.setCurrentStep(IDENTIFY_OTHER_NODES);
-
-        //Retrieve notary from network map
-        notaryName = new CordaX500Name(GOLD_BLOCK_NOTARY_SERVICE, GOLD_BLOCK_NOTARY_CITY, GOLD_BLOCK_NOTARY_COUNTRY);
-        regulator = getServiceHub().getNetworkMapCache().getNotary(notaryName);
-
-        //Retrieve counter party
-        CordaX500Name counterPartyName = new CordaX500Name("SPN_GOLD", "MUMBAI", "INDIA");
-        Party namedCounterparty = getServiceHub().getIdentityService().wellKnownPartyFromX500Name(counterPartyName);
-
+        return notarisedTx;
     }
 
-    private void sendAndRecieveData() throws FlowException {
-        progressTracker.setCurrentStep(SENDING_AND_RECEIVING_DATA);
+    private void identifyOtherNodes() throws FlowException {
 
-        //Initiating a flow session with counterparty. This session will be used to send and receive messages from counterparty.
-        counterpartySession = initiateFlow(otherParty);
+        stepTo(IDENTIFY_OTHER_NODES);
 
-        UntrustworthyData<Boolean> packet2 = counterpartySession.sendAndReceive(Boolean.class, "You can send and receive any class!");
-        Boolean bool = packet2.unwrap(data -> {
-            // Perform checking on the object received.
-            // T O D O: Check the received object.
-            // Return the object.
-            return data;
-        });
+        //Retrieve notary and counter party from the node's identity cache
+        GoldBlockIdentityCache identities = getServiceHub().cordaService(GoldBlockIdentityCache.class);
+        regulator = identities.notary();
+        otherParty = identities.wellKnownParty(otherParty.getName());
 
-        FlowSession regulatorSession = initiateFlow(regulator);
-        UntrustworthyData<Boolean> packet3 = regulatorSession.sendAndReceive(Boolean.class, "You can send and receive any class!");
-        Boolean bool2 = packet2.unwrap(data -> {
-            // Perform checking on the object received.
-            // T O D O: Check the received object.
-            // Return the object.
-            return data;
-        });
     }
 
-    private void extractVaultStates() throws TransactionResolutionException {
-        progressTracker.setCurrentStep(EXTRACTING_VAULT_STATES);
+    @Suspendable
+    private void extractVaultStates() throws FlowException {
+        stepTo(EXTRACTING_VAULT_STATES);
 
-        VaultQueryCriteria criteria = new VaultQueryCriteria(Vault.StateStatus.UNCONSUMED);
-        Vault.Page<CommodityContract.State> results = getServiceHub().getVaultService().queryBy(CommodityContract.State.class, criteria);
-        List<StateAndRef<CommodityContract.State>> dummyStates = results.getStates();
-        StateRef inputStateRef = new StateRef(SecureHash.sha256("DummyTransactionHash"), 0);
-        inputStateAndRef = getServiceHub().toStateAndRef(inputStateRef);
+        // Pick just enough of our goldblocks to cover the order and soft-lock them against concurrent sellers.
+        GoldBlockSelection selection = new GoldBlockSelection(getServiceHub(), getRunId().getUuid());
+        inputStates = selection.select(getOurIdentity(), quantity);
     }
 
     private void generateOtherTxnComponents(){
-        progressTracker.setCurrentStep(OTHER_TX_COMPONENTS);
-        final OpaqueBytes ref = OpaqueBytes.of((byte) 0x01);
-        PartyAndReference partyAndReference = new PartyAndReference(otherParty, ref);
+        stepTo(OTHER_TX_COMPONENTS);
 
-        CommodityContract.State outputState = new CommodityContract.State(partyAndReference, new Amount<Commodity>(100, amount.Companion.getInstance(GOLD_BLOCK_UNIQUE_CODE)), getServiceHub().getMyInfo().getLegalIdentities().get(0));
-        outputStateAndContract = new StateAndContract(outputState, CommodityContract.Companion.toString());
+        // The buyer gets the ordered quantity and any surplus from the selected inputs comes back to us as change.
+        outputStates = GoldBlockSelection.spend(inputStates, quantity, otherParty, getOurIdentity());
 
         /*To be valid, the transaction requires a signature
          matching every public key in all of the transaction's commands.*/
-        CommodityContract.Commands.Move commandData = new CommodityContract.Commands.Move();
+        GoldBlockContract.Commands.Move commandData = new GoldBlockContract.Commands.Move();
         PublicKey ourPubKey = getServiceHub().getMyInfo().getLegalIdentitiesAndCerts().get(0).getOwningKey();
         PublicKey counterpartyPubKey = otherParty.getOwningKey();
         List<PublicKey> requiredSigners = ImmutableList.of(ourPubKey, counterpartyPubKey);
@@ -202,81 +182,78 @@ public class SellerFlow extends FlowLogic<SignedTransaction> implements GoldBloc
     }
 
     private void buildTransaction() throws TransactionResolutionException, TransactionVerificationException, AttachmentResolutionException {
-        progressTracker.setCurrentStep(TX_BUILDING);
+        stepTo(TX_BUILDING);
 
         // If transaction has input states or a time-window, instantiate it with a notary.
         txBuilder = new TransactionBuilder(regulator);
 
-        // Add items to the transaction builder
-        txBuilder.withItems(
-                // Inputs, as StateAndRef that reference to the outputs of previous transactions
-                inputStateAndRef,
-                // Outputs, as StateAndContract
-                outputStateAndContract,
-                // Command
-                moveAssetCommand,
-                // Attachments, as SecureHash
-                null,
-                // A txn time-window, as TimeWindow
-                txnTimeWindow
-        );
+        // Inputs, as StateAndRef that reference to the outputs of previous transactions
+        inputStates.forEach(txBuilder::addInputState);
+        // Outputs, with the contract that governs them
+        outputStates.forEach(outputState -> txBuilder.addOutputState(outputState, GoldBlockContract.GOLD_BLOCK_CONTRACT_ID));
+        // Command
+        txBuilder.addCommand(moveAssetCommand);
+        // A txn time-window, as TimeWindow
+        txBuilder.setTimeWindow(txnTimeWindow);
+        // Certificates, by attachment id
+        attachmentIds.forEach(txBuilder::addAttachment);
 
     }
 
     private void signTransaction(){
-        progressTracker.setCurrentStep(TX_SIGNING);
+        stepTo(TX_SIGNING);
 
         // Finalise the transaction by signing it & converting it into a SignedTransaction
         onceSignedTx = getServiceHub().signInitialTransaction(txBuilder);
     }
 
-    private void verifyTransaction() throws FlowException, SignatureException {
-        progressTracker.setCurrentStep(TX_VERIFICATION);
-
-         /*Verifying a transaction will also verify every transaction in the transaction's dependency chain, which will require
-         transaction data access on counterparty's node. The ``SendTransactionFlow`` can be used to automate the sending and
-         data vending process. The ``SendTransactionFlow`` will listen for data request until the transaction is resolved and verified
-         on the other side*/
-        subFlow(new SendTransactionFlow(counterpartySession, onceSignedTx));
-
-        onceSignedTx.verify(getServiceHub());
-
-        /* To perform additional verification convert ``SignedTransaction`` into a ``LedgerTransaction``. This will use our ServiceHub
-         to resolve the transaction's inputs and attachments into actual objects, rather than just references. */
-//        LedgerTransaction ledgerTx = onceSignedTx.toLedgerTransaction(getServiceHub());
-//
-//        CommodityContract.State outputState = ledgerTx.outputsOfType(CommodityContract.State.class).get(0);
-//        if (!outputState.getAmount().equals("new data")) {
-//            // ``FlowException`` is a special exception type. It will be
-//            // propagated back to any counterparty flows waiting for a
-//            // message from this flow, notifying them that the flow has
-//            // failed.
-//            throw new FlowException("We expected different data.");
-//        }
+    private void verifyTransaction() throws FlowException {
+        stepTo(TX_VERIFICATION);
 
+        // Check the contracts before involving the buyer; only the buyer's signature is still missing.
+        try {
+            getServiceHub().cordaService(SignatureVerificationCache.class).verify(onceSignedTx, getServiceHub(), false);
+        } catch (SignatureException e) {
+            throw new FlowException("Transaction signatures are invalid.", e);
+        }
     }
 
+    @Suspendable
     private void gatherSignatures() throws FlowException {
-        progressTracker.setCurrentStep(SIGS_GATHERING);
-         /*The list of parties who need to sign a transaction is dictated by the transaction's commands. Once we've signed a transaction
-         ourselves, we can automatically gather the signatures of the other required signers using ``CollectSignaturesFlow``.
-         The responder flow will need to call ``SignTransactionFlow``*/
-        fullySignedTx = subFlow(new CollectSignaturesFlow(onceSignedTx, Collections.emptySet(), SIGS_GATHERING.childProgressTracker()));
+        stepTo(SIGS_GATHERING);
 
+        /*``SendTransactionFlow`` carries the proposal and serves the buyer's backchain requests until it has resolved and
+         verified the transaction. ``BuyerFlow`` then answers on the same session with its signature, so no separate
+         handshake or ``CollectSignaturesFlow`` round trip is needed.*/
+        counterpartySession = initiateFlow(otherParty);
+        subFlow(new SendTransactionFlow(counterpartySession, onceSignedTx));
+
+        TransactionSignature buyerSignature = counterpartySession.receive(TransactionSignature.class).unwrap(signature -> {
+            if (!signature.getBy().equals(otherParty.getOwningKey())) {
+                throw new FlowException(otherParty + " signed with a key other than its own.");
+            }
+            return signature;
+        });
+        fullySignedTx = onceSignedTx.withAdditionalSignature(buyerSignature);
     }
 
-    private void verfiySignatures() throws SignatureException {
-        progressTracker.setCurrentStep(VERIFYING_SIGS);
-        // Verify that a transaction has all the required signatures, and that they're all valid.
-        fullySignedTx.verifyRequiredSignatures();
+    private void verfiySignatures() throws FlowException {
+        stepTo(VERIFYING_SIGS);
+        // Verify that a transaction has all the required signatures except the notary's, and that they're all valid.
+        try {
+            // Only the buyer's signature is new here; ours was checked, and cached, at TX_VERIFICATION.
+            getServiceHub().cordaService(SignatureVerificationCache.class).verifySignaturesExcept(fullySignedTx, regulator.getOwningKey());
+        } catch (GeneralSecurityException e) {
+            throw new FlowException("Transaction signatures from " + otherParty + " are invalid.", e);
+        }
     }
 
+    @Suspendable
     private void finalisingTransaction() throws FlowException {
-        progressTracker.setCurrentStep(FINALISATION);
+        stepTo(FINALISATION);
 
         // Notarise the transaction and get it recorded in the vault of the participants of all the transaction's states.
         notarisedTx = subFlow(new FinalityFlow(fullySignedTx, FINALISATION.childProgressTracker()));
-
     }
 
 }
@@ -0,0 +1,7 @@
+package com.template.ledger.schema;
+
+/**
+ * The family of schemas for the re-issuances an issuer has agreed to.
+ */
+public class GoldBlockReissueSchema {
+}
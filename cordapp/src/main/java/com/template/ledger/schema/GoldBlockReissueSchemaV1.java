@@ -0,0 +1,51 @@
+package com.template.ledger.schema;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.schemas.MappedSchema;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * First version of the re-issuance schema: one row per exit an issuer has countersigned for re-issuance, keyed by the
+ * exit's transaction id, recording whether the goldblocks have been issued back yet and in which transaction.
+ */
+public class GoldBlockReissueSchemaV1 extends MappedSchema {
+    public GoldBlockReissueSchemaV1() {
+        super(GoldBlockReissueSchema.class, 1, ImmutableList.of(PersistentReissue.class));
+    }
+
+    @Entity
+    @Table(name = "gold_block_reissues")
+    public static class PersistentReissue {
+        @Id @Column(name = "exit_transaction_id", length = 64) private final String exitTransactionId;
+        @Column(name = "owner_name", nullable = false) private final String ownerName;
+        @Column(name = "status", length = 16, nullable = false) private final String status;
+        @Column(name = "reissue_transaction_id", length = 64) private final String reissueTransactionId;
+
+        public PersistentReissue(String exitTransactionId, String ownerName, String status, String reissueTransactionId) {
+            this.exitTransactionId = exitTransactionId;
+            this.ownerName = ownerName;
+            this.status = status;
+            this.reissueTransactionId = reissueTransactionId;
+        }
+
+        // Default constructor required by hibernate.
+        public PersistentReissue() {
+            this.exitTransactionId = null;
+            this.ownerName = null;
+            this.status = null;
+            this.reissueTransactionId = null;
+        }
+
+        public String getExitTransactionId() { return exitTransactionId; }
+
+        public String getOwnerName() { return ownerName; }
+
+        public String getStatus() { return status; }
+
+        public String getReissueTransactionId() { return reissueTransactionId; }
+    }
+}
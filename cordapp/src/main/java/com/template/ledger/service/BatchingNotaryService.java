@@ -0,0 +1,98 @@
+package com.template.ledger.service;
+
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.flow.BatchingNotaryFlow;
+import net.corda.core.crypto.Crypto;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.crypto.SignableData;
+import net.corda.core.crypto.SignatureMetadata;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.flows.FlowSession;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.ServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.TimeWindowChecker;
+import net.corda.core.node.services.TrustedAuthorityNotaryService;
+import net.corda.core.node.services.UniquenessProvider;
+
+import java.security.PublicKey;
+
+/**
+ * Experimental, opt-in validating notary that commits the inputs of concurrent notarisation requests in batches and
+ * answers the requests of a batch with one signature over the Merkle root of their transaction ids, instead of a
+ * database transaction and a signature per request.
+ * <p>
+ * It is not the GoldBlock network's notary and must not be deployed to production. On the open-source Corda 3.1 node
+ * every flow runs on one thread, which waits for each commit, so no batch ever holds more than one request: the
+ * service cannot raise the notary's throughput there, costs an extra round trip to its store per notarisation and
+ * keeps a second record of spent states outside the node's database (see {@link BatchingUniquenessProvider}). It is
+ * only worth trying on a node with a multi-threaded flow executor, such as Corda Enterprise.
+ * <p>
+ * Only started on a notary node whose configuration says {@code notary { validating = true, custom = true }}, which
+ * {@code ./gradlew deployNodes -Pnotary=batching} writes and a plain {@code deployNodes} never does. The batch window,
+ * batch size and store are read from the notary's system properties named in {@link GoldBlockConstants}.
+ */
+@CordaService
+public class BatchingNotaryService extends TrustedAuthorityNotaryService implements GoldBlockConstants {
+
+    private final AppServiceHub serviceHub;
+    private final PublicKey notaryIdentityKey;
+    private final TimeWindowChecker timeWindowChecker;
+    private final BatchingUniquenessProvider uniquenessProvider;
+
+    public BatchingNotaryService(AppServiceHub serviceHub, PublicKey notaryIdentityKey) {
+        this.serviceHub = serviceHub;
+        this.notaryIdentityKey = notaryIdentityKey;
+        this.timeWindowChecker = new TimeWindowChecker(serviceHub.getClock());
+        this.uniquenessProvider = new BatchingUniquenessProvider(
+                System.getProperty(GOLD_BLOCK_NOTARY_JDBC_URL_PROPERTY, GOLD_BLOCK_NOTARY_JDBC_URL),
+                Long.getLong(GOLD_BLOCK_NOTARY_BATCH_WINDOW_MILLIS_PROPERTY, GOLD_BLOCK_NOTARY_BATCH_WINDOW_MILLIS),
+                Integer.getInteger(GOLD_BLOCK_NOTARY_MAX_BATCH_SIZE_PROPERTY, GOLD_BLOCK_NOTARY_MAX_BATCH_SIZE));
+    }
+
+    @Override
+    protected TimeWindowChecker getTimeWindowChecker() { return timeWindowChecker; }
+
+    @Override
+    protected UniquenessProvider getUniquenessProvider() { return uniquenessProvider; }
+
+    @Override
+    public ServiceHub getServices() { return serviceHub; }
+
+    @Override
+    public PublicKey getNotaryIdentityKey() { return notaryIdentityKey; }
+
+    @Override
+    public FlowLogic<Void> createServiceFlow(FlowSession otherPartySession) {
+        return new BatchingNotaryFlow(otherPartySession, this);
+    }
+
+    @Override
+    public void start() {
+        uniquenessProvider.start();
+    }
+
+    @Override
+    public void stop() {
+        uniquenessProvider.stop();
+    }
+
+    /**
+     * Signs the response for a transaction whose inputs were just committed. A transaction committed alone, or
+     * re-notarised after its inputs were committed earlier, gets an ordinary signature of its id.
+     */
+    public TransactionSignature signBatched(SecureHash txId) {
+        final BatchingUniquenessProvider.CommittedBatch batch = uniquenessProvider.takeCommittedBatch(txId);
+        if (batch == null || batch.size() == 1) {
+            return sign(txId);
+        }
+        return batch.signatureOf(txId, this::signRoot);
+    }
+
+    private TransactionSignature signRoot(SecureHash root) {
+        final SignatureMetadata metadata = new SignatureMetadata(serviceHub.getMyInfo().getPlatformVersion(),
+                Crypto.findSignatureScheme(notaryIdentityKey).getSchemeNumberID());
+        return serviceHub.getKeyManagementService().sign(new SignableData(root, metadata), notaryIdentityKey);
+    }
+}
@@ -0,0 +1,328 @@
+package com.template.ledger.service;
+
+import com.template.ledger.common.constants.GoldBlockConstants;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.crypto.Crypto;
+import net.corda.core.crypto.MerkleTree;
+import net.corda.core.crypto.MerkleTreeException;
+import net.corda.core.crypto.PartialMerkleTree;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.UniquenessException;
+import net.corda.core.node.services.UniquenessProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Uniqueness store of the {@link BatchingNotaryService}. Commit requests are queued for a single committer thread,
+ * which waits up to the batch window after the first request for more to arrive, checks every input of the batch
+ * against the store in a few queries and records the states consumed by all non-conflicting requests in one database
+ * transaction. A window of zero still batches whatever queued up while the previous batch was being written.
+ * <p>
+ * Each request's caller blocks until its batch is durable, as with Corda's Raft uniqueness provider. The caller is a
+ * notary flow, and the open-source Corda node runs every flow on a single state machine thread, which the wait blocks;
+ * there a batch never holds more than one request and any window is pure latency, hence the default of zero. Batching
+ * only pays on a node whose flow executor has several threads, such as Corda Enterprise's flow worker pool.
+ * <p>
+ * The store has its own JDBC connection and table rather than the node's database, since the committer works outside
+ * any flow and Corda 3 only hands out the node's database to flows. It is the notary's sole record of which states
+ * are spent. With the default URL it is an H2 file, {@code goldblock-notary-states.mv.db}, in the notary's working
+ * directory, which {@code runnodes} sets to the node's directory next to its own {@code persistence.mv.db}. Back it
+ * up with the node's database, restore both from the same backup, and never give two notary nodes the same store: a
+ * missing or stale copy forgets spent states and lets them be notarised again. For anything beyond a local
+ * deployment, point {@link GoldBlockConstants#GOLD_BLOCK_NOTARY_JDBC_URL_PROPERTY} at a durable, backed-up database.
+ */
+public class BatchingUniquenessProvider implements UniquenessProvider, GoldBlockConstants {
+
+    static private final Logger logger = LoggerFactory.getLogger(BatchingUniquenessProvider.class);
+
+    private static final String TABLE = "goldblock_notary_committed_states";
+    // States looked up per query, keeping the statement well inside the parameter limits of common databases.
+    private static final int LOOKUP_CHUNK = 100;
+
+    private final String jdbcUrl;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Map<SecureHash, CommittedBatch> unsigned = new ConcurrentHashMap<>();
+    // Committed transactions in commit order with their commit time, for expiring responses that are never signed.
+    // Only touched by the committer thread.
+    private final Deque<Committed> committedOrder = new ArrayDeque<>();
+    private final Thread committer;
+    private volatile boolean closed;
+    private Connection connection;
+
+    public BatchingUniquenessProvider(String jdbcUrl, long windowMillis, int maxBatchSize) {
+        if (windowMillis < 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch window must not be negative and the batch size must be positive.");
+        }
+        this.jdbcUrl = jdbcUrl;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.committer = new Thread(this::commitBatches, "gold-block-notary-committer");
+        this.committer.setDaemon(true);
+    }
+
+    public void start() {
+        committer.start();
+    }
+
+    public void stop() {
+        closed = true;
+        committer.interrupt();
+    }
+
+    /**
+     * Queues the request and waits for its batch to be committed. Throws {@link UniquenessException} if any of
+     * {@code states} was already consumed, by an earlier batch or by an earlier request in the same one.
+     */
+    @Override
+    public void commit(List<StateRef> states, SecureHash txId, Party callerIdentity) {
+        if (closed) {
+            throw new IllegalStateException("The notary's uniqueness store has been stopped.");
+        }
+        final Request request = new Request(states, txId, callerIdentity);
+        queue.add(request);
+        final Map<StateRef, ConsumingTx> conflicts;
+        try {
+            conflicts = request.outcome.get(GOLD_BLOCK_NOTARY_COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while committing " + txId + ".", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Unable to commit the inputs of " + txId + ".", e);
+        }
+        if (!conflicts.isEmpty()) {
+            throw new UniquenessException(new Conflict(conflicts));
+        }
+    }
+
+    /**
+     * Hands over the batch {@code txId} was committed in, for its response to be signed, or returns null if the
+     * transaction was not committed by this store since the notary started, or was committed more than
+     * {@link GoldBlockConstants#GOLD_BLOCK_NOTARY_UNSIGNED_EXPIRY_SECONDS} ago because its flow died before signing.
+     */
+    public CommittedBatch takeCommittedBatch(SecureHash txId) {
+        return unsigned.remove(txId);
+    }
+
+    private void commitBatches() {
+        final List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                final long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    final long remaining = deadline - System.nanoTime();
+                    final Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                commitBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        final List<Request> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(request -> request.outcome.completeExceptionally(new IllegalStateException("The notary is stopping.")));
+        closeConnection();
+    }
+
+    // Package-private for tests, which commit batches without the committer thread.
+    void commitBatch(List<Request> batch) {
+        final Map<StateRef, ConsumingTx> claimed = new HashMap<>();
+        final List<Map<StateRef, ConsumingTx>> outcomes = new ArrayList<>(batch.size());
+        final List<SecureHash> committed = new ArrayList<>(batch.size());
+        try {
+            final Connection connection = connection();
+            final Map<StateRef, ConsumingTx> stored = lookup(connection, batch);
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE
+                    + " (issue_transaction_id, issue_output_index, consuming_transaction_id, consuming_input_index,"
+                    + " requesting_party_name, requesting_party_key) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (Request request : batch) {
+                    final Map<StateRef, ConsumingTx> conflicts = new LinkedHashMap<>();
+                    for (StateRef state : request.states) {
+                        final ConsumingTx consumer = stored.getOrDefault(state, claimed.get(state));
+                        if (consumer != null) conflicts.put(state, consumer);
+                    }
+                    outcomes.add(conflicts);
+                    if (!conflicts.isEmpty()) continue;
+                    for (int i = 0; i < request.states.size(); i++) {
+                        final StateRef state = request.states.get(i);
+                        claimed.put(state, new ConsumingTx(request.txId, i, request.caller));
+                        insert.setString(1, state.getTxhash().toString());
+                        insert.setInt(2, state.getIndex());
+                        insert.setString(3, request.txId.toString());
+                        insert.setInt(4, i);
+                        insert.setString(5, request.caller.getName().toString());
+                        insert.setBytes(6, request.caller.getOwningKey().getEncoded());
+                        insert.addBatch();
+                    }
+                    committed.add(request.txId);
+                }
+                if (!claimed.isEmpty()) {
+                    insert.executeBatch();
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            logger.error("Unable to commit a batch of {} notarisation requests", batch.size(), e);
+            rollback();
+            batch.forEach(request -> request.outcome.completeExceptionally(e));
+            return;
+        }
+
+        final CommittedBatch signing = new CommittedBatch(committed);
+        final long committedAt = System.nanoTime();
+        committed.forEach(txId -> {
+            unsigned.put(txId, signing);
+            committedOrder.addLast(new Committed(txId, committedAt));
+        });
+        expireUnsigned(committedAt);
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).outcome.complete(outcomes.get(i));
+        }
+        logger.debug("Committed a batch of {} notarisation requests, {} with conflicts", batch.size(), batch.size() - committed.size());
+    }
+
+    // Drops the batches of responses that were never signed; a notary flow retried from its checkpoint signs alone.
+    private void expireUnsigned(long now) {
+        final long expiry = TimeUnit.SECONDS.toNanos(GOLD_BLOCK_NOTARY_UNSIGNED_EXPIRY_SECONDS);
+        while (!committedOrder.isEmpty() && now - committedOrder.peekFirst().committedAt > expiry) {
+            unsigned.remove(committedOrder.pollFirst().txId);
+        }
+    }
+
+    private Map<StateRef, ConsumingTx> lookup(Connection connection, List<Request> batch) throws SQLException {
+        final List<StateRef> states = new ArrayList<>();
+        batch.forEach(request -> states.addAll(request.states));
+        final Map<StateRef, ConsumingTx> stored = new HashMap<>();
+        for (int from = 0; from < states.size(); from += LOOKUP_CHUNK) {
+            final List<StateRef> chunk = states.subList(from, Math.min(states.size(), from + LOOKUP_CHUNK));
+            final StringBuilder sql = new StringBuilder("SELECT issue_transaction_id, issue_output_index,"
+                    + " consuming_transaction_id, consuming_input_index, requesting_party_name, requesting_party_key FROM ")
+                    .append(TABLE).append(" WHERE ");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "" : " OR ").append("(issue_transaction_id = ? AND issue_output_index = ?)");
+            }
+            try (PreparedStatement select = connection.prepareStatement(sql.toString())) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    select.setString(2 * i + 1, chunk.get(i).getTxhash().toString());
+                    select.setInt(2 * i + 2, chunk.get(i).getIndex());
+                }
+                try (ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) {
+                        final Party caller = new Party(CordaX500Name.parse(rows.getString(5)), Crypto.decodePublicKey(rows.getBytes(6)));
+                        stored.put(new StateRef(SecureHash.parse(rows.getString(1)), rows.getInt(2)),
+                                new ConsumingTx(SecureHash.parse(rows.getString(3)), rows.getInt(4), caller));
+                    }
+                }
+            }
+        }
+        return stored;
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = DriverManager.getConnection(jdbcUrl);
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                        + "issue_transaction_id VARCHAR(64) NOT NULL, issue_output_index INT NOT NULL,"
+                        + " consuming_transaction_id VARCHAR(64) NOT NULL, consuming_input_index INT NOT NULL,"
+                        + " requesting_party_name VARCHAR(255) NOT NULL, requesting_party_key VARBINARY(1024) NOT NULL,"
+                        + " PRIMARY KEY (issue_transaction_id, issue_output_index))");
+            }
+            connection.commit();
+        }
+        return connection;
+    }
+
+    // A failed batch drops the connection, so that the next one starts from a fresh session.
+    private void rollback() {
+        if (connection == null) return;
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warn("Unable to roll back a failed notarisation batch", e);
+        }
+        closeConnection();
+    }
+
+    private void closeConnection() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Unable to close the notary's uniqueness store", e);
+        }
+        connection = null;
+    }
+
+    /**
+     * The transactions committed together in one batch, whose responses share a single signature over the Merkle
+     * root of their ids. Each response carries a partial Merkle tree proving its own id is a leaf.
+     */
+    public static final class CommittedBatch {
+        private final List<SecureHash> txIds;
+        private MerkleTree tree;
+        private TransactionSignature rootSignature;
+
+        private CommittedBatch(List<SecureHash> txIds) {
+            this.txIds = txIds;
+        }
+
+        public int size() { return txIds.size(); }
+
+        /**
+         * Returns the signature of {@code txId}, signing the batch's root with {@code signer} the first time a
+         * response of the batch is signed.
+         */
+        public synchronized TransactionSignature signatureOf(SecureHash txId, Function<SecureHash, TransactionSignature> signer) {
+            try {
+                if (rootSignature == null) {
+                    tree = MerkleTree.Companion.getMerkleTree(txIds);
+                    rootSignature = signer.apply(tree.getHash());
+                }
+                return new TransactionSignature(rootSignature.getBytes(), rootSignature.getBy(),
+                        rootSignature.getSignatureMetadata(), PartialMerkleTree.Companion.build(tree, Collections.singletonList(txId)));
+            } catch (MerkleTreeException e) {
+                throw new IllegalStateException("Unable to sign " + txId + " as part of its batch.", e);
+            }
+        }
+    }
+
+    private static final class Committed {
+        private final SecureHash txId;
+        private final long committedAt;
+
+        private Committed(SecureHash txId, long committedAt) {
+            this.txId = txId;
+            this.committedAt = committedAt;
+        }
+    }
+
+    static final class Request {
+        private final List<StateRef> states;
+        private final SecureHash txId;
+        private final Party caller;
+        // Completes with the conflicting states, empty if the request was committed.
+        final CompletableFuture<Map<StateRef, ConsumingTx>> outcome = new CompletableFuture<>();
+
+        Request(List<StateRef> states, SecureHash txId, Party caller) {
+            this.states = states;
+            this.txId = txId;
+            this.caller = caller;
+        }
+    }
+}
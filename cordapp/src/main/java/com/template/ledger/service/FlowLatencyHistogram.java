@@ -0,0 +1,59 @@
+package com.template.ledger.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket latency histogram that can be updated from many flow fibers at once without locking. Buckets follow
+ * the Prometheus convention: each count is of observations less than or equal to the bucket's bound.
+ */
+class FlowLatencyHistogram {
+
+    // Upper bounds of the buckets in seconds, from a millisecond to a minute; slower observations land in +Inf.
+    static final double[] BUCKET_BOUNDS_SECONDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+    private static final long[] BUCKET_BOUNDS_NANOS = Arrays.stream(BUCKET_BOUNDS_SECONDS).mapToLong(s -> (long) (s * 1e9)).toArray();
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_NANOS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    FlowLatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        int index = Arrays.binarySearch(BUCKET_BOUNDS_NANOS, nanos);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        buckets[index].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    long count() { return count.sum(); }
+
+    double sumSeconds() { return sumNanos.sum() / 1e9; }
+
+    double meanMillis() {
+        final long observations = count.sum();
+        return observations == 0 ? 0 : sumNanos.sum() / 1e6 / observations;
+    }
+
+    /**
+     * Returns the cumulative count for each bound in {@link #BUCKET_BOUNDS_SECONDS}, followed by the +Inf count.
+     */
+    long[] cumulativeCounts() {
+        final long[] cumulative = new long[buckets.length];
+        long running = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            running += buckets[i].sum();
+            cumulative[i] = running;
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,64 @@
+package com.template.ledger.service;
+
+import com.template.ledger.common.constants.GoldBlockConstants;
+import com.template.ledger.flow.ConsolidateGoldBlocksFlow;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs {@link ConsolidateGoldBlocksFlow} periodically when the node is started with
+ * {@code -Dgoldblock.consolidation.intervalSeconds=N}. A run is skipped if the previous one is still in flight, so
+ * consolidations never compete with each other for the same states.
+ */
+@CordaService
+public class GoldBlockConsolidationScheduler extends SingletonSerializeAsToken implements GoldBlockConstants {
+
+    static private final Logger logger = LoggerFactory.getLogger(GoldBlockConsolidationScheduler.class);
+
+    private final AppServiceHub serviceHub;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public GoldBlockConsolidationScheduler(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        final long intervalSeconds = Long.getLong(GOLD_BLOCK_CONSOLIDATION_INTERVAL_PROPERTY, 0L);
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "gold-block-consolidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::consolidate, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        logger.info("Consolidating goldblocks every {} seconds", intervalSeconds);
+    }
+
+    private void consolidate() {
+        if (!running.compareAndSet(false, true)) {
+            logger.debug("Previous goldblock consolidation still running, skipping this one");
+            return;
+        }
+        try {
+            serviceHub.startFlow(new ConsolidateGoldBlocksFlow()).getReturnValue().toCompletableFuture()
+                    .whenComplete((reclaimed, error) -> {
+                        running.set(false);
+                        if (error != null) {
+                            logger.warn("Scheduled goldblock consolidation failed", error);
+                        } else if (reclaimed > 0) {
+                            logger.info("Scheduled goldblock consolidation reclaimed {} states", reclaimed);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            running.set(false);
+            logger.warn("Unable to start scheduled goldblock consolidation", e);
+        }
+    }
+}
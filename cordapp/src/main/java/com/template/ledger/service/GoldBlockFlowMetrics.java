@@ -0,0 +1,135 @@
+package com.template.ledger.service;
+
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Node-wide timing metrics for GoldBlock flows: a latency histogram per flow class and progress step, a histogram of
+ * whole-flow durations, and success and failure counters. Flows report into it through {@code InstrumentedFlowLogic}.
+ * <p>
+ * Recording is lock-free. The metrics are published as an MXBean named
+ * {@code com.template.ledger:type=GoldBlockFlowMetrics,node=<legal name>} and as Prometheus text through
+ * {@code GoldBlockMetricsFlow}, which backs {@code GET /api/gb/metrics}.
+ */
+@CordaService
+public class GoldBlockFlowMetrics extends SingletonSerializeAsToken implements GoldBlockFlowMetricsMXBean {
+
+    static private final Logger logger = LoggerFactory.getLogger(GoldBlockFlowMetrics.class);
+
+    private final ConcurrentMap<String, ConcurrentMap<String, FlowLatencyHistogram>> stepLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FlowLatencyHistogram> flowLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> successes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    public GoldBlockFlowMetrics(AppServiceHub serviceHub) {
+        final String nodeName = serviceHub.getMyInfo().getLegalIdentities().get(0).getName().toString();
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName("com.template.ledger:type=GoldBlockFlowMetrics,node=" + ObjectName.quote(nodeName));
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            // Metrics are still recorded and served over RPC without JMX.
+            logger.warn("Unable to register GoldBlock flow metrics with JMX", e);
+        }
+    }
+
+    /**
+     * Records the time a flow spent in one progress step, including any time suspended waiting on counterparties.
+     */
+    public void recordStep(String flowName, String step, long nanos) {
+        stepLatencies.computeIfAbsent(flowName, f -> new ConcurrentHashMap<>())
+                .computeIfAbsent(step, s -> new FlowLatencyHistogram())
+                .record(nanos);
+    }
+
+    /**
+     * Records the outcome and total duration of a flow; a negative duration means it is unknown.
+     */
+    public void recordFlow(String flowName, boolean succeeded, long nanos) {
+        if (nanos >= 0) {
+            flowLatencies.computeIfAbsent(flowName, f -> new FlowLatencyHistogram()).record(nanos);
+        }
+        (succeeded ? successes : failures).computeIfAbsent(flowName, f -> new LongAdder()).increment();
+    }
+
+    @Override
+    public Map<String, Long> getFlowSuccesses() { return sums(successes); }
+
+    @Override
+    public Map<String, Long> getFlowFailures() { return sums(failures); }
+
+    @Override
+    public Map<String, Long> getStepCounts() { return perStep(FlowLatencyHistogram::count); }
+
+    @Override
+    public Map<String, Double> getStepMeanMillis() { return perStep(FlowLatencyHistogram::meanMillis); }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format, version 0.0.4.
+     */
+    @Override
+    public String getPrometheusText() {
+        final StringBuilder text = new StringBuilder();
+
+        text.append("# HELP goldblock_flow_step_seconds Time GoldBlock flows spend in each progress step.\n");
+        text.append("# TYPE goldblock_flow_step_seconds histogram\n");
+        new TreeMap<>(stepLatencies).forEach((flow, steps) -> new TreeMap<>(steps).forEach((step, histogram) ->
+                appendHistogram(text, "goldblock_flow_step_seconds", "flow=\"" + escape(flow) + "\",step=\"" + escape(step) + "\"", histogram)));
+
+        text.append("# HELP goldblock_flow_duration_seconds Total duration of GoldBlock flows.\n");
+        text.append("# TYPE goldblock_flow_duration_seconds histogram\n");
+        new TreeMap<>(flowLatencies).forEach((flow, histogram) ->
+                appendHistogram(text, "goldblock_flow_duration_seconds", "flow=\"" + escape(flow) + "\"", histogram));
+
+        text.append("# HELP goldblock_flows_total GoldBlock flows completed, by outcome.\n");
+        text.append("# TYPE goldblock_flows_total counter\n");
+        getFlowSuccesses().forEach((flow, count) ->
+                text.append("goldblock_flows_total{flow=\"").append(escape(flow)).append("\",outcome=\"success\"} ").append(count).append('\n'));
+        getFlowFailures().forEach((flow, count) ->
+                text.append("goldblock_flows_total{flow=\"").append(escape(flow)).append("\",outcome=\"failure\"} ").append(count).append('\n'));
+        return text.toString();
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, String labels, FlowLatencyHistogram histogram) {
+        final long[] cumulative = histogram.cumulativeCounts();
+        for (int i = 0; i < FlowLatencyHistogram.BUCKET_BOUNDS_SECONDS.length; i++) {
+            text.append(name).append("_bucket{").append(labels).append(",le=\"")
+                    .append(FlowLatencyHistogram.BUCKET_BOUNDS_SECONDS[i]).append("\"} ").append(cumulative[i]).append('\n');
+        }
+        text.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(cumulative[cumulative.length - 1]).append('\n');
+        text.append(name).append("_sum{").append(labels).append("} ").append(histogram.sumSeconds()).append('\n');
+        text.append(name).append("_count{").append(labels).append("} ").append(histogram.count()).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        final Map<String, Long> sums = new TreeMap<>();
+        counters.forEach((flow, counter) -> sums.put(flow, counter.sum()));
+        return sums;
+    }
+
+    private <V> Map<String, V> perStep(Function<FlowLatencyHistogram, V> value) {
+        final Map<String, V> values = new TreeMap<>();
+        stepLatencies.forEach((flow, steps) -> steps.forEach((step, histogram) -> values.put(flow + " / " + step, value.apply(histogram))));
+        return values;
+    }
+}
@@ -0,0 +1,19 @@
+package com.template.ledger.service;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link GoldBlockFlowMetrics}. Keys are the flow class name, or "flow / step" for per-step values.
+ */
+public interface GoldBlockFlowMetricsMXBean {
+
+    Map<String, Long> getFlowSuccesses();
+
+    Map<String, Long> getFlowFailures();
+
+    Map<String, Long> getStepCounts();
+
+    Map<String, Double> getStepMeanMillis();
+
+    String getPrometheusText();
+}
@@ -0,0 +1,100 @@
+package com.template.ledger.service;
+
+import com.template.ledger.common.constants.GoldBlockConstants;
+import net.corda.core.flows.FlowException;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-wide cache of the GoldBlock notary and of counterparties resolved by name, so that flows do not go to the
+ * network map and identity service on every run. Any change published by the network map clears the cache.
+ * <p>
+ * The notary is the one named by the node's {@code goldblock.notary.name} system property, so a network may offer
+ * both a validating and a non-validating notary and each node choose between them; without the property it is the
+ * notary named in {@link GoldBlockConstants}. The notary is resolved when the service starts, from the notaries in the
+ * network parameters, and an unknown notary name is logged as an error at boot. The node still starts: Corda 3 logs
+ * and skips a service whose constructor throws, which would only turn the misconfiguration into a missing service.
+ * Instead every flow that asks for the notary fails with a {@link FlowException} naming the configured notary and the
+ * ones the network has.
+ * <p>
+ * Lookups that find nothing are not cached and fail with a {@link FlowException} naming what was looked for, rather
+ * than handing a null notary or party to the flow.
+ */
+@CordaService
+public class GoldBlockIdentityCache extends SingletonSerializeAsToken implements GoldBlockConstants {
+
+    static private final Logger logger = LoggerFactory.getLogger(GoldBlockIdentityCache.class);
+
+    private final AppServiceHub serviceHub;
+    private final CordaX500Name notaryName = notaryName();
+    private final Map<CordaX500Name, Party> parties = new ConcurrentHashMap<>();
+    private volatile Party notary;
+
+    public GoldBlockIdentityCache(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.notary = serviceHub.getNetworkMapCache().getNotary(notaryName);
+        if (notary == null) {
+            logger.error("Notary {} is not one of the network's notaries: {}. Check {}; GoldBlock flows will fail until it names one.",
+                    notaryName, serviceHub.getNetworkMapCache().getNotaryIdentities(), GOLD_BLOCK_NOTARY_NAME_PROPERTY);
+        } else {
+            logger.info("GoldBlock transactions will be notarised by {}", notary);
+        }
+        serviceHub.getNetworkMapCache().getChanged().subscribe(change -> invalidate());
+    }
+
+    /**
+     * Returns the notary GoldBlock transactions are notarised by.
+     *
+     * @throws FlowException if no notary with the configured name is on the network map.
+     */
+    public Party notary() throws FlowException {
+        Party cached = notary;
+        if (cached == null) {
+            cached = serviceHub.getNetworkMapCache().getNotary(notaryName);
+            if (cached == null) {
+                throw new FlowException("Notary " + notaryName + " is not on the network map. Known notaries: "
+                        + serviceHub.getNetworkMapCache().getNotaryIdentities() + ". Check " + GOLD_BLOCK_NOTARY_NAME_PROPERTY + ".");
+            }
+            notary = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the well-known party with the given name.
+     *
+     * @throws FlowException if the identity service does not know the name.
+     */
+    public Party wellKnownParty(CordaX500Name name) throws FlowException {
+        Party cached = parties.get(name);
+        if (cached == null) {
+            cached = serviceHub.getIdentityService().wellKnownPartyFromX500Name(name);
+            if (cached == null) {
+                throw new FlowException("Party " + name + " is not known to this node.");
+            }
+            parties.put(name, cached);
+        }
+        return cached;
+    }
+
+    private static CordaX500Name notaryName() {
+        final String configured = System.getProperty(GOLD_BLOCK_NOTARY_NAME_PROPERTY);
+        return configured == null
+                ? new CordaX500Name(GOLD_BLOCK_NOTARY_SERVICE, GOLD_BLOCK_NOTARY_CITY, GOLD_BLOCK_NOTARY_COUNTRY)
+                : CordaX500Name.parse(configured);
+    }
+
+    private void invalidate() {
+        logger.debug("Network map changed, clearing cached GoldBlock identities");
+        notary = null;
+        parties.clear();
+    }
+}
@@ -0,0 +1,116 @@
+package com.template.ledger.service;
+
+import com.template.ledger.schema.GoldBlockReissueSchemaV1;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * An issuer's record of the exits it has countersigned for re-issuance, kept in the node's database in the table of
+ * {@link GoldBlockReissueSchemaV1}, so that goldblocks exited for a re-issuance that did not complete can be issued back
+ * later by {@code ReissueRecoveryFlow}.
+ * <p>
+ * Every method must be called from a flow. It works on the flow's own database transaction, so a write is committed
+ * with the flow's next checkpoint: a countersigned exit is recorded before the signature leaves the node, and an exit is
+ * marked as re-issued in the same transaction that records the re-issuance.
+ */
+@CordaService
+public class GoldBlockReissueStore extends SingletonSerializeAsToken {
+
+    public enum Status { PENDING, ISSUED }
+
+    private static final String TABLE = "gold_block_reissues";
+
+    private final AppServiceHub serviceHub;
+
+    public GoldBlockReissueStore(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+    }
+
+    /**
+     * Records that we countersigned {@code exitId} for re-issuance to {@code owner}.
+     */
+    public void recordPending(SecureHash exitId, CordaX500Name owner) {
+        try (PreparedStatement insert = connection().prepareStatement("INSERT INTO " + TABLE
+                + " (exit_transaction_id, owner_name, status) VALUES (?, ?, ?)")) {
+            insert.setString(1, exitId.toString());
+            insert.setString(2, owner.toString());
+            insert.setString(3, Status.PENDING.name());
+            insert.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to record the re-issuance of " + exitId + ".", e);
+        }
+    }
+
+    /**
+     * Returns what we recorded for {@code exitId}, or null if we never countersigned it for re-issuance.
+     */
+    public Reissue find(SecureHash exitId) {
+        try (PreparedStatement select = connection().prepareStatement("SELECT owner_name, status, reissue_transaction_id FROM "
+                + TABLE + " WHERE exit_transaction_id = ?")) {
+            select.setString(1, exitId.toString());
+            try (ResultSet row = select.executeQuery()) {
+                if (!row.next()) return null;
+                final String reissueId = row.getString(3);
+                return new Reissue(exitId, CordaX500Name.parse(row.getString(1)), Status.valueOf(row.getString(2)),
+                        reissueId == null ? null : SecureHash.parse(reissueId));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to look up the re-issuance of " + exitId + ".", e);
+        }
+    }
+
+    /**
+     * Marks the pending re-issuance of {@code exitId} as issued in {@code reissueId}. Returns false if it is not
+     * pending, because it was never recorded or has already been issued.
+     */
+    public boolean markIssued(SecureHash exitId, SecureHash reissueId) {
+        try (PreparedStatement update = connection().prepareStatement("UPDATE " + TABLE
+                + " SET status = ?, reissue_transaction_id = ? WHERE exit_transaction_id = ? AND status = ?")) {
+            update.setString(1, Status.ISSUED.name());
+            update.setString(2, reissueId.toString());
+            update.setString(3, exitId.toString());
+            update.setString(4, Status.PENDING.name());
+            return update.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to mark " + exitId + " as re-issued.", e);
+        }
+    }
+
+    private Connection connection() {
+        return serviceHub.jdbcSession();
+    }
+
+    /**
+     * An exit we countersigned for re-issuance, and the re-issuance once it has been recorded.
+     */
+    public static class Reissue {
+        private final SecureHash exitId;
+        private final CordaX500Name owner;
+        private final Status status;
+        private final SecureHash reissueId;
+
+        private Reissue(SecureHash exitId, CordaX500Name owner, Status status, SecureHash reissueId) {
+            this.exitId = exitId;
+            this.owner = owner;
+            this.status = status;
+            this.reissueId = reissueId;
+        }
+
+        public SecureHash getExitId() { return exitId; }
+
+        public CordaX500Name getOwner() { return owner; }
+
+        public Status getStatus() { return status; }
+
+        /** The re-issuance transaction, or null while the re-issuance is pending. */
+        public SecureHash getReissueId() { return reissueId; }
+    }
+}
@@ -0,0 +1,160 @@
+package com.template.ledger.service;
+
+import com.template.ledger.common.constants.GoldBlockConstants;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.crypto.SignatureMetadata;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.FlowException;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.ServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionWithSignatures.SignaturesMissingException;
+
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-wide record of transaction signatures that have already been verified, so that the stages of a GoldBlock flow
+ * that each check a transaction's signatures only do the EdDSA or ECDSA work for signatures they have not seen.
+ * <p>
+ * An entry is keyed by everything the signature covers: the transaction id, the signing key, the signature metadata and
+ * the signature bytes. Only successful verifications are remembered, so a bad signature is rejected every time it is
+ * presented. Signatures over a Merkle tree of several transactions, such as those of the {@link BatchingNotaryService},
+ * are always verified. The cache is a bounded LRU map of {@link GoldBlockConstants#GOLD_BLOCK_SIGNATURE_CACHE_SIZE}
+ * entries.
+ * <p>
+ * The methods mirror {@link SignedTransaction}'s own checks. They cover the checks our flows make; the platform's
+ * {@code FinalityFlow} and {@code ReceiveTransactionFlow} verify on their own and do not use the cache, so flows do
+ * not check again what {@code ReceiveTransactionFlow} has already checked.
+ */
+@CordaService
+public class SignatureVerificationCache extends SingletonSerializeAsToken implements GoldBlockConstants {
+
+    private final Map<VerifiedSignature, Boolean> verified = new LinkedHashMap<VerifiedSignature, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<VerifiedSignature, Boolean> eldest) {
+            return size() > GOLD_BLOCK_SIGNATURE_CACHE_SIZE;
+        }
+    };
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Corda services are constructed with the service hub; the cache itself needs nothing from it.
+    public SignatureVerificationCache(AppServiceHub serviceHub) {
+    }
+
+    /**
+     * As {@link SignedTransaction#checkSignaturesAreValid()}: every signature present must be valid.
+     */
+    public void checkSignaturesAreValid(SignedTransaction stx) throws SignatureException {
+        for (TransactionSignature signature : stx.getSigs()) {
+            checkSignature(stx.getId(), signature);
+        }
+    }
+
+    /**
+     * As {@link TransactionSignature#verify(SecureHash)}: throws if {@code signature} is not a valid signature of
+     * {@code txId}.
+     */
+    public void checkSignature(SecureHash txId, TransactionSignature signature) throws SignatureException {
+        if (signature.getPartialMerkleTree() != null) {
+            verifyNow(txId, signature);
+            return;
+        }
+        final VerifiedSignature key = new VerifiedSignature(txId, signature);
+        synchronized (verified) {
+            if (verified.get(key) != null) {
+                hits.increment();
+                return;
+            }
+        }
+        misses.increment();
+        // Outside the lock, so that flows verifying different signatures do not wait for one another.
+        verifyNow(txId, signature);
+        synchronized (verified) {
+            verified.put(key, Boolean.TRUE);
+        }
+    }
+
+    private static void verifyNow(SecureHash txId, TransactionSignature signature) throws SignatureException {
+        try {
+            signature.verify(txId);
+        } catch (InvalidKeyException e) {
+            throw new SignatureException("Signature by " + signature.getBy() + " uses an unusable key.", e);
+        }
+    }
+
+    /**
+     * As {@link SignedTransaction#verifySignaturesExcept}: every signature present must be valid and only the keys in
+     * {@code allowedToBeMissing} may not have signed yet.
+     */
+    public void verifySignaturesExcept(SignedTransaction stx, PublicKey... allowedToBeMissing) throws SignatureException {
+        checkSignaturesAreValid(stx);
+        final Set<PublicKey> needed = new LinkedHashSet<>(stx.getMissingSigners());
+        needed.removeAll(Arrays.asList(allowedToBeMissing));
+        if (!needed.isEmpty()) {
+            throw new SignaturesMissingException(needed, stx.getKeyDescriptions(needed), stx.getId());
+        }
+    }
+
+    /**
+     * As {@link SignedTransaction#verify(ServiceHub, boolean)}: checks the signatures, requiring all of them when
+     * {@code checkSufficientSignatures}, then resolves the transaction and runs its contracts.
+     */
+    public void verify(SignedTransaction stx, ServiceHub serviceHub, boolean checkSufficientSignatures) throws SignatureException, FlowException {
+        if (checkSufficientSignatures) {
+            verifySignaturesExcept(stx);
+        } else {
+            checkSignaturesAreValid(stx);
+        }
+        // The wire transaction's own conversion does not check signatures again.
+        stx.getTx().toLedgerTransaction(serviceHub).verify();
+    }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    /**
+     * Renders the hit and miss counters in the Prometheus text exposition format, version 0.0.4.
+     */
+    public String getPrometheusText() {
+        return "# HELP goldblock_signature_cache_total Signature checks by GoldBlock flows, by whether the cache had verified the signature already.\n"
+                + "# TYPE goldblock_signature_cache_total counter\n"
+                + "goldblock_signature_cache_total{result=\"hit\"} " + getHits() + '\n'
+                + "goldblock_signature_cache_total{result=\"miss\"} " + getMisses() + '\n';
+    }
+
+    private static final class VerifiedSignature {
+        private final SecureHash txId;
+        private final PublicKey by;
+        private final SignatureMetadata metadata;
+        private final byte[] bytes;
+        private final int hashCode;
+
+        private VerifiedSignature(SecureHash txId, TransactionSignature signature) {
+            this.txId = txId;
+            this.by = signature.getBy();
+            this.metadata = signature.getSignatureMetadata();
+            this.bytes = signature.getBytes();
+            this.hashCode = 31 * txId.hashCode() + Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            VerifiedSignature that = (VerifiedSignature) o;
+            return hashCode == that.hashCode && txId.equals(that.txId) && Arrays.equals(bytes, that.bytes)
+                    && by.equals(that.by) && metadata.equals(that.metadata);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+    }
+}
@@ -1,13 +1,115 @@
 package com.template;
 
+import com.google.common.collect.ImmutableList;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.utilities.OpaqueBytes;
+import net.corda.testing.core.TestIdentity;
 import net.corda.testing.node.MockServices;
 import org.junit.Test;
 
+import static com.template.ledger.contract.GoldBlockContract.GOLD_BLOCK_CONTRACT_ID;
+import static net.corda.testing.node.NodeTestUtils.transaction;
+
 public class ContractTests {
     MockServices ledgerServices = new MockServices();
 
+    private final TestIdentity issuer = new TestIdentity(new CordaX500Name("PartyA", "London", "GB"));
+    private final TestIdentity holder = new TestIdentity(new CordaX500Name("PartyB", "New York", "US"));
+    private final MockServices goldBlockServices = new MockServices(ImmutableList.of("com.template.ledger"), issuer);
+    private final GoldBlockIssuer goldblocks = GoldBlockIssuer.of(issuer.getParty(), OpaqueBytes.of((byte) 0x01));
+    private final GoldBlockIssuer holderGoldblocks = GoldBlockIssuer.of(holder.getParty(), OpaqueBytes.of((byte) 0x01));
+
+    private GoldBlockState goldBlocks(long quantity, TestIdentity owner) {
+        return new GoldBlockState(quantity, goldblocks, owner.getParty());
+    }
+
+    // Goldblocks one move away from their issuance.
+    private GoldBlockState moved(long quantity, GoldBlockIssuer goldblocks, TestIdentity owner) {
+        return new GoldBlockState(quantity, goldblocks, owner.getParty(), 1);
+    }
+
     @Test
     public void dummyTest() {
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void issuanceMustBeSignedByIssuer() {
+        transaction(goldBlockServices, tx -> {
+            tx.output(GOLD_BLOCK_CONTRACT_ID, goldBlocks(100, holder));
+            tx.tweak(tw -> {
+                tw.command(holder.getPublicKey(), new GoldBlockContract.Commands.Issue());
+                return tw.failsWith("The issuer must sign an issuance.");
+            });
+            tx.command(issuer.getPublicKey(), new GoldBlockContract.Commands.Issue());
+            return tx.verifies();
+        });
+    }
+
+    @Test
+    public void moveMustConserveQuantity() {
+        transaction(goldBlockServices, tx -> {
+            tx.input(GOLD_BLOCK_CONTRACT_ID, goldBlocks(100, issuer));
+            tx.output(GOLD_BLOCK_CONTRACT_ID, moved(60, goldblocks, holder));
+            tx.command(issuer.getPublicKey(), new GoldBlockContract.Commands.Move());
+            tx.tweak(tw -> tw.failsWith("A move conserves the quantity of each issuer's goldblocks."));
+            tx.output(GOLD_BLOCK_CONTRACT_ID, moved(40, goldblocks, issuer));
+            return tx.verifies();
+        });
+    }
+
+    @Test
+    public void moveMustConserveEachIssuerSeparately() {
+        transaction(goldBlockServices, tx -> {
+            tx.input(GOLD_BLOCK_CONTRACT_ID, goldBlocks(100, issuer));
+            tx.input(GOLD_BLOCK_CONTRACT_ID, new GoldBlockState(50, holderGoldblocks, issuer.getParty()));
+            tx.command(issuer.getPublicKey(), new GoldBlockContract.Commands.Move());
+            tx.tweak(tw -> {
+                tw.output(GOLD_BLOCK_CONTRACT_ID, moved(150, goldblocks, holder));
+                return tw.failsWith("A move conserves the quantity of each issuer's goldblocks.");
+            });
+            tx.output(GOLD_BLOCK_CONTRACT_ID, moved(100, goldblocks, holder));
+            tx.output(GOLD_BLOCK_CONTRACT_ID, moved(50, holderGoldblocks, holder));
+            return tx.verifies();
+        });
+    }
+
+    @Test
+    public void moveMustExtendTheDeepestInputChain() {
+        transaction(goldBlockServices, tx -> {
+            tx.input(GOLD_BLOCK_CONTRACT_ID, new GoldBlockState(60, goldblocks, issuer.getParty(), 4));
+            tx.input(GOLD_BLOCK_CONTRACT_ID, new GoldBlockState(40, goldblocks, issuer.getParty(), 9));
+            tx.command(issuer.getPublicKey(), new GoldBlockContract.Commands.Move());
+            tx.tweak(tw -> {
+                tw.output(GOLD_BLOCK_CONTRACT_ID, new GoldBlockState(100, goldblocks, holder.getParty(), 0));
+                return tw.failsWith("Outputs must be one transaction deeper than the deepest input.");
+            });
+            tx.output(GOLD_BLOCK_CONTRACT_ID, new GoldBlockState(100, goldblocks, holder.getParty(), 10));
+            return tx.verifies();
+        });
+    }
+
+    @Test
+    public void exitMustBeSignedByOwnerAndIssuer() {
+        transaction(goldBlockServices, tx -> {
+            tx.input(GOLD_BLOCK_CONTRACT_ID, new GoldBlockState(100, goldblocks, holder.getParty(), 25));
+            tx.tweak(tw -> {
+                tw.command(holder.getPublicKey(), new GoldBlockContract.Commands.Exit());
+                return tw.failsWith("The issuer must sign an exit.");
+            });
+            tx.tweak(tw -> {
+                tw.command(issuer.getPublicKey(), new GoldBlockContract.Commands.Exit());
+                return tw.failsWith("Every input owner must sign.");
+            });
+            tx.command(ImmutableList.of(holder.getPublicKey(), issuer.getPublicKey()), new GoldBlockContract.Commands.Exit());
+            tx.tweak(tw -> {
+                tw.output(GOLD_BLOCK_CONTRACT_ID, new GoldBlockState(100, goldblocks, holder.getParty(), 26));
+                return tw.failsWith("An exit creates no goldblocks.");
+            });
+            return tx.verifies();
+        });
+    }
+}
@@ -1,39 +1,315 @@
 package com.template;
 
+import co.paralleluniverse.fibers.Suspendable;
 import com.google.common.collect.ImmutableList;
+import com.template.ledger.flow.BatchIssueFlow;
+import com.template.ledger.flow.BuyerFlow;
+import com.template.ledger.flow.ConsolidateGoldBlocksFlow;
+import com.template.ledger.flow.IssueLot;
+import com.template.ledger.flow.ReissueRecoveryFlow;
+import com.template.ledger.flow.ReissueRequestFlow;
+import com.template.ledger.flow.ReissueResponderFlow;
+import com.template.ledger.flow.SellerFlow;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.utilities.UntrustworthyData;
 import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkNotarySpec;
+import net.corda.testing.node.MockNetworkParameters;
 import net.corda.testing.node.StartedMockNode;
+import org.jetbrains.annotations.NotNull;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 public class FlowTests {
+    // The name GoldBlockIdentityCache resolves the notary by.
+    private static final CordaX500Name NOTARY_NAME = new CordaX500Name("Notary", "London", "GB");
+    // Read by ReissueResponderFlow.minChainDepth().
+    private static final String REISSUE_MIN_CHAIN_DEPTH = "goldblock.reissue.minChainDepth";
+
     private MockNetwork network;
     private StartedMockNode a;
     private StartedMockNode b;
 
     @Before
     public void setup() {
-        network = new MockNetwork(ImmutableList.of("com.template"));
-        a = network.createNode();
-        b = network.createNode();
-        a.registerInitiatedFlow(TemplateFlow.Responder.class);
-        b.registerInitiatedFlow(TemplateFlow.Responder.class);
+        network = new MockNetwork(ImmutableList.of("com.template.ledger"),
+                new MockNetworkParameters().withNotarySpecs(ImmutableList.of(new MockNetworkNotarySpec(NOTARY_NAME))));
+        a = network.createPartyNode(new CordaX500Name("PartyA", "London", "GB"));
+        b = network.createPartyNode(new CordaX500Name("PartyB", "New York", "US"));
         network.runNetwork();
+        CountingBuyerFlow.sessions.set(0);
+        CountingBuyerFlow.received.clear();
+        CountingBuyerFlow.sent.clear();
     }
 
     @After
     public void tearDown() {
         network.stopNodes();
+        System.clearProperty(REISSUE_MIN_CHAIN_DEPTH);
     }
 
     @Rule
     public final ExpectedException exception = ExpectedException.none();
 
+    private static Party identity(StartedMockNode node) {
+        return node.getInfo().getLegalIdentities().get(0);
+    }
+
+    private <T> T run(StartedMockNode node, FlowLogic<T> flow) throws Exception {
+        final CordaFuture<T> future = node.startFlow(flow);
+        network.runNetwork();
+        return future.get();
+    }
+
+    private static List<StateAndRef<GoldBlockState>> goldBlocks(StartedMockNode node) {
+        return node.transaction(() -> node.getServices().getVaultService().queryBy(GoldBlockState.class).getStates());
+    }
+
+    private static SignedTransaction recorded(StartedMockNode node, SecureHash txId) {
+        return node.transaction(() -> node.getServices().getValidatedTransactions().getTransaction(txId));
+    }
+
+    private static long balance(StartedMockNode node) {
+        return goldBlocks(node).stream().mapToLong(state -> state.getState().getData().getQuantity()).sum();
+    }
+
+    @Test
+    public void batchIssueFinalisesEveryBatch() throws Exception {
+        final List<IssueLot> lots = ImmutableList.of(
+                new IssueLot(identity(a), 100),
+                new IssueLot(identity(b), 200),
+                new IssueLot(identity(b), 300));
+
+        final List<SecureHash> txIds = run(a, new BatchIssueFlow(lots, 2));
+
+        assertEquals(2, txIds.size());
+        final Party notary = network.getDefaultNotaryIdentity();
+        for (SecureHash txId : txIds) {
+            final SignedTransaction stx = recorded(a, txId);
+            assertNotNull(stx);
+            assertTrue(stx.getSigs().stream().anyMatch(sig -> sig.getBy().equals(notary.getOwningKey())));
+        }
+        assertEquals(100, balance(a));
+        assertEquals(500, balance(b));
+        assertNotNull(recorded(b, txIds.get(1)));
+    }
+
     @Test
-    public void test() throws Exception {
+    public void consolidationMergesSmallStates() throws Exception {
+        final Party me = identity(a);
+        run(a, new BatchIssueFlow(ImmutableList.of(
+                new IssueLot(me, 10), new IssueLot(me, 20), new IssueLot(me, 30), new IssueLot(me, 40), new IssueLot(me, 50))));
+
+        final int reclaimed = run(a, new ConsolidateGoldBlocksFlow(2, 3, 10));
+
+        assertEquals(3, reclaimed);
+        final List<Long> quantities = goldBlocks(a).stream()
+                .map(state -> state.getState().getData().getQuantity()).sorted().collect(Collectors.toList());
+        assertEquals(ImmutableList.of(60L, 90L), quantities);
+        assertTrue(goldBlocks(a).stream().allMatch(state -> state.getState().getData().getChainDepth() == 1));
+    }
+
+    @Test
+    public void moveTakesOneRoundTripWithTheBuyer() throws Exception {
+        b.registerInitiatedFlow(CountingBuyerFlow.class);
+        run(a, new BatchIssueFlow(ImmutableList.of(new IssueLot(identity(a), 100))));
+
+        run(a, new SellerFlow(identity(b), 60));
+
+        assertEquals(60, balance(b));
+        assertEquals(1, CountingBuyerFlow.sessions.get());
+        // One backchain fetch for the issuance, so R = 1 and the seller and buyer exchange 3 + 2R messages: the
+        // transaction and the issuance one way, the fetch request, the end of resolution and the signature the other.
+        assertEquals(ImmutableList.of(SignedTransaction.class, List.class), CountingBuyerFlow.received);
+        assertEquals(3, CountingBuyerFlow.sent.size());
+        assertSame(TransactionSignature.class, CountingBuyerFlow.sent.get(2));
+        assertEquals(5, CountingBuyerFlow.received.size() + CountingBuyerFlow.sent.size());
+    }
+
+    @Test
+    public void unknownNotaryNameFailsFlowsWithTheConfiguredName() throws Exception {
+        System.setProperty("goldblock.notary.name", "O=Nobody,L=Paris,C=FR");
+        final MockNetwork misconfigured = new MockNetwork(ImmutableList.of("com.template.ledger"),
+                new MockNetworkParameters().withNotarySpecs(ImmutableList.of(new MockNetworkNotarySpec(NOTARY_NAME))));
+        try {
+            // The node still boots; Corda 3 would only skip the service if it refused to start.
+            final StartedMockNode node = misconfigured.createPartyNode(new CordaX500Name("PartyC", "Paris", "FR"));
+            misconfigured.runNetwork();
+            final CordaFuture<List<SecureHash>> future = node.startFlow(new BatchIssueFlow(ImmutableList.of(new IssueLot(identity(node), 100))));
+            misconfigured.runNetwork();
+            try {
+                future.get();
+                throw new AssertionError("Issuing with an unknown notary should fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof FlowException);
+                assertTrue(e.getCause().getMessage().contains("O=Nobody, L=Paris, C=FR"));
+            }
+        } finally {
+            misconfigured.stopNodes();
+            System.clearProperty("goldblock.notary.name");
+        }
+    }
+
+    @Test
+    public void reissueSwapsDeepGoldBlocksForFreshOnes() throws Exception {
+        System.setProperty(REISSUE_MIN_CHAIN_DEPTH, "1");
+        run(a, new BatchIssueFlow(ImmutableList.of(new IssueLot(identity(a), 100))));
+        run(a, new SellerFlow(identity(b), 100));
+
+        final SignedTransaction reissueTx = run(b, new ReissueRequestFlow(identity(a)));
+
+        assertTrue(reissueTx.getInputs().isEmpty());
+        assertEquals(100, balance(b));
+        assertTrue(goldBlocks(b).stream().allMatch(state -> state.getState().getData().getChainDepth() == 0));
+    }
+
+    @Test
+    public void reissueOfShallowGoldBlocksExitsNothing() throws Exception {
+        System.setProperty(REISSUE_MIN_CHAIN_DEPTH, "5");
+        run(a, new BatchIssueFlow(ImmutableList.of(new IssueLot(identity(a), 100))));
+        run(a, new SellerFlow(identity(b), 100));
+
+        try {
+            run(b, new ReissueRequestFlow(identity(a)));
+            throw new AssertionError("The re-issuance should have been refused.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof FlowException);
+        }
+        assertEquals(100, balance(b));
+        assertTrue(goldBlocks(b).stream().allMatch(state -> state.getState().getData().getChainDepth() == 1));
+    }
+
+    @Test
+    public void failedReissueIsRecoveredOnce() throws Exception {
+        System.setProperty(REISSUE_MIN_CHAIN_DEPTH, "1");
+        a.registerInitiatedFlow(FailingIssuerFlow.class);
+        run(a, new BatchIssueFlow(ImmutableList.of(new IssueLot(identity(a), 100))));
+        run(a, new SellerFlow(identity(b), 100));
+
+        final SecureHash exitId;
+        try {
+            run(b, new ReissueRequestFlow(identity(a)));
+            throw new AssertionError("The issuer should have failed to re-issue.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ReissueRequestFlow.ReissueIncompleteException);
+            exitId = ((ReissueRequestFlow.ReissueIncompleteException) e.getCause()).getExitId();
+        }
+        assertEquals(0, balance(b));
+        assertNotNull(recorded(b, exitId));
+
+        final SignedTransaction recovered = run(b, new ReissueRecoveryFlow(identity(a), exitId));
+        assertEquals(100, balance(b));
+        assertNotNull(recorded(a, recovered.getId()));
+
+        final SignedTransaction again = run(b, new ReissueRecoveryFlow(identity(a), exitId));
+        assertEquals(recovered.getId(), again.getId());
+        assertEquals(100, balance(b));
+    }
+
+    /**
+     * Countersigns and records the exit like {@link ReissueResponderFlow}, then fails before re-issuing.
+     */
+    @InitiatedBy(ReissueRequestFlow.class)
+    public static class FailingIssuerFlow extends ReissueResponderFlow {
+        public FailingIssuerFlow(FlowSession counterpartySession) {
+            super(counterpartySession);
+        }
+
+        @Suspendable
+        @Override
+        protected SignedTransaction reissue(SignedTransaction exitTx, Party owner) throws FlowException {
+            throw new FlowException("Re-issuance failed.");
+        }
+    }
+
+    /**
+     * Answers {@link SellerFlow} with {@link BuyerFlow}, counting the sessions opened and the messages each way.
+     */
+    @InitiatedBy(SellerFlow.class)
+    public static class CountingBuyerFlow extends FlowLogic<SignedTransaction> {
+        static final AtomicInteger sessions = new AtomicInteger();
+        static final List<Class<?>> received = Collections.synchronizedList(new ArrayList<>());
+        static final List<Class<?>> sent = Collections.synchronizedList(new ArrayList<>());
+
+        private final FlowSession session;
+
+        public CountingBuyerFlow(FlowSession session) {
+            this.session = session;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            sessions.incrementAndGet();
+            return subFlow(new BuyerFlow(new CountingSession(session)));
+        }
+    }
+
+    private static class CountingSession extends FlowSession {
+        private final FlowSession session;
+
+        private CountingSession(FlowSession session) {
+            this.session = session;
+        }
+
+        @NotNull
+        @Override
+        public Party getCounterparty() { return session.getCounterparty(); }
+
+        @Suspendable
+        @NotNull
+        @Override
+        public FlowInfo getCounterpartyFlowInfo(boolean maySkipCheckpoint) {
+            return session.getCounterpartyFlowInfo(maySkipCheckpoint);
+        }
+
+        @Suspendable
+        @NotNull
+        @Override
+        public <R> UntrustworthyData<R> sendAndReceive(@NotNull Class<R> receiveType, @NotNull Object payload, boolean maySkipCheckpoint) {
+            CountingBuyerFlow.sent.add(payload.getClass());
+            final UntrustworthyData<R> data = session.sendAndReceive(receiveType, payload, maySkipCheckpoint);
+            CountingBuyerFlow.received.add(receiveType);
+            return data;
+        }
+
+        @Suspendable
+        @NotNull
+        @Override
+        public <R> UntrustworthyData<R> receive(@NotNull Class<R> receiveType, boolean maySkipCheckpoint) {
+            final UntrustworthyData<R> data = session.receive(receiveType, maySkipCheckpoint);
+            CountingBuyerFlow.received.add(receiveType);
+            return data;
+        }
 
+        @Suspendable
+        @Override
+        public void send(@NotNull Object payload, boolean maySkipCheckpoint) {
+            CountingBuyerFlow.sent.add(payload.getClass());
+            session.send(payload, maySkipCheckpoint);
+        }
     }
 }
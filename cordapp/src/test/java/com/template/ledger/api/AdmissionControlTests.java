@@ -0,0 +1,148 @@
+package com.template.ledger.api;
+
+import net.corda.core.flows.StateMachineRunId;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.internal.concurrent.CordaFutureImplKt;
+import net.corda.core.internal.concurrent.OpenFuture;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.messaging.FlowHandleImpl;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionControlTests {
+    private static final String ENDPOINT = "move";
+    private static final CordaX500Name PARTY_A = new CordaX500Name("PartyA", "London", "GB");
+    private static final CordaX500Name PARTY_B = new CordaX500Name("PartyB", "New York", "US");
+
+    /**
+     * A flow that runs until the test completes its return value.
+     */
+    private static FlowHandle<String> flow(OpenFuture<String> returnValue) {
+        return new FlowHandleImpl<>(StateMachineRunId.Companion.createRandom(), returnValue);
+    }
+
+    private static OpenFuture<String> running() {
+        return CordaFutureImplKt.openFuture();
+    }
+
+    // The value of one of the endpoint's samples in the Prometheus text, e.g. "goldblock_api_in_flight".
+    private static long sample(AdmissionControl admission, String metric, String labels) {
+        final String prefix = metric + "{endpoint=\"" + ENDPOINT + "\"" + labels + "} ";
+        for (String line : admission.getPrometheusText().split("\n")) {
+            if (line.startsWith(prefix)) return Long.parseLong(line.substring(prefix.length()));
+        }
+        throw new AssertionError("No sample " + prefix);
+    }
+
+    private static void awaitQueued(AdmissionControl admission, long queued) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sample(admission, "goldblock_api_queued", "") != queued) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Expected " + queued + " queued requests.");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void requestWaitingForABusyPartyHoldsNoEndpointSlot() throws Exception {
+        final AdmissionControl admission = new AdmissionControl(2, 1, 1, 5_000);
+        final OpenFuture<String> first = running();
+        admission.start(ENDPOINT, PARTY_A, () -> flow(first));
+
+        // A second flow with PartyA queues for the party slot...
+        final CompletableFuture<FlowHandle<String>> waiting = CompletableFuture.supplyAsync(() -> admission.start(ENDPOINT, PARTY_A, () -> flow(running())));
+        awaitQueued(admission, 1);
+
+        // ...without taking the endpoint's second slot, which a flow with PartyB still gets.
+        assertEquals(1, sample(admission, "goldblock_api_in_flight", ""));
+        final OpenFuture<String> other = running();
+        admission.start(ENDPOINT, PARTY_B, () -> flow(other));
+        assertEquals(2, sample(admission, "goldblock_api_in_flight", ""));
+        assertFalse(waiting.isDone());
+
+        // The first flow returning frees both its slots, and the waiting flow takes them.
+        first.set("done");
+        final FlowHandle<String> second = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(2, sample(admission, "goldblock_api_in_flight", ""));
+
+        ((OpenFuture<String>) second.getReturnValue()).setException(new IllegalStateException("Flow failed"));
+        other.set("done");
+        assertEquals(0, sample(admission, "goldblock_api_in_flight", ""));
+        assertEquals(3, sample(admission, "goldblock_api_admitted_total", ""));
+    }
+
+    @Test
+    public void slotsAreReleasedWhenTheFlowCannotStart() {
+        final AdmissionControl admission = new AdmissionControl(1, 1, 0, 0);
+        try {
+            admission.start(ENDPOINT, PARTY_A, () -> {
+                throw new IllegalStateException("RPC connection lost");
+            });
+            fail("The start failure should reach the caller.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        // Both the party and the endpoint slot are free again.
+        admission.start(ENDPOINT, PARTY_A, () -> flow(running()));
+        assertEquals(1, sample(admission, "goldblock_api_in_flight", ""));
+        assertEquals(1, sample(admission, "goldblock_api_admitted_total", ""));
+    }
+
+    @Test
+    public void requestIsShedWhenTheQueueIsFull() {
+        final AdmissionControl admission = new AdmissionControl(1, 1, 0, 5_000);
+        admission.start(ENDPOINT, PARTY_A, () -> flow(running()));
+
+        try {
+            admission.start(ENDPOINT, PARTY_B, () -> flow(running()));
+            fail("A request finding no slot and no room in the queue should be shed.");
+        } catch (AdmissionControl.RejectedException e) {
+            assertEquals(1, e.getRetryAfterSeconds());
+        }
+        assertEquals(1, sample(admission, "goldblock_api_shed_total", ",reason=\"queue_full\""));
+        assertEquals(0, sample(admission, "goldblock_api_shed_total", ",reason=\"timeout\""));
+        assertEquals(0, sample(admission, "goldblock_api_queued", ""));
+    }
+
+    @Test
+    public void requestIsShedWhenItsWaitTimesOutWithARetryHintFromRecentFlows() throws Exception {
+        final AdmissionControl admission = new AdmissionControl(1, 1, 1, 50);
+
+        // With no flow finished yet, the hint is the one second minimum.
+        admission.start(ENDPOINT, PARTY_A, () -> flow(running()));
+        try {
+            admission.start(ENDPOINT, PARTY_B, () -> flow(running()));
+            fail("A request that cannot get a slot in time should be shed.");
+        } catch (AdmissionControl.RejectedException e) {
+            assertTrue(e.getMessage().startsWith("Timed out"));
+            assertEquals(1, e.getRetryAfterSeconds());
+        }
+        assertEquals(1, sample(admission, "goldblock_api_shed_total", ",reason=\"timeout\""));
+        assertEquals(0, sample(admission, "goldblock_api_queued", ""));
+    }
+
+    @Test
+    public void retryHintFollowsHowLongTheEndpointsFlowsTake() throws Exception {
+        final AdmissionControl admission = new AdmissionControl(1, 1, 1, 50);
+        final OpenFuture<String> slow = running();
+        admission.start(ENDPOINT, PARTY_A, () -> flow(slow));
+        Thread.sleep(1_100);
+        slow.set("done");
+
+        admission.start(ENDPOINT, PARTY_A, () -> flow(running()));
+        try {
+            admission.start(ENDPOINT, PARTY_B, () -> flow(running()));
+            fail("A request that cannot get a slot in time should be shed.");
+        } catch (AdmissionControl.RejectedException e) {
+            // The one flow that finished took just over a second, rounded up.
+            assertEquals(2, e.getRetryAfterSeconds());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.template.ledger.api;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.StartedMockNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AttachmentUploaderTests {
+    private static final byte[] ASSAY = "assay certificate 0001".getBytes(StandardCharsets.UTF_8);
+
+    private MockNetwork network;
+    private StartedMockNode node;
+    // Every archive passed to uploadAttachmentWithMetadata, in order.
+    private final List<byte[]> uploads = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        network = new MockNetwork(ImmutableList.of("com.template.ledger"));
+        node = network.createPartyNode(new CordaX500Name("PartyA", "London", "GB"));
+        uploads.clear();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    /**
+     * The two RPC calls the uploader makes, answered by the node's own attachment storage.
+     */
+    private CordaRPCOps rpcOps() {
+        return (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(), new Class<?>[]{CordaRPCOps.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "attachmentExists":
+                    return node.transaction(() -> node.getServices().getAttachments().hasAttachment((SecureHash) args[0]));
+                case "uploadAttachmentWithMetadata":
+                    final byte[] archive = readAll((InputStream) args[0]);
+                    uploads.add(archive);
+                    return node.transaction(() -> {
+                        try {
+                            return node.getServices().getAttachments().importAttachment(new ByteArrayInputStream(archive), (String) args[1], (String) args[2]);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> entryNames(byte[] archive) throws IOException {
+        final List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void idIsTheOneTheNodeAssigns() throws Exception {
+        final AttachmentUploader.Result result = new AttachmentUploader(rpcOps(), 1024).upload(new ByteArrayInputStream(ASSAY), "assay.pdf");
+
+        assertFalse(result.isDeduplicated());
+        assertEquals(1, uploads.size());
+        assertEquals(SecureHash.sha256(uploads.get(0)), result.getId());
+        assertTrue(node.transaction(() -> node.getServices().getAttachments().hasAttachment(result.getId())));
+    }
+
+    @Test
+    public void sameFileBecomesTheSameArchive() throws Exception {
+        final List<byte[]> archives = new ArrayList<>();
+        final CordaRPCOps recording = (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(), new Class<?>[]{CordaRPCOps.class}, (proxy, method, args) -> {
+            if (method.getName().equals("attachmentExists")) return false;
+            final byte[] archive = readAll((InputStream) args[0]);
+            archives.add(archive);
+            return SecureHash.sha256(archive);
+        });
+        final AttachmentUploader uploader = new AttachmentUploader(recording, 1024);
+
+        final SecureHash first = uploader.upload(new ByteArrayInputStream(ASSAY), "assay.pdf").getId();
+        final SecureHash second = uploader.upload(new ByteArrayInputStream(ASSAY), "assay.pdf").getId();
+
+        assertEquals(first, second);
+        assertArrayEquals(archives.get(0), archives.get(1));
+        assertEquals(ImmutableList.of(SecureHash.sha256(ASSAY) + "/assay.pdf"), entryNames(archives.get(0)));
+    }
+
+    @Test
+    public void differentFilesUnderOneNameDoNotShareAPath() throws Exception {
+        final AttachmentUploader uploader = new AttachmentUploader(rpcOps(), 1024);
+
+        uploader.upload(new ByteArrayInputStream(ASSAY), "certificate.pdf");
+        uploader.upload(new ByteArrayInputStream("vault certificate 0002".getBytes(StandardCharsets.UTF_8)), "certificate.pdf");
+
+        assertEquals(2, uploads.size());
+        assertNotEquals(entryNames(uploads.get(0)), entryNames(uploads.get(1)));
+    }
+
+    @Test
+    public void storedContentIsNotUploadedAgain() throws Exception {
+        final AttachmentUploader uploader = new AttachmentUploader(rpcOps(), 1024);
+
+        final AttachmentUploader.Result first = uploader.upload(new ByteArrayInputStream(ASSAY), "assay.pdf");
+        final AttachmentUploader.Result second = uploader.upload(new ByteArrayInputStream(ASSAY), "assay.pdf");
+
+        assertFalse(first.isDeduplicated());
+        assertTrue(second.isDeduplicated());
+        assertEquals(first.getId(), second.getId());
+        assertEquals(1, uploads.size());
+    }
+
+    @Test
+    public void bodyOverTheLimitIsRejectedBeforeUploading() throws Exception {
+        final AttachmentUploader uploader = new AttachmentUploader(rpcOps(), ASSAY.length);
+
+        uploader.upload(new ByteArrayInputStream(ASSAY), "assay.pdf");
+        try {
+            uploader.upload(new ByteArrayInputStream(new byte[ASSAY.length + 1]), "assay.pdf");
+            fail("An upload over the limit should have been rejected.");
+        } catch (AttachmentUploader.TooLargeException e) {
+            assertEquals(1, uploads.size());
+        }
+    }
+}
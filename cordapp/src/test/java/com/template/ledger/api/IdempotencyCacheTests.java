@@ -0,0 +1,149 @@
+package com.template.ledger.api;
+
+import net.corda.core.flows.StateMachineRunId;
+import net.corda.core.internal.concurrent.CordaFutureImplKt;
+import net.corda.core.internal.concurrent.OpenFuture;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.messaging.FlowHandleImpl;
+import net.corda.core.transactions.SignedTransaction;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdempotencyCacheTests {
+    private static final Duration TTL = Duration.ofHours(1);
+
+    private final MutableClock clock = new MutableClock();
+    // Number of flows the cache asked to start.
+    private final AtomicInteger starts = new AtomicInteger();
+
+    /**
+     * A flow that runs until the test completes its return value.
+     */
+    private FlowHandle<SignedTransaction> flow(OpenFuture<SignedTransaction> returnValue) {
+        starts.incrementAndGet();
+        return new FlowHandleImpl<>(StateMachineRunId.Companion.createRandom(), returnValue);
+    }
+
+    private static OpenFuture<SignedTransaction> running() {
+        return CordaFutureImplKt.openFuture();
+    }
+
+    @Test
+    public void duplicateKeyReplaysTheFirstFlow() throws Exception {
+        final IdempotencyCache cache = new IdempotencyCache(10, TTL, clock);
+
+        final IdempotencyCache.Entry first = cache.startOnce("key", "issue 100", () -> flow(running()));
+        final IdempotencyCache.Entry retry = cache.startOnce("key", "issue 100", () -> flow(running()));
+
+        assertTrue(first.isFirst());
+        assertFalse(retry.isFirst());
+        assertEquals(first.getRunId().get(), retry.getRunId().get());
+        assertEquals(1, starts.get());
+    }
+
+    @Test
+    public void keyReusedForADifferentRequestIsRejected() {
+        final IdempotencyCache cache = new IdempotencyCache(10, TTL, clock);
+        cache.startOnce("key", "issue 100", () -> flow(running()));
+
+        try {
+            cache.startOnce("key", "issue 200", () -> flow(running()));
+            fail("A different request under a used key should be rejected.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, starts.get());
+        }
+    }
+
+    @Test
+    public void keyIsReleasedWhenItsFlowCannotStart() {
+        final IdempotencyCache cache = new IdempotencyCache(10, TTL, clock);
+        try {
+            cache.startOnce("key", "issue 100", () -> {
+                throw new IllegalStateException("RPC connection lost");
+            });
+            fail("The start failure should reach the caller.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+
+        final IdempotencyCache.Entry retry = cache.startOnce("key", "issue 100", () -> flow(running()));
+
+        assertTrue(retry.isFirst());
+        assertEquals(1, starts.get());
+    }
+
+    @Test
+    public void keyIsForgottenOnceItsTimeToLiveHasPassed() {
+        final IdempotencyCache cache = new IdempotencyCache(10, TTL, clock);
+        final OpenFuture<SignedTransaction> returnValue = running();
+        cache.startOnce("key", "issue 100", () -> flow(returnValue));
+        returnValue.setException(new IllegalStateException("Flow failed"));
+
+        clock.advance(TTL.plusSeconds(1));
+        final IdempotencyCache.Entry later = cache.startOnce("key", "issue 100", () -> flow(running()));
+
+        assertTrue(later.isFirst());
+        assertEquals(2, starts.get());
+    }
+
+    @Test
+    public void keyWithAFlowInFlightOutlivesItsTimeToLive() {
+        final IdempotencyCache cache = new IdempotencyCache(10, TTL, clock);
+        cache.startOnce("key", "issue 100", () -> flow(running()));
+
+        clock.advance(TTL.plusSeconds(1));
+        final IdempotencyCache.Entry retry = cache.startOnce("key", "issue 100", () -> flow(running()));
+
+        assertFalse(retry.isFirst());
+        assertEquals(1, starts.get());
+    }
+
+    @Test
+    public void cacheFullOfFlowsInFlightRefusesNewKeys() {
+        final IdempotencyCache cache = new IdempotencyCache(2, TTL, clock);
+        final OpenFuture<SignedTransaction> oldest = running();
+        cache.startOnce("first", "issue 100", () -> flow(oldest));
+        cache.startOnce("second", "issue 200", () -> flow(running()));
+
+        try {
+            cache.startOnce("third", "issue 300", () -> flow(running()));
+            fail("A new key should be refused while every key is in flight.");
+        } catch (IdempotencyCache.FullException e) {
+            assertEquals(2, starts.get());
+        }
+
+        oldest.setException(new IllegalStateException("Flow failed"));
+        assertTrue(cache.startOnce("third", "issue 300", () -> flow(running())).isFirst());
+        // The running flow's key was kept, so its retry is still a replay.
+        assertFalse(cache.startOnce("second", "issue 200", () -> flow(running())).isFirst());
+        assertEquals(3, starts.get());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2018-06-01T00:00:00Z");
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(ZoneId zone) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public Instant instant() { return now; }
+    }
+}
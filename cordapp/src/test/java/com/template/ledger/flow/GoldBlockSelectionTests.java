@@ -0,0 +1,86 @@
+package com.template.ledger.flow;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.template.ledger.contract.GoldBlockContract;
+import com.template.ledger.state.GoldBlockIssuer;
+import com.template.ledger.state.GoldBlockState;
+import net.corda.core.contracts.*;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.utilities.OpaqueBytes;
+import net.corda.testing.core.TestIdentity;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GoldBlockSelectionTests {
+    private final Party notary = new TestIdentity(new CordaX500Name("Notary", "London", "GB")).getParty();
+    private final Party seller = new TestIdentity(new CordaX500Name("PartyA", "London", "GB")).getParty();
+    private final Party buyer = new TestIdentity(new CordaX500Name("PartyB", "New York", "US")).getParty();
+    private final Party otherBuyer = new TestIdentity(new CordaX500Name("PartyC", "Paris", "FR")).getParty();
+    private final GoldBlockIssuer issuedBySeller = GoldBlockIssuer.of(seller, OpaqueBytes.of((byte) 0x01));
+    private final GoldBlockIssuer issuedByBuyer = GoldBlockIssuer.of(buyer, OpaqueBytes.of((byte) 0x01));
+
+    private StateAndRef<GoldBlockState> held(long quantity, GoldBlockIssuer issuer) {
+        return held(quantity, issuer, 0);
+    }
+
+    private StateAndRef<GoldBlockState> held(long quantity, GoldBlockIssuer issuer, int chainDepth) {
+        GoldBlockState state = new GoldBlockState(quantity, issuer, seller, chainDepth);
+        return new StateAndRef<>(new TransactionState<>(state, GoldBlockContract.GOLD_BLOCK_CONTRACT_ID, notary), new StateRef(SecureHash.randomSHA256(), 0));
+    }
+
+    @Test
+    public void spendReturnsChangeToSeller() {
+        List<GoldBlockState> outputs = GoldBlockSelection.spend(ImmutableList.of(held(70, issuedBySeller), held(50, issuedBySeller)), 100, buyer, seller);
+
+        assertEquals(2, outputs.size());
+        assertEquals(new GoldBlockState(100, issuedBySeller, buyer, 1), outputs.get(0));
+        assertEquals(new GoldBlockState(20, issuedBySeller, seller, 1), outputs.get(1));
+    }
+
+    @Test
+    public void spendKeepsIssuersSeparate() {
+        List<GoldBlockState> outputs = GoldBlockSelection.spend(ImmutableList.of(held(60, issuedBySeller), held(60, issuedByBuyer)), 100, buyer, seller);
+
+        assertEquals(ImmutableList.of(
+                new GoldBlockState(60, issuedBySeller, buyer, 1),
+                new GoldBlockState(40, issuedByBuyer, buyer, 1),
+                new GoldBlockState(20, issuedByBuyer, seller, 1)
+        ), outputs);
+    }
+
+    @Test
+    public void exactSpendHasNoChange() {
+        List<GoldBlockState> outputs = GoldBlockSelection.spend(ImmutableList.of(held(100, issuedBySeller)), 100, buyer, seller);
+
+        assertEquals(ImmutableList.of(new GoldBlockState(100, issuedBySeller, buyer, 1)), outputs);
+    }
+
+    @Test
+    public void spendPaysEveryRecipientFromSharedInputs() {
+        List<GoldBlockState> outputs = GoldBlockSelection.spend(ImmutableList.of(held(60, issuedBySeller), held(60, issuedByBuyer)),
+                ImmutableMap.of(buyer, 50L, otherBuyer, 40L), seller);
+
+        assertEquals(ImmutableList.of(
+                new GoldBlockState(50, issuedBySeller, buyer, 1),
+                new GoldBlockState(10, issuedBySeller, otherBuyer, 1),
+                new GoldBlockState(30, issuedByBuyer, otherBuyer, 1),
+                new GoldBlockState(30, issuedByBuyer, seller, 1)
+        ), outputs);
+    }
+
+    @Test
+    public void spendOutputsAreOneDeeperThanDeepestInput() {
+        List<GoldBlockState> outputs = GoldBlockSelection.spend(ImmutableList.of(held(60, issuedBySeller, 3), held(60, issuedBySeller, 7)), 100, buyer, seller);
+
+        assertEquals(ImmutableList.of(
+                new GoldBlockState(100, issuedBySeller, buyer, 8),
+                new GoldBlockState(20, issuedBySeller, seller, 8)
+        ), outputs);
+    }
+}
@@ -0,0 +1,118 @@
+package com.template.ledger.service;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.UniquenessProvider.ConsumingTx;
+import net.corda.testing.core.TestIdentity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchingUniquenessProviderTests {
+    private final Party caller = new TestIdentity(new CordaX500Name("PartyA", "London", "GB")).getParty();
+    private final StateRef spent = new StateRef(SecureHash.randomSHA256(), 0);
+    private final StateRef other = new StateRef(SecureHash.randomSHA256(), 1);
+
+    private String jdbcUrl;
+    // Keeps the in-memory database alive between the provider's connections.
+    private Connection keepAlive;
+    private BatchingUniquenessProvider provider;
+
+    @Before
+    public void setup() throws Exception {
+        jdbcUrl = "jdbc:h2:mem:notary-" + UUID.randomUUID();
+        keepAlive = DriverManager.getConnection(jdbcUrl);
+        provider = new BatchingUniquenessProvider(jdbcUrl, 0, 16);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        keepAlive.close();
+    }
+
+    private BatchingUniquenessProvider.Request request(SecureHash txId, StateRef... states) {
+        return new BatchingUniquenessProvider.Request(ImmutableList.copyOf(states), txId, caller);
+    }
+
+    @Test
+    public void doubleSpendWithinOneBatchOnlyCommitsTheFirst() throws Exception {
+        final SecureHash first = SecureHash.randomSHA256();
+        final SecureHash second = SecureHash.randomSHA256();
+        final BatchingUniquenessProvider.Request winner = request(first, spent);
+        final BatchingUniquenessProvider.Request loser = request(second, other, spent);
+
+        provider.commitBatch(ImmutableList.of(winner, loser));
+
+        assertTrue(winner.outcome.get().isEmpty());
+        final Map<StateRef, ConsumingTx> conflicts = loser.outcome.get();
+        assertEquals(ImmutableList.of(spent), ImmutableList.copyOf(conflicts.keySet()));
+        assertEquals(first, conflicts.get(spent).getId());
+        assertNotNull(provider.takeCommittedBatch(first));
+        assertNull(provider.takeCommittedBatch(second));
+    }
+
+    @Test
+    public void doubleSpendAgainstAnEarlierBatchIsRejected() throws Exception {
+        final SecureHash first = SecureHash.randomSHA256();
+        final SecureHash second = SecureHash.randomSHA256();
+        provider.commitBatch(ImmutableList.of(request(first, spent)));
+        final BatchingUniquenessProvider.Request later = request(second, spent);
+
+        provider.commitBatch(ImmutableList.of(later));
+
+        final Map<StateRef, ConsumingTx> conflicts = later.outcome.get();
+        assertEquals(first, conflicts.get(spent).getId());
+        assertEquals(caller, conflicts.get(spent).getRequestingParty());
+        assertNull(provider.takeCommittedBatch(second));
+        // The rejected request's other input was not recorded either.
+        final BatchingUniquenessProvider.Request retry = request(SecureHash.randomSHA256(), other);
+        provider.commitBatch(ImmutableList.of(retry));
+        assertTrue(retry.outcome.get().isEmpty());
+    }
+
+    @Test
+    public void failedBatchFailsEveryRequestAndSignsNothing() throws Exception {
+        // A table the inserts cannot satisfy makes the batch's write fail after the lookup succeeded.
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE goldblock_notary_committed_states ("
+                    + "issue_transaction_id VARCHAR(64) NOT NULL, issue_output_index INT NOT NULL,"
+                    + " consuming_transaction_id VARCHAR(64) NOT NULL, consuming_input_index INT NOT NULL,"
+                    + " requesting_party_name VARCHAR(255) NOT NULL, requesting_party_key VARBINARY(1024) NOT NULL,"
+                    + " unfillable INT NOT NULL, PRIMARY KEY (issue_transaction_id, issue_output_index))");
+        }
+        final SecureHash first = SecureHash.randomSHA256();
+        final SecureHash second = SecureHash.randomSHA256();
+        final BatchingUniquenessProvider.Request a = request(first, spent);
+        final BatchingUniquenessProvider.Request b = request(second, other);
+
+        provider.commitBatch(ImmutableList.of(a, b));
+
+        for (BatchingUniquenessProvider.Request request : ImmutableList.of(a, b)) {
+            try {
+                request.outcome.get();
+                fail("A request of a failed batch should fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SQLException);
+            }
+        }
+        assertNull(provider.takeCommittedBatch(first));
+        assertNull(provider.takeCommittedBatch(second));
+    }
+}